@@ -6,7 +6,7 @@ import java.util.Random;
 
 import edge.DirectedWeightedEdge;
 import graph.DirectedGraph;
-import pq.ExtrinsicUniqueMinPQ;
+import pq.IndexedMinPQ;
 import tuple.OrderedTuple;
 
 import static org.junit.Assert.assertEquals;
@@ -47,7 +47,7 @@ public class ShortestPath {
         }
 
         private void search() {
-            ExtrinsicUniqueMinPQ<Integer> fringe = new ExtrinsicUniqueMinPQ<>();
+            IndexedMinPQ fringe = new IndexedMinPQ(G.V());
             fringe.add(S, distTo[S]);
 
             while (fringe.size() > 0) {
@@ -59,7 +59,7 @@ public class ShortestPath {
             }
         }
 
-        private void relax(DirectedWeightedEdge edge, ExtrinsicUniqueMinPQ<Integer> fringe) {
+        private void relax(DirectedWeightedEdge edge, IndexedMinPQ fringe) {
             int from = edge.from();
             int to = edge.to();
 
@@ -69,11 +69,7 @@ public class ShortestPath {
 
             distTo[to] = distTo[from] + edge.weight();
             pathTo[to] = from;
-            if (fringe.contains(to)) {
-                fringe.changePriority(to, distTo[to]);
-            } else {
-                fringe.add(to, distTo[to]);
-            }
+            fringe.decreaseKey(to, distTo[to]);
         }
 
         public double getDist(int t) {
@@ -134,7 +130,7 @@ public class ShortestPath {
         }
 
         private void search() {
-            ExtrinsicUniqueMinPQ<Integer> fringe = new ExtrinsicUniqueMinPQ<>();
+            IndexedMinPQ fringe = new IndexedMinPQ(G.V());
             fringe.add(S, D[S] + H[S]);
 
             while (fringe.size() > 0) {
@@ -149,7 +145,7 @@ public class ShortestPath {
             }
         }
 
-        private void relax(DirectedWeightedEdge edge, ExtrinsicUniqueMinPQ<Integer> fringe) {
+        private void relax(DirectedWeightedEdge edge, IndexedMinPQ fringe) {
             int from = edge.from();
             int to = edge.to();
 
@@ -159,11 +155,7 @@ public class ShortestPath {
 
             D[to] = D[from] + edge.weight();
             pathTo[to] = from;
-            if (fringe.contains(to)) {
-                fringe.changePriority(to, D[to] + H[to]);
-            } else {
-                fringe.add(to, D[to] + H[to]);
-            }
+            fringe.decreaseKey(to, D[to] + H[to]);
         }
 
         public double getDist() {
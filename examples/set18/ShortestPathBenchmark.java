@@ -0,0 +1,105 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import edge.DirectedWeightedEdge;
+import graph.DirectedGraph;
+import pq.ExtrinsicUniqueMinPQ;
+import pq.IndexedMinPQ;
+
+/**
+ * Times Dijkstra on a large random graph with ExtrinsicUniqueMinPQ, which ShortestPath used to
+ * use, and with IndexedMinPQ, which it uses now.
+ */
+public class ShortestPathBenchmark {
+
+    private static final int VERTICES = 200000;
+    private static final int EDGES_PER_VERTEX = 4;
+    private static final int SOURCES = 10;
+    private static final int ROUNDS = 5;
+
+    private static DirectedGraph randomGraph(Random random) {
+        DirectedGraph graph = new DirectedGraph(VERTICES);
+        for (int from = 0; from < VERTICES; from++) {
+            for (int i = 0; i < EDGES_PER_VERTEX; i++) {
+                graph.addEdge(new DirectedWeightedEdge(from, random.nextInt(VERTICES), random.nextDouble()));
+            }
+        }
+
+        return graph;
+    }
+
+    private static double[] extrinsicDijkstra(DirectedGraph graph, int source) {
+        double[] distTo = new double[graph.V()];
+        Arrays.fill(distTo, Double.POSITIVE_INFINITY);
+        distTo[source] = 0.0;
+
+        ExtrinsicUniqueMinPQ<Integer> fringe = new ExtrinsicUniqueMinPQ<>();
+        fringe.add(source, 0.0);
+        while (fringe.size() > 0) {
+            int v = fringe.removeMin();
+            for (DirectedWeightedEdge edge : graph.adj(v)) {
+                int to = edge.to();
+                if (distTo[to] <= distTo[v] + edge.weight()) {
+                    continue;
+                }
+                distTo[to] = distTo[v] + edge.weight();
+                if (fringe.contains(to)) {
+                    fringe.changePriority(to, distTo[to]);
+                } else {
+                    fringe.add(to, distTo[to]);
+                }
+            }
+        }
+
+        return distTo;
+    }
+
+    private static double[] indexedDijkstra(DirectedGraph graph, int source) {
+        ShortestPath.Dijkstra dijkstra = new ShortestPath.Dijkstra(graph, source);
+        double[] distTo = new double[graph.V()];
+        for (int v = 0; v < graph.V(); v++) {
+            distTo[v] = dijkstra.getDist(v);
+        }
+
+        return distTo;
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(61);
+        DirectedGraph graph = randomGraph(random);
+        int[] sources = new int[SOURCES];
+        for (int i = 0; i < SOURCES; i++) {
+            sources[i] = random.nextInt(VERTICES);
+        }
+
+        double bestExtrinsic = Double.POSITIVE_INFINITY;
+        double bestIndexed = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            double[][] expected = new double[SOURCES][];
+            for (int i = 0; i < SOURCES; i++) {
+                expected[i] = extrinsicDijkstra(graph, sources[i]);
+            }
+            double extrinsic = (System.nanoTime() - start) / 1e6 / SOURCES;
+
+            start = System.nanoTime();
+            for (int i = 0; i < SOURCES; i++) {
+                if (!Arrays.equals(expected[i], indexedDijkstra(graph, sources[i]))) {
+                    throw new IllegalStateException("The two queues disagree!");
+                }
+            }
+            double indexed = (System.nanoTime() - start) / 1e6 / SOURCES;
+
+            // round 0 only warms up
+            if (round > 0) {
+                bestExtrinsic = Math.min(bestExtrinsic, extrinsic);
+                bestIndexed = Math.min(bestIndexed, indexed);
+            }
+        }
+
+        System.out.println(String.format("%d vertices, %d edges", VERTICES, VERTICES * EDGES_PER_VERTEX));
+        System.out.println(String.format("ExtrinsicUniqueMinPQ %8.1f ms/search", bestExtrinsic));
+        System.out.println(String.format("IndexedMinPQ         %8.1f ms/search", bestIndexed));
+    }
+
+}
@@ -0,0 +1,147 @@
+package pq;
+
+/**
+ * Min Priority Queue of int items in [0, capacity), each at most once, with double priorities.
+ * Unlike ExtrinsicUniqueMinPQ, the items, their priorities and their positions in the heap are
+ * kept in parallel primitive arrays, so no operation boxes an item, allocates a node or does a
+ * hash lookup.
+ */
+public class IndexedMinPQ {
+
+    private int size;
+
+    private final int[] items;
+    private final double[] priorities;
+    private final int[] itemToIndex;
+
+    public IndexedMinPQ(int capacity) {
+        size = 0;
+
+        items = new int[1 + capacity];
+        priorities = new double[1 + capacity];
+        itemToIndex = new int[capacity];
+    }
+
+    public boolean contains(int item) {
+        return itemToIndex[item] > 0;
+    }
+
+    public void add(int item, double priority) {
+        if (contains(item)) {
+            throw new IllegalArgumentException("PQ contains item!");
+        }
+
+        size += 1;
+        swim(size, item, priority);
+    }
+
+    public int removeMin() {
+        if (size == 0) {
+            throw new IllegalArgumentException("PQ is empty!");
+        }
+
+        int item = items[1];
+        itemToIndex[item] = 0;
+
+        size -= 1;
+        if (size > 0) {
+            sink(1, items[size + 1], priorities[size + 1]);
+        }
+
+        return item;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void changePriority(int item, double priority) {
+        if (!contains(item)) {
+            throw new IllegalArgumentException("PQ does not contain item!");
+        }
+
+        int index = itemToIndex[item];
+        if (priority < priorities[index]) {
+            swim(index, item, priority);
+        } else {
+            sink(index, item, priority);
+        }
+    }
+
+    /**
+     * Adds the item, or lowers its priority if it is already in the PQ with a higher one.
+     * Returns whether the PQ changed.
+     */
+    public boolean decreaseKey(int item, double priority) {
+        if (!contains(item)) {
+            add(item, priority);
+            return true;
+        }
+
+        if (priorities[itemToIndex[item]] <= priority) {
+            return false;
+        }
+
+        swim(itemToIndex[item], item, priority);
+        return true;
+    }
+
+    private int parentOf(int index) {
+        return index / 2;
+    }
+
+    private int leftChildOf(int index) {
+        return 2 * index;
+    }
+
+    private void swim(int index, int item, double priority) {
+        int parentIndex = parentOf(index);
+
+        while (parentIndex > 0) {
+            if (priorities[parentIndex] <= priority) {
+                break;
+            }
+
+            move(parentIndex, index);
+
+            index = parentIndex;
+            parentIndex = parentOf(index);
+        }
+
+        place(index, item, priority);
+    }
+
+    private void sink(int index, int item, double priority) {
+        int exchangeIndex = leftChildOf(index);
+
+        while (exchangeIndex <= size) {
+            if (exchangeIndex + 1 <= size && priorities[exchangeIndex + 1] < priorities[exchangeIndex]) {
+                exchangeIndex += 1;
+            }
+
+            if (priority <= priorities[exchangeIndex]) {
+                break;
+            }
+
+            move(exchangeIndex, index);
+
+            index = exchangeIndex;
+            exchangeIndex = leftChildOf(index);
+        }
+
+        place(index, item, priority);
+    }
+
+    private void move(int from, int to) {
+        items[to] = items[from];
+        priorities[to] = priorities[from];
+        itemToIndex[items[to]] = to;
+    }
+
+    private void place(int index, int item, double priority) {
+        items[index] = item;
+        priorities[index] = priority;
+        itemToIndex[item] = index;
+    }
+
+}
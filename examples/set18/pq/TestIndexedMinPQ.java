@@ -0,0 +1,95 @@
+package pq;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for IndexedMinPQ.
+ */
+public class TestIndexedMinPQ {
+
+    /**
+     * Test if minPQ property holds.
+     */
+    @Test
+    public void testMinPQ() {
+        int loops = 50;
+        int items = 100000;
+
+        Random random = new Random();
+        double[] itemToPriority = new double[items];
+
+        IndexedMinPQ minPQ = new IndexedMinPQ(items);
+
+        for (int i = 0; i < loops; i++) {
+            for (int item = 0; item < items; item++) {
+                double priority = random.nextDouble();
+                minPQ.add(item, priority);
+                itemToPriority[item] = priority;
+            }
+
+            double prevPriority = -1.0;
+            while (minPQ.size() > 0) {
+                int item = minPQ.removeMin();
+                double priority = itemToPriority[item];
+
+                assertFalse(minPQ.contains(item));
+                assertTrue(prevPriority <= priority);
+
+                prevPriority = priority;
+            }
+        }
+    }
+
+    /**
+     * Test if changePriority and decreaseKey work.
+     */
+    @Test
+    public void testChangePriority() {
+        int loops = 50;
+        int items = 100000;
+        int changes = 10000;
+
+        Random random = new Random();
+        double[] itemToPriority = new double[items];
+
+        IndexedMinPQ minPQ = new IndexedMinPQ(items);
+
+        for (int i = 0; i < loops; i++) {
+            for (int item = 0; item < items; item++) {
+                double priority = random.nextDouble();
+                minPQ.add(item, priority);
+                itemToPriority[item] = priority;
+            }
+
+            for (int j = 0; j < changes; j++) {
+                int item = random.nextInt(items);
+                double priority = random.nextDouble();
+                if (random.nextBoolean()) {
+                    itemToPriority[item] = priority;
+                    minPQ.changePriority(item, priority);
+                } else {
+                    boolean lower = priority < itemToPriority[item];
+                    assertEquals(lower, minPQ.decreaseKey(item, priority));
+                    itemToPriority[item] = Math.min(itemToPriority[item], priority);
+                }
+            }
+
+            double prevPriority = -1.0;
+            while (minPQ.size() > 0) {
+                int item = minPQ.removeMin();
+                double priority = itemToPriority[item];
+
+                assertTrue(prevPriority <= priority);
+
+                prevPriority = priority;
+            }
+        }
+    }
+
+}
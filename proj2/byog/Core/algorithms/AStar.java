@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import byog.Core.coordinate.Location;
 
@@ -25,8 +26,18 @@ public class AStar<E extends Location<E>> {
      * @param random A pseudorandom generator.
      */
     public AStar(Set<E> passableLocations, Random random) {
+        this(passableLocations::contains, random);
+    }
+
+    /**
+     * Constructor with a passability predicate and a pseudorandom generator.
+     *
+     * @param isPassable Whether a location is passable.
+     * @param random A pseudorandom generator.
+     */
+    public AStar(Predicate<E> isPassable, Random random) {
         this.random = random;
-        this.worldMap = new WorldMap<>(passableLocations);
+        this.worldMap = new WorldMap<>(isPassable);
     }
 
     /**
@@ -40,7 +51,7 @@ public class AStar<E extends Location<E>> {
         HashMap<E, Integer> distTo = new HashMap<>();
         HashMap<E, E> parentOf = new HashMap<>();
 
-        RandomDoubleMapPQ<E, Integer> toSearch = new RandomDoubleMapPQ<>(random);
+        RandomHeapPQ<E, Integer> toSearch = new RandomHeapPQ<>(random);
 
         distTo.put(start, 0);
         parentOf.put(start, null);
@@ -0,0 +1,127 @@
+package byog.Core.algorithms;
+
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * The AStar algorithm to find the shortest path on a 2-dimension grid. Cells are numbered
+ * x * height + y, like Location2D indices, and distances, parents and the search frontier are
+ * kept in arrays over the cells, which are reused from one search to the next.
+ */
+public class GridAStar {
+
+    private final int width;
+    private final int height;
+
+    private final int[] distTo;
+    private final int[] parentOf;
+
+    /* The search in which distTo and parentOf of every cell have been set. */
+    private final int[] searchOf;
+    private int search;
+
+    private final RandomBucketPQ toSearch;
+
+    /**
+     * Constructor with the shape of the grid and a pseudorandom generator.
+     *
+     * @param width The width of the grid.
+     * @param height The height of the grid.
+     * @param random A pseudorandom generator.
+     */
+    public GridAStar(int width, int height, Random random) {
+        this.width = width;
+        this.height = height;
+        this.distTo = new int[width * height];
+        this.parentOf = new int[width * height];
+        this.searchOf = new int[width * height];
+        // a path visits every cell at most once, and the heuristic is at most width + height
+        this.toSearch = new RandomBucketPQ(width * height, width * height + width + height, random);
+    }
+
+    /**
+     * Connect two cells of the grid through passable cells.
+     *
+     * @param start The start cell.
+     * @param end The end cell, which must be passable.
+     * @param passable Whether a cell is passable.
+     * @return The cells of the path found by AStar, from start to end. If there is no path,
+     *         only the end cell.
+     */
+    public int[] connect(int start, int end, IntPredicate passable) {
+        search += 1;
+        toSearch.clear();
+
+        int endX = end / height;
+        int endY = end % height;
+
+        visit(start, 0, -1);
+        toSearch.set(start, manhattanDistance(start, endX, endY));
+
+        while (toSearch.size() > 0) {
+            // travel a grid
+            int cell = toSearch.removeRandomSmallest();
+            if (cell == end) {
+                break;
+            }
+            // add closer neighbours of the grid, in the order up, down, left and right
+            int x = cell / height;
+            int y = cell % height;
+            int dist = distTo[cell] + 1;
+            if (y + 1 < height) {
+                relax(cell + 1, cell, dist, passable, endX, endY);
+            }
+            if (y > 0) {
+                relax(cell - 1, cell, dist, passable, endX, endY);
+            }
+            if (x > 0) {
+                relax(cell - height, cell, dist, passable, endX, endY);
+            }
+            if (x + 1 < width) {
+                relax(cell + height, cell, dist, passable, endX, endY);
+            }
+        }
+
+        return getPath(end);
+    }
+
+    private void relax(
+        int neighbour, int cell, int dist, IntPredicate passable, int endX, int endY
+    ) {
+        if (!passable.test(neighbour)) {
+            return;
+        }
+        // check if a neighbour to search is closer to start
+        if (searchOf[neighbour] == search && distTo[neighbour] <= dist) {
+            return;
+        }
+
+        // find a closer path for neighbour to search or find a new neighbour
+        visit(neighbour, dist, cell);
+        toSearch.set(neighbour, dist + manhattanDistance(neighbour, endX, endY));
+    }
+
+    private void visit(int cell, int dist, int parent) {
+        searchOf[cell] = search;
+        distTo[cell] = dist;
+        parentOf[cell] = parent;
+    }
+
+    private int manhattanDistance(int cell, int endX, int endY) {
+        return Math.abs(cell / height - endX) + Math.abs(cell % height - endY);
+    }
+
+    private int[] getPath(int end) {
+        if (searchOf[end] != search) {
+            return new int[]{end};
+        }
+
+        int[] path = new int[distTo[end] + 1];
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = end;
+            end = parentOf[end];
+        }
+        return path;
+    }
+
+}
@@ -0,0 +1,159 @@
+package byog.Core.algorithms;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Priority queue of the items 0 to capacity - 1 with small integer priorities, kept in one
+ * bucket per priority. Adding, removing and changing the priority of an item take constant
+ * time, and one of the smallest items is picked randomly like RandomHeapPQ does.
+ */
+public class RandomBucketPQ {
+
+    private static final int INITIAL_BUCKET_SIZE = 8;
+
+    private final Random random;
+
+    private final int[][] buckets;
+    private final int[] bucketSizes;
+
+    /* The priority of every item, or -1 if it is not in the PQ. */
+    private final int[] priorityOf;
+    /* The position of every item in its bucket. */
+    private final int[] positionOf;
+
+    private int size;
+    private int minPriority;
+    private int maxPriority;
+
+    /**
+     * Constructor with the number of items, the largest priority and a pseudorandom generator.
+     *
+     * @param capacity The number of items, which are 0 to capacity - 1.
+     * @param priorityLimit The largest priority of an item.
+     * @param random A pseudorandom generator.
+     */
+    public RandomBucketPQ(int capacity, int priorityLimit, Random random) {
+        this.random = random;
+        this.buckets = new int[priorityLimit + 1][];
+        this.bucketSizes = new int[priorityLimit + 1];
+        this.priorityOf = new int[capacity];
+        this.positionOf = new int[capacity];
+        Arrays.fill(priorityOf, -1);
+        this.minPriority = priorityLimit + 1;
+        this.maxPriority = -1;
+    }
+
+    /**
+     * Inserts an item with the given priority value if the item does not exist or
+     * changes the priority of the given item.
+     *
+     * @param item The item to insert.
+     * @param priority The priority corresponding to the item.
+     */
+    public void set(int item, int priority) {
+        if (contains(item)) {
+            remove(item);
+        }
+        add(item, priority);
+    }
+
+    /**
+     * Inserts an item with the given priority value.
+     *
+     * @param item The item to add.
+     * @param priority The priority corresponding to the item.
+     */
+    public void add(int item, int priority) {
+        if (contains(item)) {
+            throw new IllegalArgumentException("Already contains " + item);
+        }
+        if (priority < 0 || priority >= buckets.length) {
+            throw new IllegalArgumentException("Invalid priority " + priority);
+        }
+
+        int[] bucket = buckets[priority];
+        int bucketSize = bucketSizes[priority];
+        if (bucket == null) {
+            bucket = new int[INITIAL_BUCKET_SIZE];
+            buckets[priority] = bucket;
+        } else if (bucketSize == bucket.length) {
+            bucket = Arrays.copyOf(bucket, 2 * bucketSize);
+            buckets[priority] = bucket;
+        }
+
+        bucket[bucketSize] = item;
+        bucketSizes[priority] = bucketSize + 1;
+        priorityOf[item] = priority;
+        positionOf[item] = bucketSize;
+        size += 1;
+        minPriority = Math.min(minPriority, priority);
+        maxPriority = Math.max(maxPriority, priority);
+    }
+
+    /**
+     * Returns true if the PQ contains the given item.
+     *
+     * @param item The specified item.
+     * @return Whether the item is contained or not.
+     */
+    public boolean contains(int item) {
+        return priorityOf[item] >= 0;
+    }
+
+    /**
+     * Removes and returns one of the smallest items randomly.
+     *
+     * @return The smallest item. if there are multiple smallest item, pick one of them randomly.
+     */
+    public int removeRandomSmallest() {
+        if (size == 0) {
+            throw new NoSuchElementException("PQ is empty.");
+        }
+
+        while (bucketSizes[minPriority] == 0) {
+            minPriority += 1;
+        }
+        int item = buckets[minPriority][random.nextInt(bucketSizes[minPriority])];
+        remove(item);
+        return item;
+    }
+
+    /**
+     * Removes all items.
+     */
+    public void clear() {
+        for (int priority = minPriority; priority <= maxPriority; priority++) {
+            for (int i = 0; i < bucketSizes[priority]; i++) {
+                priorityOf[buckets[priority][i]] = -1;
+            }
+            bucketSizes[priority] = 0;
+        }
+        size = 0;
+        minPriority = buckets.length;
+        maxPriority = -1;
+    }
+
+    /**
+     * Returns the number of items in the PQ.
+     *
+     * @return The number of items.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void remove(int item) {
+        int priority = priorityOf[item];
+        int[] bucket = buckets[priority];
+        int last = bucket[bucketSizes[priority] - 1];
+
+        bucket[positionOf[item]] = last;
+        positionOf[last] = positionOf[item];
+        bucketSizes[priority] -= 1;
+        priorityOf[item] = -1;
+        size -= 1;
+    }
+
+}
@@ -0,0 +1,236 @@
+package byog.Core.algorithms;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Priority queue using a binary heap where objects have a priority that is provided
+ * extrinsically, i.e. are supplied as an argument during insertion and can be changed using
+ * the changePriority method.
+ *
+ * Every item is given a random key from the pseudorandom generator when its priority is set,
+ * and the heap is ordered by priority, then by key. So one of the smallest items is picked
+ * randomly, the same one for the same seed, and every operation takes O(log n) time however
+ * many items share the smallest priority.
+ */
+public class RandomHeapPQ<T, E extends Comparable<E>> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Random random;
+
+    /* The index of every item, by which its entry is kept in the arrays below. */
+    private final HashMap<T, Integer> indexOf;
+
+    private Object[] items;
+    private Object[] priorities;
+    private long[] keys;
+    private int[] positionOf;
+
+    /* The item indices in heap order. */
+    private int[] heap;
+    private int size;
+
+    /* Indices of removed items, to be reused. */
+    private int[] freeIndices;
+    private int numFreeIndices;
+
+    /**
+     * Constructor of a RandomHeapPQ.
+     */
+    public RandomHeapPQ() {
+        this(new Random());
+    }
+
+    /**
+     * Constructor with a random number generator.
+     *
+     * @param r A random number generator.
+     */
+    public RandomHeapPQ(Random r) {
+        random = r;
+        indexOf = new HashMap<>();
+        items = new Object[INITIAL_CAPACITY];
+        priorities = new Object[INITIAL_CAPACITY];
+        keys = new long[INITIAL_CAPACITY];
+        positionOf = new int[INITIAL_CAPACITY];
+        heap = new int[INITIAL_CAPACITY];
+        freeIndices = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Inserts an item with the given priority value if the item does not exist or
+     * changes the priority of the given item.
+     *
+     * @param item The item to insert.
+     * @param priority The priority corresponding to the item.
+     */
+    public void set(T item, E priority) {
+        if (contains(item)) {
+            changePriority(item, priority);
+        } else {
+            add(item, priority);
+        }
+    }
+
+    /**
+     * Inserts an item with the given priority value.
+     *
+     * @param item The item to add.
+     * @param priority The priority corresponding to the item.
+     */
+    public void add(T item, E priority) {
+        if (indexOf.containsKey(item)) {
+            throw new IllegalArgumentException("Already contains " + item);
+        }
+
+        int index = numFreeIndices > 0 ? freeIndices[--numFreeIndices] : newIndex();
+        indexOf.put(item, index);
+        items[index] = item;
+        priorities[index] = priority;
+        keys[index] = random.nextLong();
+
+        heap[size] = index;
+        positionOf[index] = size;
+        size += 1;
+        swim(size - 1);
+    }
+
+    /**
+     * Returns true if the PQ contains the given item.
+     *
+     * @param item The specified item.
+     * @return Whether the item is contained or not.
+     */
+    public boolean contains(T item) {
+        return indexOf.containsKey(item);
+    }
+
+    /**
+     * Returns one of the smallest items randomly.
+     *
+     * @return The smallest item. if there are multiple smallest item, pick one of them randomly.
+     */
+    public T getRandomSmallest() {
+        if (size == 0) {
+            throw new NoSuchElementException("PQ is empty.");
+        }
+        return (T) items[heap[0]];
+    }
+
+    /**
+     * Removes and returns one of the smallest items randomly.
+     *
+     * @return The smallest item. if there are multiple smallest item, pick one of them randomly.
+     */
+    public T removeRandomSmallest() {
+        if (size == 0) {
+            throw new NoSuchElementException("PQ is empty.");
+        }
+
+        int index = heap[0];
+        T item = (T) items[index];
+
+        size -= 1;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positionOf[heap[0]] = 0;
+            sink(0);
+        }
+
+        indexOf.remove(item);
+        items[index] = null;
+        priorities[index] = null;
+        freeIndices[numFreeIndices++] = index;
+        return item;
+    }
+
+    /**
+     * Changes the priority of the given item. The item takes a new random key, as if it were
+     * removed and added again.
+     *
+     * @param item The item to add.
+     * @param priority The priority corresponding to the item.
+     */
+    public void changePriority(T item, E priority) {
+        Integer index = indexOf.get(item);
+        if (index == null) {
+            throw new IllegalArgumentException(item + " not in PQ.");
+        }
+
+        priorities[index] = priority;
+        keys[index] = random.nextLong();
+        swim(positionOf[index]);
+        sink(positionOf[index]);
+    }
+
+    /**
+     * Returns the number of items in the PQ.
+     *
+     * @return The number of items.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int newIndex() {
+        int index = indexOf.size();
+        if (index == items.length) {
+            int capacity = 2 * items.length;
+            items = Arrays.copyOf(items, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            positionOf = Arrays.copyOf(positionOf, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            freeIndices = Arrays.copyOf(freeIndices, capacity);
+        }
+        return index;
+    }
+
+    private boolean less(int thisIndex, int thatIndex) {
+        int comparison = ((E) priorities[thisIndex]).compareTo((E) priorities[thatIndex]);
+        if (comparison != 0) {
+            return comparison < 0;
+        }
+        if (keys[thisIndex] != keys[thatIndex]) {
+            return keys[thisIndex] < keys[thatIndex];
+        }
+        return thisIndex < thatIndex;
+    }
+
+    private void swim(int position) {
+        int index = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!less(index, heap[parent])) {
+                break;
+            }
+            heap[position] = heap[parent];
+            positionOf[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = index;
+        positionOf[index] = position;
+    }
+
+    private void sink(int position) {
+        int index = heap[position];
+        while (2 * position + 1 < size) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && less(heap[child + 1], heap[child])) {
+                child += 1;
+            }
+            if (!less(heap[child], index)) {
+                break;
+            }
+            heap[position] = heap[child];
+            positionOf[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = index;
+        positionOf[index] = position;
+    }
+
+}
@@ -1,29 +1,39 @@
 package byog.Core.algorithms;
 
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import byog.Core.coordinate.Location;
+import byog.Core.coordinate.Location2D;
 
 /**
  * The world map is used to manage locations in AStar.
  */
 class WorldMap<E extends Location<E>> {
 
-    private final Set<E> locations;
+    /* The most distances cached for locations which are not Location2D. */
+    private static final int MAX_CACHED_DISTANCES = 4096;
 
-    private final Map<E, Map<E, Integer>> cachedDistance;
+    private final Predicate<E> passable;
+
+    private final Map<LocationPair<E>, Integer> cachedDistance;
 
     /**
-     * Constructor with a set of locations.
+     * Constructor with a passability predicate.
      *
-     * @param locations A set of locations.
+     * @param isPassable Whether a location is passable.
      */
-    WorldMap(Set<E> locations) {
-        this.locations = locations;
-        this.cachedDistance = new HashMap<>();
+    WorldMap(Predicate<E> isPassable) {
+        this.passable = isPassable;
+        this.cachedDistance = new LinkedHashMap<LocationPair<E>, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocationPair<E>, Integer> eldest) {
+                return size() > MAX_CACHED_DISTANCES;
+            }
+        };
     }
 
     /**
@@ -45,22 +55,28 @@ class WorldMap<E extends Location<E>> {
     }
 
     /**
-     * Computes the manhattan distance between two locations.
+     * Computes the manhattan distance between two locations. Distances between Location2D
+     * locations are computed directly, and those between other locations are cached, with the
+     * least recently used ones dropped beyond MAX_CACHED_DISTANCES.
      *
      * @param thisLocation One location.
      * @param thatLocation The other location.
      * @return The manhattan distance.
      */
     int manhattanDistance(E thisLocation, E thatLocation) {
-        if (!cachedDistance.containsKey(thisLocation)
-            || !cachedDistance.get(thisLocation).containsKey(thatLocation)) {
-            cachedDistance.putIfAbsent(thisLocation, new HashMap<>());
-            cachedDistance.get(thisLocation).put(
-                thatLocation, thisLocation.manhattanDistance(thatLocation)
-            );
+        if (thisLocation instanceof Location2D) {
+            return Math.abs(thisLocation.getX() - thatLocation.getX())
+                + Math.abs(thisLocation.getY() - thatLocation.getY());
         }
 
-        return cachedDistance.get(thisLocation).get(thatLocation);
+        LocationPair<E> pair = new LocationPair<>(thisLocation, thatLocation);
+        Integer distance = cachedDistance.get(pair);
+        if (distance == null) {
+            distance = thisLocation.manhattanDistance(thatLocation);
+            cachedDistance.put(pair, distance);
+        }
+
+        return distance;
     }
 
     /**
@@ -70,7 +86,38 @@ class WorldMap<E extends Location<E>> {
      * @return If one location is passable.
      */
     boolean isPassable(E location) {
-        return locations.contains(location);
+        return passable.test(location);
+    }
+
+    /**
+     * A pair of locations as the key of a cached distance.
+     */
+    private static class LocationPair<E> {
+
+        private final E thisLocation;
+        private final E thatLocation;
+
+        LocationPair(E thisLocation, E thatLocation) {
+            this.thisLocation = thisLocation;
+            this.thatLocation = thatLocation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * thisLocation.hashCode() + thatLocation.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object that) {
+            if (!(that instanceof LocationPair)) {
+                return false;
+            }
+
+            LocationPair<?> thatPair = (LocationPair<?>) that;
+            return thisLocation.equals(thatPair.thisLocation)
+                && thatLocation.equals(thatPair.thatLocation);
+        }
+
     }
 
 }
@@ -0,0 +1,148 @@
+package byog.Core.batch;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import byog.Core.Game;
+import byog.Core.context.Context;
+import byog.Core.coordinate.Location2D;
+import byog.Core.interaction.User;
+import byog.Core.terrain.Players;
+import byog.Core.terrain.Worlds;
+import byog.Core.terrain.view.Player;
+import byog.Core.terrain.view.World;
+import byog.Core.tiles.Filler;
+import byog.TileEngine.TETile;
+
+/**
+ * Generates the worlds of a range of seeds in parallel on a fork-join pool. Every world is
+ * generated in a context of its own, so it is the same world the game generates for the seed,
+ * whichever thread generates it.
+ *
+ * The contexts are never made the default context. The Location2D locations stay shared by all
+ * threads: they only depend on the shape of the game, which Location2D keeps them for, and a
+ * location never changes apart from computing its neighbour sets, which every thread computes
+ * the same. Initializing Location2D with another shape while worlds are generated is not
+ * supported.
+ */
+public class BatchGenerator implements AutoCloseable {
+
+    /* The most seeds one task generates before it is split. */
+    private static final int SEEDS_PER_TASK = 8;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor with the number of threads to generate worlds in.
+     *
+     * @param parallelism The number of threads.
+     */
+    public BatchGenerator(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Gets the number of threads worlds are generated in.
+     *
+     * @return The number of threads.
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Generates the worlds of the seeds from fromSeed to toSeed, both included. The worlds are
+     * handed to the consumer in the threads that generate them, in no particular order.
+     *
+     * @param fromSeed The first seed.
+     * @param toSeed The last seed.
+     * @param consumer What to do with every world.
+     */
+    public void generate(
+        long fromSeed, long toSeed, Consumer<GeneratedWorld<Location2D>> consumer
+    ) {
+        if (fromSeed > toSeed) {
+            throw new RuntimeException("The first seed is larger than the last seed!");
+        }
+        Location2D.initialize(Game.SHAPE);
+        pool.invoke(new GenerationTask(fromSeed, toSeed, consumer));
+    }
+
+    /**
+     * Generates the world of a seed in the current thread, as the game does for "N" + seed + "S".
+     * Location2D is initialized with the shape of the game first.
+     *
+     * @param seed The seed.
+     * @return The world.
+     */
+    public static GeneratedWorld<Location2D> generate(long seed) {
+        Location2D.initialize(Game.SHAPE);
+        Context<Location2D> context = new Context<>(
+            Game.WIDTH, Game.HEIGHT, Game.HUD_HEIGHT, Location2D.origin(), Game.SHAPE
+        );
+
+        return context.call(() -> {
+            User user = new User();
+            user.setRandom(seed);
+            Context.gameInfo().setUser(user);
+
+            World<Location2D> world = Worlds.generateRandomWorld();
+            Player<Location2D> player = Players.generateRandomPlayer(
+                new ArrayList<>(world.getContent())
+            );
+
+            TETile[][] tiles = new TETile[Game.WIDTH][Game.HEIGHT];
+            Filler.fillBackGround(tiles);
+            Filler.fillWorld(tiles, world);
+            Filler.fillPlayer(tiles, player);
+
+            return new GeneratedWorld<>(seed, world, player, tiles);
+        });
+    }
+
+    /**
+     * Stops the threads.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Generates the worlds of a range of seeds, splitting it among the threads.
+     */
+    private static class GenerationTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 314L;
+
+        private final long fromSeed;
+        private final long toSeed;
+        private final transient Consumer<GeneratedWorld<Location2D>> consumer;
+
+        GenerationTask(long fromSeed, long toSeed, Consumer<GeneratedWorld<Location2D>> consumer) {
+            this.fromSeed = fromSeed;
+            this.toSeed = toSeed;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (toSeed - fromSeed < SEEDS_PER_TASK) {
+                for (long seed = fromSeed; seed <= toSeed; seed++) {
+                    consumer.accept(generate(seed));
+                }
+                return;
+            }
+
+            long middleSeed = fromSeed + (toSeed - fromSeed) / 2;
+            invokeAll(
+                new GenerationTask(fromSeed, middleSeed, consumer),
+                new GenerationTask(middleSeed + 1, toSeed, consumer)
+            );
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+package byog.Core.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import byog.TileEngine.TETile;
+
+/**
+ * Generates the worlds of a range of seeds in parallel and writes either the rendered tiles of
+ * every world, one file per seed, or a line of summary stats per seed, then reports how many
+ * worlds were generated per second and per core.
+ *
+ * Usage: java byog.Core.batch.BatchMain firstSeed lastSeed [--threads N] [--grids directory]
+ */
+public class BatchMain {
+
+    private static final String USAGE =
+        "Usage: BatchMain firstSeed lastSeed [--threads N] [--grids directory]";
+
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length % 2 != 0) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        long fromSeed = 0;
+        long toSeed = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File gridDirectory = null;
+        try {
+            fromSeed = Long.parseLong(args[0]);
+            toSeed = Long.parseLong(args[1]);
+            for (int i = 2; i < args.length; i += 2) {
+                if (args[i].equals("--threads")) {
+                    threads = Integer.parseInt(args[i + 1]);
+                } else if (args[i].equals("--grids")) {
+                    gridDirectory = new File(args[i + 1]);
+                } else {
+                    System.err.println(USAGE);
+                    System.exit(1);
+                }
+            }
+        } catch (NumberFormatException ex) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        if (fromSeed > toSeed || threads < 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        if (toSeed - fromSeed + 1 > Integer.MAX_VALUE) {
+            throw new RuntimeException("Too many seeds!");
+        }
+        int numWorlds = (int) (toSeed - fromSeed + 1);
+
+        if (gridDirectory != null && !gridDirectory.isDirectory() && !gridDirectory.mkdirs()) {
+            throw new RuntimeException("Can not create " + gridDirectory + "!");
+        }
+
+        // stats lines are kept by seed and printed in order at the end
+        String[] stats = gridDirectory == null ? new String[numWorlds] : null;
+        File directory = gridDirectory;
+        long firstSeed = fromSeed;
+
+        long startTime = System.nanoTime();
+        try (BatchGenerator generator = new BatchGenerator(threads)) {
+            generator.generate(fromSeed, toSeed, generatedWorld -> {
+                if (directory != null) {
+                    writeGrid(directory, generatedWorld);
+                } else {
+                    stats[(int) (generatedWorld.getSeed() - firstSeed)] = getStats(generatedWorld);
+                }
+            });
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        if (stats != null) {
+            System.out.println("seed,rooms,hallways,floors,walls");
+            for (String line : stats) {
+                System.out.println(line);
+            }
+        }
+
+        int cores = Math.min(threads, Runtime.getRuntime().availableProcessors());
+        System.err.printf(
+            "%d worlds in %.2f s with %d threads: %.1f worlds/s, %.1f worlds/s per core%n",
+            numWorlds, seconds, threads, numWorlds / seconds, numWorlds / seconds / cores
+        );
+    }
+
+    private static String getStats(GeneratedWorld<?> generatedWorld) {
+        return generatedWorld.getSeed() + "," + generatedWorld.getNumRooms() + ","
+            + generatedWorld.getNumHallways() + "," + generatedWorld.getNumFloors() + ","
+            + generatedWorld.getNumWalls();
+    }
+
+    private static void writeGrid(File directory, GeneratedWorld<?> generatedWorld) {
+        File file = new File(directory, "world-" + generatedWorld.getSeed() + ".txt");
+        try {
+            Files.write(
+                file.toPath(),
+                TETile.toString(generatedWorld.getTiles()).getBytes(StandardCharsets.UTF_8)
+            );
+        } catch (IOException ex) {
+            throw new RuntimeException("Write " + file + " failed!", ex);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package byog.Core.batch;
+
+import byog.Core.coordinate.Location;
+import byog.Core.terrain.concrete.DungeonWorld;
+import byog.Core.terrain.view.Player;
+import byog.Core.terrain.view.World;
+import byog.TileEngine.TETile;
+
+/**
+ * A world generated for a seed, with its player and the tiles it renders to.
+ */
+public class GeneratedWorld<E extends Location<E>> {
+
+    private final long seed;
+    private final World<E> world;
+    private final Player<E> player;
+    private final TETile[][] tiles;
+
+    /**
+     * Constructor with the seed, the world, the player and the rendered tiles.
+     *
+     * @param seed The seed of the world.
+     * @param world The world.
+     * @param player The player in the world.
+     * @param tiles The tiles the world and the player render to.
+     */
+    GeneratedWorld(long seed, World<E> world, Player<E> player, TETile[][] tiles) {
+        this.seed = seed;
+        this.world = world;
+        this.player = player;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Gets the seed of the world.
+     *
+     * @return The seed of the world.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the world.
+     *
+     * @return The world.
+     */
+    public World<E> getWorld() {
+        return world;
+    }
+
+    /**
+     * Gets the player in the world.
+     *
+     * @return The player in the world.
+     */
+    public Player<E> getPlayer() {
+        return player;
+    }
+
+    /**
+     * Gets the tiles the world and the player render to.
+     *
+     * @return The rendered tiles.
+     */
+    public TETile[][] getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Gets the number of rooms in the world, or -1 if the world is not a dungeon.
+     *
+     * @return The number of rooms.
+     */
+    public int getNumRooms() {
+        return world instanceof DungeonWorld ? ((DungeonWorld<E>) world).getRooms().size() : -1;
+    }
+
+    /**
+     * Gets the number of hallways in the world, or -1 if the world is not a dungeon.
+     *
+     * @return The number of hallways.
+     */
+    public int getNumHallways() {
+        return world instanceof DungeonWorld
+            ? ((DungeonWorld<E>) world).getHallways().size()
+            : -1;
+    }
+
+    /**
+     * Gets the number of floor locations in the world.
+     *
+     * @return The number of floor locations.
+     */
+    public int getNumFloors() {
+        return world.getContent().size();
+    }
+
+    /**
+     * Gets the number of wall locations in the world.
+     *
+     * @return The number of wall locations.
+     */
+    public int getNumWalls() {
+        return world.getMargin().size();
+    }
+
+}
@@ -3,6 +3,7 @@ package byog.Core.context;
 import java.util.LinkedHashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import byog.Core.coordinate.Location;
 import byog.Core.interaction.User;
@@ -10,11 +11,16 @@ import byog.Core.terrain.view.Player;
 import byog.Core.terrain.view.World;
 
 /**
- * A context is used to store the global information.
+ * A context is used to store the global information. The global context is the one a thread
+ * is running a task in, see call, or otherwise the default context set with setDefault, so that
+ * worlds can be generated in parallel threads, each in a context of its own. Creating a context
+ * does not make it the default.
  */
 public class Context<E extends Location<E>> {
 
-    private static Context defaultContext;
+    private static volatile Context<?> defaultContext;
+
+    private static final ThreadLocal<Context<?>> CURRENT_CONTEXT = new ThreadLocal<>();
 
     private final int width;
     private final int height;
@@ -47,10 +53,6 @@ public class Context<E extends Location<E>> {
         border = origin.traverseBorder(shape);
         _gameInfo = new GameInfo<>();
         this.archiveFile = null;
-
-        if (Context.defaultContext == null) {
-            Context.defaultContext = this;
-        }
     }
 
     /**
@@ -211,6 +213,26 @@ public class Context<E extends Location<E>> {
         return archiveFile;
     }
 
+    /**
+     * Runs a task with this context as the global context of the current thread.
+     *
+     * @param task The task to run.
+     * @return The result of the task.
+     */
+    public <R> R call(Supplier<R> task) {
+        Context<?> previousContext = CURRENT_CONTEXT.get();
+        CURRENT_CONTEXT.set(this);
+        try {
+            return task.get();
+        } finally {
+            if (previousContext == null) {
+                CURRENT_CONTEXT.remove();
+            } else {
+                CURRENT_CONTEXT.set(previousContext);
+            }
+        }
+    }
+
     /**
      * Sets the global context.
      *
@@ -229,7 +251,7 @@ public class Context<E extends Location<E>> {
      * @return The global width.
      */
     public static <T extends Location<T>> int width() {
-        return ((Context<T>) defaultContext).getWidth();
+        return ((Context<T>) current()).getWidth();
     }
 
     /**
@@ -238,7 +260,7 @@ public class Context<E extends Location<E>> {
      * @return The global height.
      */
     public static <T extends Location<T>> int height() {
-        return ((Context<T>) defaultContext).getHeight();
+        return ((Context<T>) current()).getHeight();
     }
 
     /**
@@ -247,7 +269,7 @@ public class Context<E extends Location<E>> {
      * @return The global hub height.
      */
     public static <T extends Location<T>> int hudHeight() {
-        return ((Context<T>) defaultContext).getHudHeight();
+        return ((Context<T>) current()).getHudHeight();
     }
 
     /**
@@ -256,7 +278,7 @@ public class Context<E extends Location<E>> {
      * @return The global original location.
      */
     public static <T extends Location<T>> T origin() {
-        return ((Context<T>) defaultContext).getOrigin();
+        return ((Context<T>) current()).getOrigin();
     }
 
     /**
@@ -265,7 +287,7 @@ public class Context<E extends Location<E>> {
      * @return The global shape.
      */
     public static <T extends Location<T>> int[] shape() {
-        return ((Context<T>) defaultContext).getShape();
+        return ((Context<T>) current()).getShape();
     }
 
     /**
@@ -274,7 +296,7 @@ public class Context<E extends Location<E>> {
      * @return The global pseudorandom generator.
      */
     public static <T extends Location<T>> Random random() {
-        return ((Context<T>) defaultContext).getRandom();
+        return ((Context<T>) current()).getRandom();
     }
 
     /**
@@ -284,10 +306,10 @@ public class Context<E extends Location<E>> {
      * @return The location at the given coordinate.
      */
     public static <T extends Location<T>> T get(int... coordinate) {
-        if (defaultContext == null) {
+        if (current() == null) {
             throw new NullPointerException("The context has not been initialized!");
         }
-        return ((Context<T>) defaultContext).getLocation(coordinate);
+        return ((Context<T>) current()).getLocation(coordinate);
     }
 
     /**
@@ -296,7 +318,7 @@ public class Context<E extends Location<E>> {
      * @return The content of the global coordinate system.
      */
     public static <T extends Location<T>> Set<T> content() {
-        return ((Context<T>) defaultContext).getContent();
+        return ((Context<T>) current()).getContent();
     }
 
     /**
@@ -305,7 +327,7 @@ public class Context<E extends Location<E>> {
      * @return The border of the global coordinate system.
      */
     public static <T extends Location<T>> Set<T> border() {
-        return ((Context<T>) defaultContext).getBorder();
+        return ((Context<T>) current()).getBorder();
     }
 
     /**
@@ -314,7 +336,7 @@ public class Context<E extends Location<E>> {
      * @return The global game info.
      */
     public static <T extends Location<T>> GameInfo<T> gameInfo() {
-        return ((Context<T>) defaultContext).getGameInfo();
+        return ((Context<T>) current()).getGameInfo();
     }
 
     /**
@@ -323,7 +345,7 @@ public class Context<E extends Location<E>> {
      * @param gameInfo The global game info.
      */
     public static <T extends Location<T>> void setGameInfo(GameInfo<T> gameInfo) {
-        ((Context<T>) defaultContext).overwriteGameInfo(gameInfo);
+        ((Context<T>) current()).overwriteGameInfo(gameInfo);
     }
 
     /**
@@ -332,7 +354,7 @@ public class Context<E extends Location<E>> {
      * @return The global user.
      */
     public static <T extends Location<T>> User user() {
-        return ((Context<T>) defaultContext).getUser();
+        return ((Context<T>) current()).getUser();
     }
 
     /**
@@ -341,7 +363,7 @@ public class Context<E extends Location<E>> {
      * @return The global world.
      */
     public static <T extends Location<T>> World<T> world() {
-        return ((Context<T>) defaultContext).getWorld();
+        return ((Context<T>) current()).getWorld();
     }
 
     /**
@@ -350,7 +372,7 @@ public class Context<E extends Location<E>> {
      * @return The global player.
      */
     public static <T extends Location<T>> Player<T> player() {
-        return ((Context<T>) defaultContext).getPlayer();
+        return ((Context<T>) current()).getPlayer();
     }
 
     /**
@@ -359,7 +381,12 @@ public class Context<E extends Location<E>> {
      * @return The global archive file.
      */
     public static <T extends Location<T>> String archiveFile() {
-        return ((Context<T>) defaultContext).getArchiveFile();
+        return ((Context<T>) current()).getArchiveFile();
+    }
+
+    private static Context<?> current() {
+        Context<?> context = CURRENT_CONTEXT.get();
+        return context != null ? context : defaultContext;
     }
 
 }
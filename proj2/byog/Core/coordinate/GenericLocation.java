@@ -32,8 +32,8 @@ public class GenericLocation implements Location<GenericLocation>, Serializable
 
     private final int[] _coordinate;
 
-    private LinkedHashSet<GenericLocation> neighbours = null;
-    private LinkedHashSet<GenericLocation> closeNeighbours = null;
+    private volatile Set<GenericLocation> neighbours = null;
+    private volatile Set<GenericLocation> closeNeighbours = null;
 
     /**
      * A traverse template to traverse in the GenericLocation coordinate system.
@@ -360,6 +360,7 @@ public class GenericLocation implements Location<GenericLocation>, Serializable
      */
     @Override
     public Set<GenericLocation> getNeighbours() {
+        Set<GenericLocation> neighbours = this.neighbours;
         if (neighbours == null) {
             int[] start = ArrayUtils.sum(_coordinate, ArrayUtils.full(_dimension, -1));
             int[] shape = ArrayUtils.full(_dimension, 3);
@@ -367,17 +368,19 @@ public class GenericLocation implements Location<GenericLocation>, Serializable
                 start, shape, _coordinate, NEIGHBOUR_PROCESS_INTERCEPTOR
             );
 
-            neighbours = new LinkedHashSet<>();
+            LinkedHashSet<GenericLocation> locations = new LinkedHashSet<>();
             for (int[] coordinate : coordinates) {
                 Coordinate coordinateKey = new Coordinate(coordinate);
                 if (!locationCache.containsKey(coordinateKey)) {
                     continue;
                 }
-                neighbours.add(locationCache.get(coordinateKey));
+                locations.add(locationCache.get(coordinateKey));
             }
+            neighbours = Collections.unmodifiableSet(locations);
+            this.neighbours = neighbours;
         }
 
-        return Collections.unmodifiableSet(neighbours);
+        return neighbours;
     }
 
     /**
@@ -387,6 +390,7 @@ public class GenericLocation implements Location<GenericLocation>, Serializable
      */
     @Override
     public Set<GenericLocation> getCloseNeighbours() {
+        Set<GenericLocation> closeNeighbours = this.closeNeighbours;
         if (closeNeighbours == null) {
             int[] start = ArrayUtils.sum(_coordinate, ArrayUtils.full(_dimension, -1));
             int[] shape = ArrayUtils.full(_dimension, 3);
@@ -394,17 +398,19 @@ public class GenericLocation implements Location<GenericLocation>, Serializable
                 start, shape, _coordinate, CLOSE_NEIGHBOUR_PROCESS_INTERCEPTOR
             );
 
-            closeNeighbours = new LinkedHashSet<>();
+            LinkedHashSet<GenericLocation> locations = new LinkedHashSet<>();
             for (int[] coordinate : coordinates) {
                 Coordinate coordinateKey = new Coordinate(coordinate);
                 if (!locationCache.containsKey(coordinateKey)) {
                     continue;
                 }
-                closeNeighbours.add(locationCache.get(coordinateKey));
+                locations.add(locationCache.get(coordinateKey));
             }
+            closeNeighbours = Collections.unmodifiableSet(locations);
+            this.closeNeighbours = closeNeighbours;
         }
 
-        return Collections.unmodifiableSet(closeNeighbours);
+        return closeNeighbours;
     }
 
     /**
@@ -39,20 +39,25 @@ public class Location2D implements Location<Location2D>, Serializable {
 
     private final int[] _coordinate;
 
-    private LinkedHashSet<Location2D> neighbours = null;
-    private LinkedHashSet<Location2D> closeNeighbours = null;
+    private volatile Set<Location2D> neighbours = null;
+    private volatile Set<Location2D> closeNeighbours = null;
 
     /**
-     * Initialize the Location2D coordinate system.
+     * Initialize the Location2D coordinate system. The locations are kept as long as the shape
+     * stays the same, so initializing again with the same shape changes nothing, and threads
+     * generating worlds of that shape can share them.
      *
      * @param shape The shape of the Location2D coordinate system.
      */
-    public static void initialize(int... shape) {
+    public static synchronized void initialize(int... shape) {
         if (shape.length != _dimension) {
             throw new RuntimeException("Invalid shape for Location2D!");
         }
+        if (Arrays.equals(shape, _shape)) {
+            return;
+        }
 
-        Location2D._shape = shape;
+        Location2D._shape = Arrays.copyOf(shape, shape.length);
 
         locationCache = new Location2D[shape[0]][shape[1]];
         for (int i = 0; i < shape[0]; i++) {
@@ -101,6 +106,20 @@ public class Location2D implements Location<Location2D>, Serializable {
         return locationCache[coordinate[0]][coordinate[1]];
     }
 
+    /**
+     * Gets the location with the given index in the Location2D coordinate system, where the
+     * location at coordinate (x, y) has the index x * height + y.
+     *
+     * @param index The given index.
+     * @return The location with the given index.
+     */
+    public static Location2D locateAtIndex(int index) {
+        if (locationCache == null) {
+            throw new RuntimeException("Location2D has not been initialized!");
+        }
+        return locationCache[index / _shape[1]][index % _shape[1]];
+    }
+
     /**
      * Traverse content in the given region.
      *
@@ -193,6 +212,15 @@ public class Location2D implements Location<Location2D>, Serializable {
         return get(1);
     }
 
+    /**
+     * Gets the index of this location, which is x * height + y.
+     *
+     * @return The index of this location.
+     */
+    public int getIndex() {
+        return _coordinate[0] * _shape[1] + _coordinate[1];
+    }
+
     /**
      * Gets the shape of the Location2D coordinate system.
      *
@@ -287,18 +315,21 @@ public class Location2D implements Location<Location2D>, Serializable {
      */
     @Override
     public Set<Location2D> getNeighbours() {
+        Set<Location2D> neighbours = this.neighbours;
         if (neighbours == null) {
-            neighbours = new LinkedHashSet<>();
+            LinkedHashSet<Location2D> locations = new LinkedHashSet<>();
             for (int[] offsetCoordinate : NEIGHBOUR_OFFSETS) {
                 int[] neighbourCoordinate = ArrayUtils.sum(_coordinate, offsetCoordinate);
                 if (!isInShape(neighbourCoordinate)) {
                     continue;
                 }
-                neighbours.add(locationCache[neighbourCoordinate[0]][neighbourCoordinate[1]]);
+                locations.add(locationCache[neighbourCoordinate[0]][neighbourCoordinate[1]]);
             }
+            neighbours = Collections.unmodifiableSet(locations);
+            this.neighbours = neighbours;
         }
 
-        return Collections.unmodifiableSet(neighbours);
+        return neighbours;
     }
 
     /**
@@ -308,18 +339,21 @@ public class Location2D implements Location<Location2D>, Serializable {
      */
     @Override
     public Set<Location2D> getCloseNeighbours() {
+        Set<Location2D> closeNeighbours = this.closeNeighbours;
         if (closeNeighbours == null) {
-            closeNeighbours = new LinkedHashSet<>();
+            LinkedHashSet<Location2D> locations = new LinkedHashSet<>();
             for (int[] offsetCoordinate : CLOSE_NEIGHBOUR_OFFSETS) {
                 int[] neighbourCoordinate = ArrayUtils.sum(_coordinate, offsetCoordinate);
                 if (!isInShape(neighbourCoordinate)) {
                     continue;
                 }
-                closeNeighbours.add(locationCache[neighbourCoordinate[0]][neighbourCoordinate[1]]);
+                locations.add(locationCache[neighbourCoordinate[0]][neighbourCoordinate[1]]);
             }
+            closeNeighbours = Collections.unmodifiableSet(locations);
+            this.closeNeighbours = closeNeighbours;
         }
 
-        return Collections.unmodifiableSet(closeNeighbours);
+        return closeNeighbours;
     }
 
     /**
@@ -1,6 +1,8 @@
 package byog.Core.terrain;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -9,9 +11,11 @@ import java.util.Set;
 import byog.Core.algorithms.AStar;
 import byog.Core.algorithms.AdjacencyListGraph;
 import byog.Core.algorithms.Edge;
+import byog.Core.algorithms.GridAStar;
 import byog.Core.algorithms.Prim;
 import byog.Core.context.Context;
 import byog.Core.coordinate.Location;
+import byog.Core.coordinate.Location2D;
 import byog.Core.terrain.concrete.NarrowHallway;
 import byog.Core.terrain.view.Hallway;
 import byog.Core.terrain.view.Room;
@@ -41,26 +45,29 @@ public class Hallways {
     private static <E extends Location<E>> LinkedHashSet<Hallway<E>> connectRoomsWithHallways(
         List<Room<E>> rooms, List<Edge> roomIndexPairs
     ) {
+        // locations on a grid are connected by the specialized AStar, as long as they are those
+        // Location2D currently keeps, whose cells are laid out in the shape of the context
+        if (Context.origin() instanceof Location2D && Context.origin() == Location2D.origin()) {
+            return connectRoomsOnGrid(rooms, roomIndexPairs);
+        }
+
         // hallway paths
         LinkedHashSet<Hallway<E>> hallways = new LinkedHashSet<>();
 
-        // Connect rooms with hallways
+        // Connect rooms with hallways through the skeleton and the two rooms
         LinkedHashSet<E> skeletonLocations = getSkeletonLocations(rooms);
         for (Edge edge : roomIndexPairs) {
             Room<E> thisRoom = rooms.get(edge.either());
             Room<E> thatRoom = rooms.get(edge.other());
 
             if (!thisRoom.isMargin(thatRoom)) {
-                List<Room<E>> includedRooms = new ArrayList<Room<E>>() {
-                    {
-                        add(thisRoom);
-                        add(thatRoom);
-                    }
-                };
-                LinkedHashSet<E> passableLocations = getPassableLocations(
-                    skeletonLocations, includedRooms
+                Set<E> thisContent = thisRoom.getContent();
+                Set<E> thatContent = thatRoom.getContent();
+                AStar<E> aStar = new AStar<>(
+                    location -> skeletonLocations.contains(location)
+                        || thisContent.contains(location) || thatContent.contains(location),
+                    Context.random()
                 );
-                AStar<E> aStar = new AStar<>(passableLocations, Context.random());
                 Deque<E> locations = aStar.connect(
                     thisRoom.getCenter(), thatRoom.getCenter()
                 );
@@ -70,6 +77,48 @@ public class Hallways {
         return hallways;
     }
 
+    private static <E extends Location<E>> LinkedHashSet<Hallway<E>> connectRoomsOnGrid(
+        List<Room<E>> rooms, List<Edge> roomIndexPairs
+    ) {
+        // hallway paths
+        LinkedHashSet<Hallway<E>> hallways = new LinkedHashSet<>();
+
+        // the skeleton and the room of every cell, shared by all hallways
+        int[] shape = Context.shape();
+        BitSet skeletonCells = getSkeletonCells(rooms);
+        int[] roomOfCell = new int[shape[0] * shape[1]];
+        Arrays.fill(roomOfCell, -1);
+        for (int i = 0; i < rooms.size(); i++) {
+            for (E location : rooms.get(i).getContent()) {
+                roomOfCell[cellOf(location)] = i;
+            }
+        }
+
+        // Connect rooms with hallways through the skeleton and the two rooms
+        GridAStar gridAStar = new GridAStar(shape[0], shape[1], Context.random());
+        for (Edge edge : roomIndexPairs) {
+            int thisIndex = edge.either();
+            int thatIndex = edge.other();
+            Room<E> thisRoom = rooms.get(thisIndex);
+            Room<E> thatRoom = rooms.get(thatIndex);
+
+            if (!thisRoom.isMargin(thatRoom)) {
+                int[] cells = gridAStar.connect(
+                    cellOf(thisRoom.getCenter()),
+                    cellOf(thatRoom.getCenter()),
+                    cell -> skeletonCells.get(cell)
+                        || roomOfCell[cell] == thisIndex || roomOfCell[cell] == thatIndex
+                );
+                LinkedHashSet<E> locations = new LinkedHashSet<>();
+                for (int cell : cells) {
+                    locations.add(locateAtCell(cell));
+                }
+                hallways.add(new NarrowHallway<>(locations));
+            }
+        }
+        return hallways;
+    }
+
     private static <E extends Location<E>> List<Edge> getRoomIndexPairs(List<Room<E>> rooms) {
         int[][] adjacencyMatrixGraph = new int[rooms.size()][rooms.size()];
         for (int i = 0; i < rooms.size(); i++) {
@@ -102,14 +151,30 @@ public class Hallways {
         return skeletonLocations;
     }
 
-    private static <E extends Location<E>> LinkedHashSet<E> getPassableLocations(
-        LinkedHashSet<E> skeletonLocations, List<Room<E>> includedRooms
-    ) {
-        LinkedHashSet<E> passableLocations = new LinkedHashSet<>(skeletonLocations);
-        for (Room<E> room : includedRooms) {
-            passableLocations.addAll(room.getContent());
+    private static <E extends Location<E>> BitSet getSkeletonCells(List<Room<E>> allRooms) {
+        BitSet skeletonCells = new BitSet();
+        for (E location : Context.<E>content()) {
+            skeletonCells.set(cellOf(location));
         }
-        return passableLocations;
+        for (E location : Context.<E>border()) {
+            skeletonCells.clear(cellOf(location));
+        }
+        for (Room<E> room : allRooms) {
+            for (E location : room.getContent()) {
+                skeletonCells.clear(cellOf(location));
+            }
+        }
+
+        return skeletonCells;
+    }
+
+    private static int cellOf(Location<?> location) {
+        return ((Location2D) location).getIndex();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Location<E>> E locateAtCell(int cell) {
+        return (E) Location2D.locateAtIndex(cell);
     }
 
 }
@@ -47,7 +47,18 @@ public class Players {
      * Generates a random player in the random passable locations.
      */
     public static <E extends Location<E>> Player<E> generateRandomPlayer() {
-        E location = (E) passableLocations.get(Context.random().nextInt(passableLocations.size()));
+        return generateRandomPlayer((List<E>) passableLocations);
+    }
+
+    /**
+     * Generates a random player in the given passable locations.
+     *
+     * @param passableLocations All passable locations.
+     */
+    public static <E extends Location<E>> Player<E> generateRandomPlayer(
+        List<E> passableLocations
+    ) {
+        E location = passableLocations.get(Context.random().nextInt(passableLocations.size()));
         return new SmallPlayer<>(location);
     }
 
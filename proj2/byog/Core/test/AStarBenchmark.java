@@ -0,0 +1,73 @@
+package byog.Core.test;
+
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import byog.Core.algorithms.AStar;
+import byog.Core.algorithms.GridAStar;
+import byog.Core.coordinate.Location2D;
+
+/**
+ * Benchmark the AStar algorithms on large open grids. Between opposite corners of an open grid
+ * every location has the same f-score, so the search is all tie-breaking: the frontier holds
+ * thousands of locations of the smallest priority, and one of them is drawn at random each step.
+ */
+public class AStarBenchmark {
+
+    private static final int[] SIZES = {50, 100, 200, 300};
+    private static final int NUM_ROUNDS = 5;
+
+    /**
+     * Times a search between opposite corners of open square grids, with the generic AStar and
+     * with GridAStar, and prints the best time of a few rounds after a warm-up round.
+     */
+    public static void main(String[] args) {
+        for (int size : SIZES) {
+            Location2D.initialize(size, size);
+
+            Set<Location2D> passableLocations = new LinkedHashSet<>();
+            BitSet passableCells = new BitSet();
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    passableLocations.add(Location2D.locateAt(i, j));
+                    passableCells.set(Location2D.locateAt(i, j).getIndex());
+                }
+            }
+            Location2D start = Location2D.locateAt(0, 0);
+            Location2D end = Location2D.locateAt(size - 1, size - 1);
+
+            double bestAStar = Double.MAX_VALUE;
+            double bestGridAStar = Double.MAX_VALUE;
+            for (int round = 0; round <= NUM_ROUNDS; round++) {
+                Random random = new Random(round);
+
+                long startTime = System.nanoTime();
+                int pathLength = new AStar<>(passableLocations, random).connect(start, end).size();
+                double aStarTime = (System.nanoTime() - startTime) / 1e6;
+
+                startTime = System.nanoTime();
+                int gridPathLength = new GridAStar(size, size, random).connect(
+                    start.getIndex(), end.getIndex(), passableCells::get
+                ).length;
+                double gridAStarTime = (System.nanoTime() - startTime) / 1e6;
+
+                if (pathLength != 2 * size - 1 || gridPathLength != 2 * size - 1) {
+                    throw new RuntimeException("Not a shortest path!");
+                }
+                // round 0 warms up
+                if (round > 0) {
+                    bestAStar = Math.min(bestAStar, aStarTime);
+                    bestGridAStar = Math.min(bestGridAStar, gridAStarTime);
+                }
+            }
+
+            System.out.printf(
+                "%dx%d open grid: AStar %.2f ms, GridAStar %.2f ms%n",
+                size, size, bestAStar, bestGridAStar
+            );
+        }
+    }
+
+}
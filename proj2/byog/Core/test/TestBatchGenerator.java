@@ -0,0 +1,73 @@
+package byog.Core.test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import byog.Core.Game;
+import byog.Core.batch.BatchGenerator;
+import byog.Core.coordinate.Location2D;
+import byog.TileEngine.TETile;
+
+/**
+ * Test the generation of worlds in batches.
+ */
+public class TestBatchGenerator {
+
+    /**
+     * Test that a seed gives the same world as the game generates for it.
+     */
+    @Test
+    public void testSameAsGame() {
+        for (long seed = 0; seed < 50; seed++) {
+            String gameWorld = TETile.toString(new Game().playWithInputString("N" + seed + "S"));
+
+            Location2D.initialize(Game.SHAPE);
+            String batchWorld = TETile.toString(BatchGenerator.generate(seed).getTiles());
+            assertEquals(gameWorld, batchWorld);
+        }
+    }
+
+    /**
+     * Test that worlds generated in parallel are the same as those generated one by one.
+     */
+    @Test
+    public void testParallelRepeatable() {
+        Map<Long, String> worlds = new ConcurrentHashMap<>();
+        try (BatchGenerator generator = new BatchGenerator(4)) {
+            generator.generate(1000, 1199, generatedWorld -> worlds.put(
+                generatedWorld.getSeed(), TETile.toString(generatedWorld.getTiles())
+            ));
+        }
+
+        assertEquals(200, worlds.size());
+        for (long seed = 1000; seed < 1200; seed++) {
+            String world = TETile.toString(BatchGenerator.generate(seed).getTiles());
+            assertEquals(world, worlds.get(seed));
+        }
+    }
+
+    /**
+     * Test that worlds are generated in the shape of the game even if Location2D was
+     * initialized with another shape since the generator was created.
+     */
+    @Test
+    public void testOtherShapeInitialized() {
+        String world = TETile.toString(BatchGenerator.generate(7).getTiles());
+
+        Map<Long, String> worlds = new ConcurrentHashMap<>();
+        try (BatchGenerator generator = new BatchGenerator(2)) {
+            Location2D.initialize(20, 10);
+            generator.generate(7, 7, generatedWorld -> worlds.put(
+                generatedWorld.getSeed(), TETile.toString(generatedWorld.getTiles())
+            ));
+        }
+        assertEquals(world, worlds.get(7L));
+
+        Location2D.initialize(20, 10);
+        assertEquals(world, TETile.toString(BatchGenerator.generate(7).getTiles()));
+    }
+
+}
@@ -0,0 +1,81 @@
+package byog.Core.test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import byog.Core.Game;
+import byog.Core.batch.BatchGenerator;
+import byog.Core.batch.GeneratedWorld;
+import byog.Core.context.Context;
+import byog.Core.coordinate.GenericLocation;
+import byog.Core.coordinate.Location2D;
+import byog.Core.interaction.User;
+import byog.Core.terrain.Worlds;
+import byog.Core.terrain.view.World;
+
+/**
+ * Test that nothing piles up from one generated world to the next, so that generating worlds
+ * back to back keeps the heap flat: once a world is dropped, nothing else keeps it alive.
+ */
+public class TestGenerationHeap {
+
+    /* How many times to collect garbage before giving up on a world being collected. */
+    private static final int MAX_COLLECTIONS = 20;
+
+    /**
+     * Test that hundreds of worlds generated back to back are all collected once dropped.
+     */
+    @Test
+    public void testWorldsBackToBack() {
+        List<WeakReference<GeneratedWorld<Location2D>>> worlds = new ArrayList<>();
+        for (long seed = 0; seed < 300; seed++) {
+            worlds.add(new WeakReference<>(BatchGenerator.generate(seed)));
+        }
+        assertAllCollected(worlds);
+    }
+
+    /**
+     * Test that worlds of locations which are not Location2D, whose hallways are connected by
+     * AStar, are all collected once dropped.
+     */
+    @Test
+    public void testGenericWorldsBackToBack() {
+        GenericLocation.initialize(Game.SHAPE);
+
+        List<WeakReference<World<GenericLocation>>> worlds = new ArrayList<>();
+        for (long seed = 0; seed < 50; seed++) {
+            Context<GenericLocation> context = new Context<>(
+                Game.WIDTH, Game.HEIGHT, Game.HUD_HEIGHT, GenericLocation.origin(), Game.SHAPE
+            );
+            long worldSeed = seed;
+            worlds.add(new WeakReference<>(context.call(() -> {
+                User user = new User();
+                user.setRandom(worldSeed);
+                Context.gameInfo().setUser(user);
+                return Worlds.<GenericLocation>generateRandomWorld();
+            })));
+        }
+        assertAllCollected(worlds);
+    }
+
+    private static void assertAllCollected(List<? extends WeakReference<?>> references) {
+        for (int i = 0; i < MAX_COLLECTIONS && !allCollected(references); i++) {
+            System.gc();
+        }
+        assertTrue(allCollected(references));
+    }
+
+    private static boolean allCollected(List<? extends WeakReference<?>> references) {
+        for (WeakReference<?> reference : references) {
+            if (reference.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
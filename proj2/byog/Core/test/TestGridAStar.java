@@ -0,0 +1,131 @@
+package byog.Core.test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import byog.Core.algorithms.GridAStar;
+
+/**
+ * Test the AStar algorithm on grids.
+ */
+public class TestGridAStar {
+
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 20;
+
+    /**
+     * Test that the paths are shortest paths through passable cells.
+     */
+    @Test
+    public void testShortestPath() {
+        Random random = new Random(314);
+        BitSet passable = generatePassableCells(random);
+        GridAStar gridAStar = new GridAStar(WIDTH, HEIGHT, random);
+
+        for (int i = 0; i < 200; i++) {
+            int start = randomPassableCell(passable, random);
+            int end = randomPassableCell(passable, random);
+            int[] path = gridAStar.connect(start, end, passable::get);
+            int distance = breadthFirstDistance(start, end, passable);
+
+            if (distance < 0) {
+                assertArrayEquals(new int[]{end}, path);
+                continue;
+            }
+            assertEquals(distance + 1, path.length);
+            assertEquals(start, path[0]);
+            assertEquals(end, path[path.length - 1]);
+            for (int j = 0; j < path.length; j++) {
+                assertTrue(passable.get(path[j]));
+                if (j > 0) {
+                    assertEquals(1, manhattanDistance(path[j - 1], path[j]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that an unreachable end gives a path of the end only.
+     */
+    @Test
+    public void testNoPath() {
+        BitSet passable = new BitSet();
+        passable.set(0, WIDTH * HEIGHT);
+        // a wall across the grid at x = 10
+        passable.clear(10 * HEIGHT, 11 * HEIGHT);
+
+        GridAStar gridAStar = new GridAStar(WIDTH, HEIGHT, new Random(314));
+        int end = 20 * HEIGHT + 5;
+        assertArrayEquals(new int[]{end}, gridAStar.connect(5, end, passable::get));
+    }
+
+    /**
+     * Test that the same seed gives the same paths.
+     */
+    @Test
+    public void testRepeatable() {
+        BitSet passable = new BitSet();
+        passable.set(0, WIDTH * HEIGHT);
+
+        GridAStar thisGridAStar = new GridAStar(WIDTH, HEIGHT, new Random(314));
+        GridAStar thatGridAStar = new GridAStar(WIDTH, HEIGHT, new Random(314));
+        for (int i = 0; i < 100; i++) {
+            int start = i;
+            int end = WIDTH * HEIGHT - 1 - 3 * i;
+            assertTrue(Arrays.equals(
+                thisGridAStar.connect(start, end, passable::get),
+                thatGridAStar.connect(start, end, passable::get)
+            ));
+        }
+    }
+
+    private static BitSet generatePassableCells(Random random) {
+        BitSet passable = new BitSet();
+        for (int cell = 0; cell < WIDTH * HEIGHT; cell++) {
+            if (random.nextDouble() < 0.7) {
+                passable.set(cell);
+            }
+        }
+        return passable;
+    }
+
+    private static int randomPassableCell(BitSet passable, Random random) {
+        int cell = passable.nextSetBit(random.nextInt(WIDTH * HEIGHT));
+        return cell >= 0 ? cell : passable.nextSetBit(0);
+    }
+
+    private static int manhattanDistance(int thisCell, int thatCell) {
+        return Math.abs(thisCell / HEIGHT - thatCell / HEIGHT)
+            + Math.abs(thisCell % HEIGHT - thatCell % HEIGHT);
+    }
+
+    private static int breadthFirstDistance(int start, int end, BitSet passable) {
+        int[] distTo = new int[WIDTH * HEIGHT];
+        Arrays.fill(distTo, -1);
+        Deque<Integer> toSearch = new ArrayDeque<>();
+        distTo[start] = 0;
+        toSearch.add(start);
+
+        while (!toSearch.isEmpty()) {
+            int cell = toSearch.poll();
+            for (int neighbour : new int[]{cell + 1, cell - 1, cell - HEIGHT, cell + HEIGHT}) {
+                if (neighbour < 0 || neighbour >= WIDTH * HEIGHT
+                    || manhattanDistance(cell, neighbour) != 1
+                    || !passable.get(neighbour) || distTo[neighbour] >= 0) {
+                    continue;
+                }
+                distTo[neighbour] = distTo[cell] + 1;
+                toSearch.add(neighbour);
+            }
+        }
+
+        return distTo[end];
+    }
+
+}
@@ -0,0 +1,71 @@
+package byog.Core.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import byog.Core.algorithms.RandomHeapPQ;
+
+/**
+ * Test the priority queue with random tie-breaking.
+ */
+public class TestRandomHeapPQ {
+
+    /**
+     * Test that items come out by priority, with changed priorities taken into account.
+     */
+    @Test
+    public void testOrder() {
+        Random random = new Random(314);
+        RandomHeapPQ<Integer, Integer> pq = new RandomHeapPQ<>(new Random(314));
+        Map<Integer, Integer> priorities = new HashMap<>();
+        for (int item = 0; item < 1000; item++) {
+            priorities.put(item, random.nextInt(10));
+            pq.add(item, priorities.get(item));
+        }
+        for (int i = 0; i < 300; i++) {
+            int item = random.nextInt(1000);
+            priorities.put(item, random.nextInt(10));
+            pq.set(item, priorities.get(item));
+        }
+
+        int lastPriority = Integer.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(1000 - i, pq.size());
+            int item = pq.getRandomSmallest();
+            assertEquals(item, (int) pq.removeRandomSmallest());
+            assertFalse(pq.contains(item));
+            assertTrue(priorities.get(item) >= lastPriority);
+            lastPriority = priorities.remove(item);
+        }
+        assertTrue(priorities.isEmpty());
+    }
+
+    /**
+     * Test that ties are broken the same way for the same seed, and differently for another.
+     */
+    @Test
+    public void testRepeatable() {
+        assertEquals(removeTies(314), removeTies(314));
+        assertNotEquals(removeTies(314), removeTies(315));
+    }
+
+    private static List<Integer> removeTies(long seed) {
+        RandomHeapPQ<Integer, Integer> pq = new RandomHeapPQ<>(new Random(seed));
+        for (int item = 0; item < 100; item++) {
+            pq.add(item, 0);
+        }
+
+        List<Integer> items = new ArrayList<>();
+        while (pq.size() > 0) {
+            items.add(pq.removeRandomSmallest());
+        }
+        return items;
+    }
+
+}
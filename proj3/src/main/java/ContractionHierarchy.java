@@ -0,0 +1,493 @@
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * Contraction hierarchy over a GraphDB, for routing queries that only touch a few hundred
+ * vertices however long the route is.
+ *
+ * Vertices are contracted one at a time, least important first. Contracting v removes it from
+ * the graph and adds a shortcut u-w, remembering v as its middle vertex, for every pair of
+ * neighbours u and w whose shortest path goes through v. Every shortest path then has a version
+ * that only climbs to higher-ranked vertices and then descends, so a query runs two Dijkstra
+ * searches, from the start and from the destination, over upward edges only.
+ *
+ * Roads are two-way, so the hierarchy keeps a single upward graph in compressed-sparse-row
+ * form: the upward edges of v go to upTargets[upOffsets[v]] to upTargets[upOffsets[v + 1] - 1].
+ * Build it offline with the main method; GraphDB picks it up from next to its snapshot, and
+ * Router uses it when asked for Heuristic.CONTRACTION_HIERARCHY.
+ */
+class ContractionHierarchy {
+    /** Most vertices a witness search settles before giving up and adding the shortcut. */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    /**
+     * Settle limit when only estimating the shortcuts of a vertex to order the contraction, which
+     * happens far more often than contracting and only needs to be roughly right.
+     */
+    private static final int ESTIMATE_SETTLE_LIMIT = 40;
+
+    /** Contraction order of each vertex; upward edges go to higher ranks. */
+    final int[] ranks;
+    final int[] upOffsets;
+    final int[] upTargets;
+    final double[] upWeights;
+    /** Middle vertex of each upward edge that is a shortcut, -1 for roads of the graph. */
+    final int[] upMiddles;
+
+    /**
+     * Wraps a built hierarchy.
+     * @param ranks The contraction order of each vertex.
+     * @param upOffsets The first upward edge of each vertex.
+     * @param upTargets The vertex each upward edge leads to.
+     * @param upWeights The length of each upward edge in miles.
+     * @param upMiddles The middle vertex of each shortcut, -1 for roads.
+     */
+    ContractionHierarchy(int[] ranks, int[] upOffsets, int[] upTargets, double[] upWeights,
+                         int[] upMiddles) {
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+    }
+
+    /**
+     * Number of shortcuts in the hierarchy.
+     * @return The number of upward edges that are not roads.
+     */
+    int numShortcuts() {
+        int count = 0;
+        for (int m : upMiddles) {
+            if (m >= 0) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the shortest route between two vertices.
+     * @param g The graph the hierarchy was built for.
+     * @param s The index of the start vertex.
+     * @param t The index of the destination vertex.
+     * @return The route with its shortcuts unpacked, with an empty path if t is unreachable.
+     */
+    Router.Route query(GraphDB g, int s, int t) {
+        return Query.borrow(ranks.length).run(this, g, s, t);
+    }
+
+    /**
+     * Expands the edge from a to b into the roads it stands for, and adds the vertices after a,
+     * up to and including b, to the front of the path if front is true, or to its back.
+     */
+    private void unpack(GraphDB g, int a, int b, LinkedList<Long> path, boolean front) {
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = a;
+        stack[size++] = b;
+        LinkedList<Long> expanded = new LinkedList<>();
+        while (size > 0) {
+            int y = stack[--size];
+            int x = stack[--size];
+            int m = upMiddles[edgeBetween(x, y)];
+            if (m < 0) {
+                expanded.add(g.idAt(y));
+                continue;
+            }
+            if (size + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            /* Push the second half first so the first half is expanded first. */
+            stack[size++] = m;
+            stack[size++] = y;
+            stack[size++] = x;
+            stack[size++] = m;
+        }
+        if (front) {
+            path.addAll(0, expanded);
+        } else {
+            path.addAll(expanded);
+        }
+    }
+
+    /**
+     * Returns the upward edge between two vertices, stored at whichever has the lower rank.
+     */
+    private int edgeBetween(int x, int y) {
+        int from = ranks[x] < ranks[y] ? x : y;
+        int to = from == x ? y : x;
+        for (int e = upOffsets[from]; e < upOffsets[from + 1]; e += 1) {
+            if (upTargets[e] == to) {
+                return e;
+            }
+        }
+        throw new IllegalStateException("No edge between vertices " + x + " and " + y + ".");
+    }
+
+    /**
+     * Contracts every vertex of a graph.
+     * @param g The cleaned graph.
+     * @return The contraction hierarchy of the graph.
+     */
+    static ContractionHierarchy build(GraphDB g) {
+        return new Builder(g).build();
+    }
+
+    /**
+     * Builds the hierarchy of a graph and saves it next to the graph's snapshot.
+     * @param args The path of the OSM file, berkeley-2018.osm.xml by default.
+     */
+    public static void main(String[] args) {
+        String dbPath = args.length > 0 ? args[0] : "../library-sp18/data/berkeley-2018.osm.xml";
+        GraphDB g = new GraphDB(dbPath);
+        long start = System.nanoTime();
+        ContractionHierarchy ch = build(g);
+        System.out.println(String.format("Contracted %d vertices in %d ms, adding %d shortcuts.",
+                g.size(), (System.nanoTime() - start) / 1000000, ch.numShortcuts()));
+        GraphSnapshot.saveHierarchy(ch, g, new java.io.File(dbPath));
+    }
+
+    /**
+     * Buffers of a bidirectional query, kept per thread. Instead of clearing the arrays before
+     * every query, each query gets a new stamp, and an entry only counts if it carries the
+     * current stamp, as in Router.
+     */
+    private static final class Query {
+        private static final ThreadLocal<Query> BUFFERS = ThreadLocal.withInitial(Query::new);
+
+        private int stamp = 0;
+        /** distF[v] and parentF[v] are valid if reachedF[v] == stamp; likewise backwards. */
+        private double[] distF = new double[0];
+        private double[] distB = new double[0];
+        private int[] parentF = new int[0];
+        private int[] parentB = new int[0];
+        private int[] reachedF = new int[0];
+        private int[] reachedB = new int[0];
+
+        static Query borrow(int capacity) {
+            Query query = BUFFERS.get();
+            if (query.reachedF.length < capacity) {
+                query.distF = new double[capacity];
+                query.distB = new double[capacity];
+                query.parentF = new int[capacity];
+                query.parentB = new int[capacity];
+                query.reachedF = new int[capacity];
+                query.reachedB = new int[capacity];
+                query.stamp = 0;
+            }
+            return query;
+        }
+
+        Router.Route run(ContractionHierarchy ch, GraphDB g, int s, int t) {
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(reachedF, 0);
+                Arrays.fill(reachedB, 0);
+                stamp = 0;
+            }
+            stamp += 1;
+            distF[s] = 0;
+            parentF[s] = -1;
+            reachedF[s] = stamp;
+            distB[t] = 0;
+            parentB[t] = -1;
+            reachedB[t] = stamp;
+
+            int n = ch.ranks.length;
+            IndexedMinHeap fringeF = IndexedMinHeap.borrow(n);
+            IndexedMinHeap fringeB = IndexedMinHeap.borrow(n);
+            fringeF.put(s, 0);
+            fringeB.put(t, 0);
+            double best = Double.POSITIVE_INFINITY;
+            int meet = -1;
+            int settled = 0;
+            try {
+                while (true) {
+                    /* A direction is done once nothing on its fringe can beat the best meeting. */
+                    boolean forwardDone = fringeF.isEmpty() || fringeF.peekPriority() >= best;
+                    boolean backwardDone = fringeB.isEmpty() || fringeB.peekPriority() >= best;
+                    if (forwardDone && backwardDone) {
+                        break;
+                    }
+                    boolean forward = backwardDone
+                            || !forwardDone && fringeF.peekPriority() <= fringeB.peekPriority();
+                    IndexedMinHeap fringe = forward ? fringeF : fringeB;
+                    double[] dist = forward ? distF : distB;
+                    int[] parent = forward ? parentF : parentB;
+                    int[] reached = forward ? reachedF : reachedB;
+                    double[] otherDist = forward ? distB : distF;
+                    int[] otherReached = forward ? reachedB : reachedF;
+
+                    int v = fringe.poll();
+                    settled += 1;
+                    if (otherReached[v] == stamp && dist[v] + otherDist[v] < best) {
+                        best = dist[v] + otherDist[v];
+                        meet = v;
+                    }
+                    for (int e = ch.upOffsets[v]; e < ch.upOffsets[v + 1]; e += 1) {
+                        int w = ch.upTargets[e];
+                        double d = dist[v] + ch.upWeights[e];
+                        if (reached[w] != stamp || d < dist[w]) {
+                            dist[w] = d;
+                            parent[w] = v;
+                            reached[w] = stamp;
+                            fringe.put(w, d);
+                        }
+                    }
+                }
+            } finally {
+                IndexedMinHeap.release(fringeF);
+                IndexedMinHeap.release(fringeB);
+            }
+
+            LinkedList<Long> path = new LinkedList<>();
+            if (meet >= 0) {
+                /* Unpack the upward half backwards from the meeting vertex, then the other. */
+                for (int v = meet; parentF[v] != -1; v = parentF[v]) {
+                    ch.unpack(g, parentF[v], v, path, true);
+                }
+                path.addFirst(g.idAt(s));
+                for (int v = meet; parentB[v] != -1; v = parentB[v]) {
+                    ch.unpack(g, v, parentB[v], path, false);
+                }
+            }
+            return new Router.Route(path, best, settled);
+        }
+    }
+
+    /**
+     * The graph being contracted, as growable adjacency arrays per vertex.
+     */
+    private static class Builder {
+        private final int n;
+        private final int[][] neighbours;
+        private final double[][] lengths;
+        private final int[][] middles;
+        private final int[] degrees;
+
+        private final int[] contractedNeighbours;
+        private final int[] ranks;
+
+        /* Upward edges, recorded as each vertex is contracted. */
+        private int[] upFroms = new int[16];
+        private int[] upTargets = new int[16];
+        private double[] upWeights = new double[16];
+        private int[] upMiddles = new int[16];
+        private int numUp = 0;
+
+        /* Witness search state, reset through the touched list between searches. */
+        private final double[] witnessDist;
+        private final int[] touched;
+        private int numTouched = 0;
+        private final IndexedMinHeap witnessFringe;
+
+        Builder(GraphDB g) {
+            n = g.size();
+            neighbours = new int[n][];
+            lengths = new double[n][];
+            middles = new int[n][];
+            degrees = new int[n];
+            for (int v = 0; v < n; v += 1) {
+                int capacity = Math.max(1, g.edgesTo(v) - g.edgesFrom(v));
+                neighbours[v] = new int[capacity];
+                lengths[v] = new double[capacity];
+                middles[v] = new int[capacity];
+                for (int e = g.edgesFrom(v); e < g.edgesTo(v); e += 1) {
+                    addOrShorten(v, g.target(e), g.weight(e), -1);
+                }
+            }
+            contractedNeighbours = new int[n];
+            ranks = new int[n];
+            witnessDist = new double[n];
+            Arrays.fill(witnessDist, Double.POSITIVE_INFINITY);
+            touched = new int[n];
+            witnessFringe = new IndexedMinHeap(n);
+        }
+
+        ContractionHierarchy build() {
+            IndexedMinHeap order = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v += 1) {
+                order.put(v, priority(v));
+            }
+            int rank = 0;
+            while (!order.isEmpty()) {
+                /* Priorities go stale as the graph changes; recheck before contracting. */
+                int v = order.peek();
+                order.put(v, priority(v));
+                if (order.peek() != v) {
+                    continue;
+                }
+                order.poll();
+                contract(v, true, WITNESS_SETTLE_LIMIT);
+                ranks[v] = rank;
+                rank += 1;
+                /* Adjacency lists only hold uncontracted vertices, so these all rank above v. */
+                for (int i = 0; i < degrees[v]; i += 1) {
+                    int u = neighbours[v][i];
+                    addUpEdge(v, u, lengths[v][i], middles[v][i]);
+                    contractedNeighbours[u] += 1;
+                    remove(u, v);
+                }
+                /* The neighbours are the vertices whose priorities changed the most. */
+                for (int i = 0; i < degrees[v]; i += 1) {
+                    int u = neighbours[v][i];
+                    order.put(u, priority(u));
+                }
+            }
+
+            int[] offsets = new int[n + 1];
+            for (int e = 0; e < numUp; e += 1) {
+                offsets[upFroms[e] + 1] += 1;
+            }
+            for (int v = 0; v < n; v += 1) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] targets = new int[numUp];
+            double[] weights = new double[numUp];
+            int[] mids = new int[numUp];
+            int[] next = Arrays.copyOf(offsets, n);
+            for (int e = 0; e < numUp; e += 1) {
+                int k = next[upFroms[e]]++;
+                targets[k] = upTargets[e];
+                weights[k] = upWeights[e];
+                mids[k] = upMiddles[e];
+            }
+            return new ContractionHierarchy(ranks, offsets, targets, weights, mids);
+        }
+
+        /**
+         * Edge difference plus the number of contracted neighbours, which keeps contraction
+         * spread evenly over the graph.
+         */
+        private double priority(int v) {
+            return contract(v, false, ESTIMATE_SETTLE_LIMIT) - degrees[v] + contractedNeighbours[v];
+        }
+
+        /**
+         * Finds the shortcuts contracting v needs, and adds them if apply is true.
+         * @return The number of shortcuts needed.
+         */
+        private int contract(int v, boolean apply, int settleLimit) {
+            int shortcuts = 0;
+            for (int i = 0; i < degrees[v]; i += 1) {
+                int u = neighbours[v][i];
+                double maxVia = -1;
+                for (int j = i + 1; j < degrees[v]; j += 1) {
+                    maxVia = Math.max(maxVia, lengths[v][i] + lengths[v][j]);
+                }
+                if (maxVia < 0) {
+                    continue;
+                }
+                witnessSearch(u, v, maxVia, settleLimit);
+                for (int j = i + 1; j < degrees[v]; j += 1) {
+                    int w = neighbours[v][j];
+                    double via = lengths[v][i] + lengths[v][j];
+                    if (w == u || witnessDist[w] <= via) {
+                        continue;
+                    }
+                    shortcuts += 1;
+                    if (apply) {
+                        addOrShorten(u, w, via, v);
+                        addOrShorten(w, u, via, v);
+                    }
+                }
+                resetWitnessSearch();
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Dijkstra from u that avoids v, up to a distance bound and a number of settled vertices.
+         */
+        private void witnessSearch(int u, int v, double bound, int settleLimit) {
+            IndexedMinHeap fringe = witnessFringe;
+            fringe.clear();
+            witnessDist[u] = 0;
+            touched[numTouched++] = u;
+            fringe.put(u, 0);
+            int settled = 0;
+            while (!fringe.isEmpty() && settled < settleLimit) {
+                int x = fringe.poll();
+                if (witnessDist[x] > bound) {
+                    break;
+                }
+                settled += 1;
+                for (int i = 0; i < degrees[x]; i += 1) {
+                    int y = neighbours[x][i];
+                    if (y == v) {
+                        continue;
+                    }
+                    double d = witnessDist[x] + lengths[x][i];
+                    if (d < witnessDist[y]) {
+                        if (witnessDist[y] == Double.POSITIVE_INFINITY) {
+                            touched[numTouched++] = y;
+                        }
+                        witnessDist[y] = d;
+                        fringe.put(y, d);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes the edge u-w, so that later searches do not scan contracted vertices.
+         */
+        private void remove(int u, int w) {
+            for (int i = 0; i < degrees[u]; i += 1) {
+                if (neighbours[u][i] == w) {
+                    int last = degrees[u] - 1;
+                    neighbours[u][i] = neighbours[u][last];
+                    lengths[u][i] = lengths[u][last];
+                    middles[u][i] = middles[u][last];
+                    degrees[u] = last;
+                    return;
+                }
+            }
+        }
+
+        private void resetWitnessSearch() {
+            for (int i = 0; i < numTouched; i += 1) {
+                witnessDist[touched[i]] = Double.POSITIVE_INFINITY;
+            }
+            numTouched = 0;
+        }
+
+        /**
+         * Adds the edge u-w, or shortens it if it already exists and is longer.
+         */
+        private void addOrShorten(int u, int w, double length, int middle) {
+            for (int i = 0; i < degrees[u]; i += 1) {
+                if (neighbours[u][i] == w) {
+                    if (length < lengths[u][i]) {
+                        lengths[u][i] = length;
+                        middles[u][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (degrees[u] == neighbours[u].length) {
+                int capacity = 2 * neighbours[u].length;
+                neighbours[u] = Arrays.copyOf(neighbours[u], capacity);
+                lengths[u] = Arrays.copyOf(lengths[u], capacity);
+                middles[u] = Arrays.copyOf(middles[u], capacity);
+            }
+            neighbours[u][degrees[u]] = w;
+            lengths[u][degrees[u]] = length;
+            middles[u][degrees[u]] = middle;
+            degrees[u] += 1;
+        }
+
+        private void addUpEdge(int from, int to, double weight, int middle) {
+            if (numUp == upFroms.length) {
+                int capacity = 2 * upFroms.length;
+                upFroms = Arrays.copyOf(upFroms, capacity);
+                upTargets = Arrays.copyOf(upTargets, capacity);
+                upWeights = Arrays.copyOf(upWeights, capacity);
+                upMiddles = Arrays.copyOf(upMiddles, capacity);
+            }
+            upFroms[numUp] = from;
+            upTargets[numUp] = to;
+            upWeights[numUp] = weight;
+            upMiddles[numUp] = middle;
+            numUp += 1;
+        }
+    }
+}
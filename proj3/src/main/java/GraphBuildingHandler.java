@@ -38,13 +38,47 @@ public class GraphBuildingHandler extends DefaultHandler {
                     "secondary_link", "tertiary_link"));
     private String activeState = "";
     private final GraphDB g;
+    /** Sorted ids of the nodes to stage even if they are unnamed, or null to stage all nodes. */
+    private final long[] roadNodes;
+    /** Node references of the way currently being parsed, in wayNodes[0..wayLength). */
+    private long[] wayNodes = new long[16];
+    private int wayLength = 0;
+    /** Whether the way currently being parsed is a road we can route on. */
+    private boolean validWay = false;
+    /** Name of the way currently being parsed, or null if it has none. */
+    private String wayName = null;
+    /** Id, coordinates and name (null if none) of the node currently being parsed. */
+    private long nodeId;
+    private double nodeLon;
+    private double nodeLat;
+    private String nodeName = null;
 
     /**
      * Create a new GraphBuildingHandler.
      * @param g The graph to populate with the XML data.
      */
     public GraphBuildingHandler(GraphDB g) {
+        this(g, null);
+    }
+
+    /**
+     * Create a new GraphBuildingHandler that only stages some of the nodes.
+     * @param g The graph to populate with the XML data.
+     * @param roadNodes The sorted ids of the nodes on roads, as collected by RoadNodeCollector;
+     *                  other nodes are only staged if they are named. Null to stage all nodes.
+     */
+    GraphBuildingHandler(GraphDB g, long[] roadNodes) {
         this.g = g;
+        this.roadNodes = roadNodes;
+    }
+
+    /**
+     * Returns whether ways with a highway tag are roads we can route on.
+     * @param highway The value of the highway tag.
+     * @return Whether the highway type is allowed.
+     */
+    static boolean isRoad(String highway) {
+        return ALLOWED_HIGHWAY_TYPES.contains(highway);
     }
 
     /**
@@ -68,51 +102,38 @@ public class GraphBuildingHandler extends DefaultHandler {
         if (qName.equals("node")) {
             /* We encountered a new <node...> tag. */
             activeState = "node";
-//            System.out.println("Node id: " + attributes.getValue("id"));
-//            System.out.println("Node lon: " + attributes.getValue("lon"));
-//            System.out.println("Node lat: " + attributes.getValue("lat"));
-
-            /* TODO Use the above information to save a "node" to somewhere. */
-            /* Hint: A graph-like structure would be nice. */
+            nodeId = Long.parseLong(attributes.getValue("id"));
+            nodeLon = Double.parseDouble(attributes.getValue("lon"));
+            nodeLat = Double.parseDouble(attributes.getValue("lat"));
+            nodeName = null;
 
         } else if (qName.equals("way")) {
             /* We encountered a new <way...> tag. */
             activeState = "way";
-//            System.out.println("Beginning a way...");
+            wayLength = 0;
+            validWay = false;
+            wayName = null;
         } else if (activeState.equals("way") && qName.equals("nd")) {
-            /* While looking at a way, we found a <nd...> tag. */
-            //System.out.println("Id of a node in this way: " + attributes.getValue("ref"));
-
-            /* TODO Use the above id to make "possible" connections between the nodes in this way */
-            /* Hint1: It would be useful to remember what was the last node in this way. */
-            /* Hint2: Not all ways are valid. So, directly connecting the nodes here would be
-            cumbersome since you might have to remove the connections if you later see a tag that
-            makes this way invalid. Instead, think of keeping a list of possible connections and
-            remember whether this way is valid or not. */
+            /* While looking at a way, we found a <nd...> tag. The tags that decide whether the
+            way is valid may come after its nodes, so only remember the node for now. */
+            if (wayLength == wayNodes.length) {
+                wayNodes = Arrays.copyOf(wayNodes, 2 * wayLength);
+            }
+            wayNodes[wayLength++] = Long.parseLong(attributes.getValue("ref"));
 
         } else if (activeState.equals("way") && qName.equals("tag")) {
             /* While looking at a way, we found a <tag...> tag. */
             String k = attributes.getValue("k");
             String v = attributes.getValue("v");
-            if (k.equals("maxspeed")) {
-                //System.out.println("Max Speed: " + v);
-                /* TODO set the max speed of the "current way" here. */
-            } else if (k.equals("highway")) {
-                //System.out.println("Highway type: " + v);
-                /* TODO Figure out whether this way and its connections are valid. */
-                /* Hint: Setting a "flag" is good enough! */
+            if (k.equals("highway")) {
+                validWay = isRoad(v);
             } else if (k.equals("name")) {
-                //System.out.println("Way Name: " + v);
+                wayName = v;
             }
-//            System.out.println("Tag with k=" + k + ", v=" + v + ".");
         } else if (activeState.equals("node") && qName.equals("tag") && attributes.getValue("k")
                 .equals("name")) {
             /* While looking at a node, we found a <tag...> with k="name". */
-            /* TODO Create a location. */
-            /* Hint: Since we found this <tag...> INSIDE a node, we should probably remember which
-            node this tag belongs to. Remember XML is parsed top-to-bottom, so probably it's the
-            last node that you looked at (check the first if-case). */
-//            System.out.println("Node's name: " + attributes.getValue("v"));
+            nodeName = attributes.getValue("v");
         }
     }
 
@@ -131,9 +152,24 @@ public class GraphBuildingHandler extends DefaultHandler {
     public void endElement(String uri, String localName, String qName) throws SAXException {
         if (qName.equals("way")) {
             /* We are done looking at a way. (We finished looking at the nodes, speeds, etc...)*/
-            /* Hint1: If you have stored the possible connections for this way, here's your
-            chance to actually connect the nodes together if the way is valid. */
-//            System.out.println("Finishing a way...");
+            if (validWay) {
+                int way = g.addWay(wayName);
+                for (int i = 1; i < wayLength; i += 1) {
+                    g.addEdge(wayNodes[i - 1], wayNodes[i], way);
+                }
+            }
+            wayLength = 0;
+            activeState = "";
+        } else if (qName.equals("node")) {
+            /* Only now do we know whether the node is named. */
+            if (nodeName != null || roadNodes == null
+                    || Arrays.binarySearch(roadNodes, nodeId) >= 0) {
+                g.addNode(nodeId, nodeLon, nodeLat);
+            }
+            if (nodeName != null) {
+                g.addLocation(nodeId, nodeName);
+            }
+            activeState = "";
         }
     }
 
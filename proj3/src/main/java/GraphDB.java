@@ -1,12 +1,16 @@
 import org.xml.sax.SAXException;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 /**
  * Graph for storing all of the intersection (vertex) and road (edge) information.
@@ -18,64 +22,529 @@ import java.util.ArrayList;
  * @author Alan Yao, Josh Hug
  */
 public class GraphDB {
-    /** Your instance variables for storing the graph. You should consider
-     * creating helper classes, e.g. Node, Edge, etc. */
+    /** Initial capacity of the staging buffers used while parsing. */
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    /**
+     * Uncompressed extracts larger than this, and all compressed ones, are parsed in two passes,
+     * so that only the nodes on roads are staged.
+     */
+    private static final long TWO_PASS_THRESHOLD_BYTES = 256L << 20;
+
+    /*
+     * Staging buffers filled by GraphBuildingHandler through addNode and addEdge. They hold
+     * every node of the extract, and are released by clean() once the compact layout is built.
+     */
+    private long[] stagedIds = new long[INITIAL_CAPACITY];
+    private double[] stagedLons = new double[INITIAL_CAPACITY];
+    private double[] stagedLats = new double[INITIAL_CAPACITY];
+    private int stagedNodes = 0;
+    private long[] stagedFroms = new long[INITIAL_CAPACITY];
+    private long[] stagedTos = new long[INITIAL_CAPACITY];
+    private int[] stagedEdgeWays = new int[INITIAL_CAPACITY];
+    private int stagedEdges = 0;
+    private int[] stagedWayNameIds = new int[INITIAL_CAPACITY];
+    private int stagedWays = 0;
+    private long[] stagedLocationIds = new long[INITIAL_CAPACITY];
+    private int[] stagedLocationNameIds = new int[INITIAL_CAPACITY];
+    private int stagedLocations = 0;
+    /* Every distinct name is kept once, and ways and locations refer to it by its id. */
+    private HashMap<String, Integer> stagedNameIds = new HashMap<>();
+    private String[] stagedNames = new String[INITIAL_CAPACITY];
+
+    /*
+     * The cleaned graph in compressed-sparse-row form. Vertex i has OSM id ids[i], where ids is
+     * sorted ascending, so an id is resolved to its index with a binary search. The neighbours
+     * of vertex i are targets[offsets[i]] to targets[offsets[i + 1] - 1], weights holds the
+     * great-circle length of each of those edges in miles and edgeWays the index of the way
+     * (into wayNameIds) each edge belongs to.
+     * These arrays are package-private so GraphSnapshot can save and restore them.
+     */
+    long[] ids = new long[0];
+    double[] lons = new double[0];
+    double[] lats = new double[0];
+    int[] offsets = new int[1];
+    int[] targets = new int[0];
+    double[] weights = new double[0];
+    int[] edgeWays = new int[0];
+    /** Name ids of the ways, -1 for unnamed ways. */
+    int[] wayNameIds = new int[0];
+
+    /** The distinct names of ways and locations, by name id, and their cleaned forms. */
+    String[] names = new String[0];
+    String[] cleanNames = new String[0];
+
+    /*
+     * Named OSM nodes, which are kept even if clean() drops them from the graph. Location j is
+     * node locationIds[j] with name id locationNameIds[j], and locationOrder lists the locations
+     * sorted by their cleaned names, breaking ties by id.
+     */
+    long[] locationIds = new long[0];
+    double[] locationLons = new double[0];
+    double[] locationLats = new double[0];
+    int[] locationNameIds = new int[0];
+    int[] locationOrder = new int[0];
+
+    /** Landmark distances for the ALT heuristic, computed by clean(). */
+    Landmarks landmarks = new Landmarks(new int[0], new float[0][]);
+    /** Number of landmarks clean() picks; each costs a Dijkstra search and a float per vertex. */
+    private int numLandmarks = Landmarks.DEFAULT_COUNT;
+
+    /** Contraction hierarchy built offline for this graph, or null if there is none. */
+    private ContractionHierarchy hierarchy = null;
+
+    /** Spatial index over the vertices, rebuilt whenever the arrays above are. */
+    private KDTree spatialIndex = new KDTree(lons, lats);
+
+    /** The initial bearing of each edge in degrees, derived like spatialIndex. */
+    private float[] edgeBearings = new float[0];
+
+    /** Prefix index over the location names, rebuilt whenever the location arrays are. */
+    private LocationIndex locationIndex =
+            new LocationIndex(locationNameIds, names, cleanNames, locationOrder);
 
     /**
      * Example constructor shows how to create and start an XML parser.
      * You do not need to modify this constructor, but you're welcome to do so.
-     * @param dbPath Path to the XML file to be parsed.
+     * @param dbPath Path to the XML file to be parsed, which may be compressed with gzip.
      */
     public GraphDB(String dbPath) {
+        this(dbPath, Landmarks.DEFAULT_COUNT);
+    }
+
+    /**
+     * Loads a graph with a given number of landmarks for the ALT heuristic. If its snapshot has
+     * another number, the landmarks are picked again and the snapshot rewritten.
+     * @param dbPath Path to the XML file to be parsed, which may be compressed with gzip.
+     * @param numLandmarks The number of landmarks, 0 for none.
+     */
+    GraphDB(String dbPath, int numLandmarks) {
+        this.numLandmarks = numLandmarks;
+        File inputFile = new File(dbPath);
+        File snapshotFile = GraphSnapshot.snapshotFor(inputFile);
+        if (GraphSnapshot.load(this, inputFile, snapshotFile)) {
+            if (landmarks.vertices.length != Math.min(numLandmarks, size())) {
+                landmarks = Landmarks.select(this, numLandmarks);
+                GraphSnapshot.save(this, inputFile, snapshotFile);
+            }
+            spatialIndex = new KDTree(lons, lats);
+            edgeBearings = computeBearings();
+            locationIndex = new LocationIndex(locationNameIds, names, cleanNames, locationOrder);
+            hierarchy = GraphSnapshot.loadHierarchy(inputFile, this);
+            return;
+        }
+
+        boolean parsed = false;
         try {
-            File inputFile = new File(dbPath);
-            FileInputStream inputStream = new FileInputStream(inputFile);
-            // GZIPInputStream stream = new GZIPInputStream(inputStream);
-
-            SAXParserFactory factory = SAXParserFactory.newInstance();
-            SAXParser saxParser = factory.newSAXParser();
-            GraphBuildingHandler gbh = new GraphBuildingHandler(this);
-            saxParser.parse(inputStream, gbh);
+            parse(inputFile, OsmInput.isCompressed(inputFile)
+                    || inputFile.length() > TWO_PASS_THRESHOLD_BYTES,
+                    Runtime.getRuntime().availableProcessors());
+            parsed = true;
         } catch (ParserConfigurationException | SAXException | IOException e) {
             e.printStackTrace();
         }
         clean();
+        if (parsed) {
+            GraphSnapshot.save(this, inputFile, snapshotFile);
+            hierarchy = GraphSnapshot.loadHierarchy(inputFile, this);
+        }
+    }
+
+    /**
+     * Creates an empty graph to be populated with addNode and addEdge, then finalized with
+     * clean. Used to build graphs that do not come from an OSM file.
+     */
+    GraphDB() {
+    }
+
+    /**
+     * Stages the nodes, ways and locations of an OSM extract, streaming it through the parser.
+     * @param file The extract, which may be compressed with gzip.
+     * @param twoPass Whether to first collect the nodes on roads in a pass over the ways, so that
+     *                the unnamed nodes off roads are dropped as they are read instead of being
+     *                staged and pruned by clean(). Staging then takes memory proportional to
+     *                the road network rather than to the whole extract.
+     * @throws ParserConfigurationException If no SAX parser is available.
+     * @throws SAXException If the XML is malformed.
+     * @throws IOException If the file can not be read.
+     */
+    void parse(File file, boolean twoPass)
+            throws ParserConfigurationException, SAXException, IOException {
+        parse(file, twoPass, 1);
+    }
+
+    /**
+     * Stages the nodes, ways and locations of an OSM extract on several threads, with a
+     * ParallelOsmLoader. Stages exactly what the single-threaded parse does.
+     * @param file The extract, which may be compressed with gzip.
+     * @param twoPass Whether to stage only the nodes on roads, as in parse(file, twoPass). The
+     *                first pass is not parallel.
+     * @param threads The number of threads to parse on; with 1, GraphBuildingHandler stages the
+     *                extract on the calling thread.
+     * @return The timings of the parallel load by phase, or null if it ran on one thread.
+     * @throws ParserConfigurationException If no SAX parser is available.
+     * @throws SAXException If the XML is malformed.
+     * @throws IOException If the file can not be read.
+     */
+    Map<String, Object> parse(File file, boolean twoPass, int threads)
+            throws ParserConfigurationException, SAXException, IOException {
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+        long[] roadNodes = null;
+        if (twoPass) {
+            RoadNodeCollector collector = new RoadNodeCollector();
+            try (InputStream in = OsmInput.open(file)) {
+                saxParser.parse(in, collector);
+            }
+            roadNodes = collector.nodeIds();
+            saxParser.reset();
+        }
+        if (threads > 1) {
+            ParallelOsmLoader loader = new ParallelOsmLoader(this, roadNodes, threads - 1);
+            loader.load(file);
+            return loader.timings();
+        }
+        try (InputStream in = OsmInput.open(file)) {
+            saxParser.parse(in, new GraphBuildingHandler(this, roadNodes));
+        }
+        return null;
+    }
+
+    /**
+     * Stages a node. Nodes only become vertices of the graph if some edge touches them.
+     * @param id The OSM id of the node.
+     * @param lon The longitude of the node.
+     * @param lat The latitude of the node.
+     */
+    void addNode(long id, double lon, double lat) {
+        if (stagedNodes == stagedIds.length) {
+            int capacity = 2 * stagedIds.length;
+            stagedIds = Arrays.copyOf(stagedIds, capacity);
+            stagedLons = Arrays.copyOf(stagedLons, capacity);
+            stagedLats = Arrays.copyOf(stagedLats, capacity);
+        }
+        stagedIds[stagedNodes] = id;
+        stagedLons[stagedNodes] = lon;
+        stagedLats[stagedNodes] = lat;
+        stagedNodes += 1;
+    }
+
+    /**
+     * Stages a way, to which edges can then be added.
+     * @param name The name of the way, or null if it has none.
+     * @return The index of the way.
+     */
+    int addWay(String name) {
+        if (stagedWays == stagedWayNameIds.length) {
+            stagedWayNameIds = Arrays.copyOf(stagedWayNameIds, 2 * stagedWayNameIds.length);
+        }
+        stagedWayNameIds[stagedWays] = name == null ? -1 : nameId(name);
+        stagedWays += 1;
+        return stagedWays - 1;
+    }
+
+    /**
+     * Stages an undirected edge between two nodes, on an unnamed way of its own.
+     * @param v The OSM id of one end of the edge.
+     * @param w The OSM id of the other end of the edge.
+     */
+    void addEdge(long v, long w) {
+        addEdge(v, w, addWay(null));
+    }
+
+    /**
+     * Stages an undirected edge between two nodes.
+     * @param v The OSM id of one end of the edge.
+     * @param w The OSM id of the other end of the edge.
+     * @param way The index of the way the edge belongs to, as returned by addWay.
+     */
+    void addEdge(long v, long w, int way) {
+        if (stagedEdges == stagedFroms.length) {
+            int capacity = 2 * stagedFroms.length;
+            stagedFroms = Arrays.copyOf(stagedFroms, capacity);
+            stagedTos = Arrays.copyOf(stagedTos, capacity);
+            stagedEdgeWays = Arrays.copyOf(stagedEdgeWays, capacity);
+        }
+        stagedFroms[stagedEdges] = v;
+        stagedTos[stagedEdges] = w;
+        stagedEdgeWays[stagedEdges] = way;
+        stagedEdges += 1;
+    }
+
+    /**
+     * Stages a location, i.e. a named node. The node itself must also be added with addNode.
+     * @param id The OSM id of the node.
+     * @param name The name of the node.
+     */
+    void addLocation(long id, String name) {
+        if (stagedLocations == stagedLocationIds.length) {
+            int capacity = 2 * stagedLocationIds.length;
+            stagedLocationIds = Arrays.copyOf(stagedLocationIds, capacity);
+            stagedLocationNameIds = Arrays.copyOf(stagedLocationNameIds, capacity);
+        }
+        stagedLocationIds[stagedLocations] = id;
+        stagedLocationNameIds[stagedLocations] = nameId(name);
+        stagedLocations += 1;
+    }
+
+    /**
+     * Returns the id of a name, giving it the next id if it is new.
+     * @param name The name.
+     * @return The id of the name.
+     */
+    private int nameId(String name) {
+        Integer id = stagedNameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        int n = stagedNameIds.size();
+        if (n == stagedNames.length) {
+            stagedNames = Arrays.copyOf(stagedNames, 2 * n);
+        }
+        stagedNames[n] = name;
+        stagedNameIds.put(name, n);
+        return n;
     }
 
     /**
      * Helper to process strings into their "cleaned" form, ignoring punctuation and capitalization.
+     * Only the ASCII letters and spaces are kept, and the letters are lower-cased, in one pass
+     * over the string.
      * @param s Input string.
      * @return Cleaned string.
      */
     static String cleanString(String s) {
-        return s.replaceAll("[^a-zA-Z ]", "").toLowerCase();
+        int n = s.length();
+        char[] cleaned = null;
+        int length = 0;
+        for (int i = 0; i < n; i += 1) {
+            char c = s.charAt(i);
+            boolean unchanged = (c >= 'a' && c <= 'z') || c == ' ';
+            if (cleaned == null) {
+                if (unchanged) {
+                    continue;
+                }
+                /* The first character that changes; copy the clean prefix before it. */
+                cleaned = new char[n];
+                s.getChars(0, i, cleaned, 0);
+                length = i;
+            }
+            if (unchanged) {
+                cleaned[length++] = c;
+            } else if (c >= 'A' && c <= 'Z') {
+                cleaned[length++] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return cleaned == null ? s : new String(cleaned, 0, length);
     }
 
     /**
      *  Remove nodes with no connections from the graph.
      *  While this does not guarantee that any two nodes in the remaining graph are connected,
      *  we can reasonably assume this since typically roads are connected.
+     *  Also packs the staged nodes and edges into the compressed-sparse-row layout, so this must
+     *  be called exactly once, after every node and edge has been added.
+     */
+    void clean() {
+        /* Sort the staged nodes by id. OSM extracts are usually sorted already. */
+        long[] sortedIds = Arrays.copyOf(stagedIds, stagedNodes);
+        Arrays.sort(sortedIds);
+        double[] sortedLons = new double[stagedNodes];
+        double[] sortedLats = new double[stagedNodes];
+        for (int i = 0; i < stagedNodes; i += 1) {
+            int k = Arrays.binarySearch(sortedIds, stagedIds[i]);
+            sortedLons[k] = stagedLons[i];
+            sortedLats[k] = stagedLats[i];
+        }
+
+        /* Resolve the edge ends, dropping edges to nodes missing from the extract. */
+        int[] froms = new int[stagedEdges];
+        int[] tos = new int[stagedEdges];
+        int[] ways = new int[stagedEdges];
+        int[] degrees = new int[stagedNodes];
+        int numEdges = 0;
+        for (int e = 0; e < stagedEdges; e += 1) {
+            int v = Arrays.binarySearch(sortedIds, stagedFroms[e]);
+            int w = Arrays.binarySearch(sortedIds, stagedTos[e]);
+            if (v < 0 || w < 0 || v == w) {
+                continue;
+            }
+            froms[numEdges] = v;
+            tos[numEdges] = w;
+            ways[numEdges] = stagedEdgeWays[e];
+            degrees[v] += 1;
+            degrees[w] += 1;
+            numEdges += 1;
+        }
+
+        /* Keep only the nodes that have at least one connection. */
+        int[] newIndex = new int[stagedNodes];
+        int numVertices = 0;
+        for (int i = 0; i < stagedNodes; i += 1) {
+            newIndex[i] = degrees[i] > 0 ? numVertices++ : -1;
+        }
+        ids = new long[numVertices];
+        lons = new double[numVertices];
+        lats = new double[numVertices];
+        offsets = new int[numVertices + 1];
+        for (int i = 0; i < stagedNodes; i += 1) {
+            int k = newIndex[i];
+            if (k >= 0) {
+                ids[k] = sortedIds[i];
+                lons[k] = sortedLons[i];
+                lats[k] = sortedLats[i];
+                offsets[k + 1] = degrees[i];
+            }
+        }
+        for (int k = 0; k < numVertices; k += 1) {
+            offsets[k + 1] += offsets[k];
+        }
+
+        /* Every road is two-way, so each edge is stored once per direction. */
+        targets = new int[2 * numEdges];
+        weights = new double[2 * numEdges];
+        edgeWays = new int[2 * numEdges];
+        int[] next = Arrays.copyOf(offsets, numVertices);
+        for (int e = 0; e < numEdges; e += 1) {
+            int v = newIndex[froms[e]];
+            int w = newIndex[tos[e]];
+            double d = distance(lons[v], lats[v], lons[w], lats[w]);
+            targets[next[v]] = w;
+            weights[next[v]] = d;
+            edgeWays[next[v]] = ways[e];
+            next[v] += 1;
+            targets[next[w]] = v;
+            weights[next[w]] = d;
+            edgeWays[next[w]] = ways[e];
+            next[w] += 1;
+        }
+        wayNameIds = Arrays.copyOf(stagedWayNameIds, stagedWays);
+        names = Arrays.copyOf(stagedNames, stagedNameIds.size());
+        cleanNames = new String[names.length];
+        for (int id = 0; id < names.length; id += 1) {
+            cleanNames[id] = cleanString(names[id]);
+        }
+
+        /* Locations keep the coordinates of their node, connected or not. */
+        int numLocations = 0;
+        locationIds = new long[stagedLocations];
+        locationLons = new double[stagedLocations];
+        locationLats = new double[stagedLocations];
+        locationNameIds = new int[stagedLocations];
+        for (int j = 0; j < stagedLocations; j += 1) {
+            int k = Arrays.binarySearch(sortedIds, stagedLocationIds[j]);
+            if (k < 0) {
+                continue;
+            }
+            locationIds[numLocations] = sortedIds[k];
+            locationLons[numLocations] = sortedLons[k];
+            locationLats[numLocations] = sortedLats[k];
+            locationNameIds[numLocations] = stagedLocationNameIds[j];
+            numLocations += 1;
+        }
+        locationIds = Arrays.copyOf(locationIds, numLocations);
+        locationLons = Arrays.copyOf(locationLons, numLocations);
+        locationLats = Arrays.copyOf(locationLats, numLocations);
+        locationNameIds = Arrays.copyOf(locationNameIds, numLocations);
+        indexLocations();
+        spatialIndex = new KDTree(lons, lats);
+        edgeBearings = computeBearings();
+        landmarks = Landmarks.select(this, numLandmarks);
+
+        stagedIds = null;
+        stagedLons = null;
+        stagedLats = null;
+        stagedFroms = null;
+        stagedTos = null;
+        stagedEdgeWays = null;
+        stagedWayNameIds = null;
+        stagedLocationIds = null;
+        stagedLocationNameIds = null;
+        stagedNameIds = null;
+        stagedNames = null;
+    }
+
+    /**
+     * Computes the initial bearing of every edge, for turn-by-turn directions.
      */
-    private void clean() {
-        // TODO: Your code here.
+    private float[] computeBearings() {
+        float[] bearings = new float[targets.length];
+        for (int v = 0; v < ids.length; v += 1) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e += 1) {
+                int w = targets[e];
+                bearings[e] = (float) bearing(lons[v], lats[v], lons[w], lats[w]);
+            }
+        }
+        return bearings;
+    }
+
+    /**
+     * Sorts the locations by cleaned name into locationOrder, and builds the prefix index.
+     */
+    private void indexLocations() {
+        Integer[] order = new Integer[locationIds.length];
+        for (int j = 0; j < order.length; j += 1) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int cmp = cleanNames[locationNameIds[a]].compareTo(cleanNames[locationNameIds[b]]);
+            return cmp != 0 ? cmp : Long.compare(locationIds[a], locationIds[b]);
+        });
+        locationOrder = new int[order.length];
+        for (int j = 0; j < order.length; j += 1) {
+            locationOrder[j] = order[j];
+        }
+        locationIndex = new LocationIndex(locationNameIds, names, cleanNames, locationOrder);
     }
 
     /**
      * Returns an iterable of all vertex IDs in the graph.
+     * Kept only for compatibility with the original GraphDB API and its tests: iterating it
+     * boxes every id, so the code here loops from 0 to size() with idAt instead.
      * @return An iterable of id's of all vertices in the graph.
      */
     Iterable<Long> vertices() {
-        //YOUR CODE HERE, this currently returns only an empty list.
-        return new ArrayList<Long>();
+        return () -> new PrimitiveIterator.OfLong() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < ids.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return ids[i++];
+            }
+        };
     }
 
     /**
      * Returns ids of all vertices adjacent to v.
+     * Kept only for compatibility like vertices(); the code here loops over the edges from
+     * edgesFrom to edgesTo with target instead.
      * @param v The id of the vertex we are looking adjacent to.
      * @return An iterable of the ids of the neighbors of v.
      */
     Iterable<Long> adjacent(long v) {
-        return null;
+        int i = index(v);
+        return () -> new PrimitiveIterator.OfLong() {
+            private int e = offsets[i];
+
+            @Override
+            public boolean hasNext() {
+                return e < offsets[i + 1];
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return ids[targets[e++]];
+            }
+        };
     }
 
     /**
@@ -136,7 +605,11 @@ public class GraphDB {
      * @return The id of the node in the graph closest to the target.
      */
     long closest(double lon, double lat) {
-        return 0;
+        int i = spatialIndex.nearest(lon, lat);
+        if (i < 0) {
+            throw new NoSuchElementException("The graph has no vertices.");
+        }
+        return ids[i];
     }
 
     /**
@@ -145,7 +618,7 @@ public class GraphDB {
      * @return The longitude of the vertex.
      */
     double lon(long v) {
-        return 0;
+        return lons[index(v)];
     }
 
     /**
@@ -154,6 +627,214 @@ public class GraphDB {
      * @return The latitude of the vertex.
      */
     double lat(long v) {
-        return 0;
+        return lats[index(v)];
+    }
+
+    /*
+     * Index-based accessors. Vertices are numbered 0 to size() - 1 and edges 0 to
+     * 2 * (number of roads) - 1; searching through these never allocates.
+     */
+
+    /**
+     * Returns the number of vertices in the graph.
+     * @return The number of vertices.
+     */
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the index of a vertex, or -1 if the graph has no vertex with that id.
+     * @param v The id of the vertex.
+     * @return The index of the vertex, or -1.
+     */
+    int indexOf(long v) {
+        int i = Arrays.binarySearch(ids, v);
+        return i >= 0 ? i : -1;
+    }
+
+    /**
+     * Returns the id of the vertex at an index.
+     * @param i The index of the vertex.
+     * @return The id of the vertex.
+     */
+    long idAt(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Returns the longitude of the vertex at an index.
+     * @param i The index of the vertex.
+     * @return The longitude of the vertex.
+     */
+    double lonAt(int i) {
+        return lons[i];
+    }
+
+    /**
+     * Returns the latitude of the vertex at an index.
+     * @param i The index of the vertex.
+     * @return The latitude of the vertex.
+     */
+    double latAt(int i) {
+        return lats[i];
+    }
+
+    /**
+     * Returns the first edge leaving the vertex at an index.
+     * @param i The index of the vertex.
+     * @return The index of the first outgoing edge.
+     */
+    int edgesFrom(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Returns one past the last edge leaving the vertex at an index.
+     * @param i The index of the vertex.
+     * @return One past the index of the last outgoing edge.
+     */
+    int edgesTo(int i) {
+        return offsets[i + 1];
+    }
+
+    /**
+     * Returns the vertex an edge leads to.
+     * @param e The index of the edge.
+     * @return The index of the vertex at the end of the edge.
+     */
+    int target(int e) {
+        return targets[e];
+    }
+
+    /**
+     * Returns the great-circle length of an edge in miles.
+     * @param e The index of the edge.
+     * @return The length of the edge.
+     */
+    double weight(int e) {
+        return weights[e];
+    }
+
+    /**
+     * Returns the name of the way an edge belongs to.
+     * @param e The index of the edge.
+     * @return The name of the way, or null if the way is unnamed.
+     */
+    String wayName(int e) {
+        int id = wayNameIds[edgeWays[e]];
+        return id < 0 ? null : names[id];
+    }
+
+    /**
+     * Returns the name id of the way an edge belongs to. Edges of different ways with the same
+     * name, such as the pieces of one street, have the same name id.
+     * @param e The index of the edge.
+     * @return The name id, or -1 if the way is unnamed.
+     */
+    int wayNameId(int e) {
+        return wayNameIds[edgeWays[e]];
+    }
+
+    /**
+     * Returns a name.
+     * @param id A name id, as returned by wayNameId.
+     * @return The name.
+     */
+    String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the initial bearing of an edge, as bearing(v, w) computes it for its ends.
+     * @param e The index of the edge.
+     * @return The bearing in degrees, between -180 and 180.
+     */
+    double edgeBearing(int e) {
+        return edgeBearings[e];
+    }
+
+    /**
+     * Returns the precomputed landmarks of the graph.
+     * @return The landmarks.
+     */
+    Landmarks landmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Returns the contraction hierarchy of the graph.
+     * @return The hierarchy, or null if none has been built.
+     */
+    ContractionHierarchy hierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * Sets the contraction hierarchy of the graph.
+     * @param hierarchy A hierarchy built for this graph.
+     */
+    void setHierarchy(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    /**
+     * Returns the number of locations, i.e. named nodes, in the extract.
+     * @return The number of locations.
+     */
+    int numLocations() {
+        return locationIds.length;
+    }
+
+    /**
+     * Returns the prefix index over the location names.
+     * @return The index, whose location numbers are those taken by the location accessors.
+     */
+    LocationIndex locationIndex() {
+        return locationIndex;
+    }
+
+    /**
+     * Returns the OSM id of a location.
+     * @param j The number of the location.
+     * @return The id of its node.
+     */
+    long locationId(int j) {
+        return locationIds[j];
+    }
+
+    /**
+     * Returns the longitude of a location.
+     * @param j The number of the location.
+     * @return The longitude of its node.
+     */
+    double locationLon(int j) {
+        return locationLons[j];
+    }
+
+    /**
+     * Returns the latitude of a location.
+     * @param j The number of the location.
+     * @return The latitude of its node.
+     */
+    double locationLat(int j) {
+        return locationLats[j];
+    }
+
+    /**
+     * Returns the name of a location.
+     * @param j The number of the location.
+     * @return The name, as given in the extract.
+     */
+    String locationName(int j) {
+        return names[locationNameIds[j]];
+    }
+
+    private int index(long v) {
+        int i = Arrays.binarySearch(ids, v);
+        if (i < 0) {
+            throw new IllegalArgumentException("No vertex with id " + v + " in the graph.");
+        }
+        return i;
     }
 }
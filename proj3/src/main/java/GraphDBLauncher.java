@@ -1,6 +1,3 @@
-import java.util.List;
-import java.util.ArrayList;
-
 /**
  * This class provides a main method for experimenting with GraphDB construction.
  * You could also use MapServer, but this class lets you play around with
@@ -10,23 +7,16 @@ public class GraphDBLauncher {
     private static final String OSM_DB_PATH = "../library-sp18/data/berkeley-2018.osm.xml";
 
     public static void main(String[] args) {
+        long start = System.nanoTime();
         GraphDB g = new GraphDB(OSM_DB_PATH);
+        System.out.println("Loaded the graph in " + (System.nanoTime() - start) / 1000000
+                + " ms. Run again to load it from its snapshot.");
 
-        Iterable<Long> verticesIterable = g.vertices();
-
-        /* Convert iterable to a list. */
-        List<Long> vertices = new ArrayList<Long>();
-        for (long v : verticesIterable) {
-            vertices.add(v);
-        }
-
-        System.out.println("There are " + vertices.size() + " vertices in the graph.");
+        System.out.println("There are " + g.size() + " vertices in the graph.");
 
         System.out.println("The first 10 vertices are:");
-        for (int i = 0; i < 10; i += 1) {
-            if (i < vertices.size()) {
-                System.out.println(vertices.get(i));
-            }
+        for (int i = 0; i < 10 && i < g.size(); i += 1) {
+            System.out.println(g.idAt(i));
         }
 
         long v = g.closest(-122.258207, 37.875352);
@@ -0,0 +1,419 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a cleaned GraphDB, so that the OSM XML only has to be parsed the first time
+ * a graph is loaded. The snapshot lives next to the XML file and records the length,
+ * modification time and CRC32 checksum of the XML it was built from; if the XML no longer
+ * matches, the snapshot is ignored and rewritten after the XML is parsed again.
+ *
+ * The file is a header followed by the arrays of GraphDB, all big-endian, and ends with the CRC32
+ * checksum of everything before it, so that a truncated or corrupt snapshot is ignored rather than
+ * loaded. Each array is its length followed by its elements, and each string is its UTF-8 length
+ * (-1 for null) followed by its bytes. Bump VERSION whenever the layout changes.
+ *
+ * A ContractionHierarchy built for the graph is kept in a second file next to it, with the same
+ * kind of header, since it is built offline and only when needed. Its vertices are those of the
+ * graph, so its header also records the snapshot VERSION and the size and CRC32 checksum of the
+ * graph's adjacency arrays, and it is ignored if the graph it is loaded for differs.
+ */
+class GraphSnapshot {
+    /** "BMAPSNAP" in ASCII. */
+    private static final long MAGIC = 0x424D4150534E4150L;
+    /** Version of the layout below. */
+    private static final int VERSION = 5;
+    /** Suffix appended to the XML file name to get the snapshot file name. */
+    private static final String SUFFIX = ".snapshot";
+    /** "BMAPCHRC" in ASCII. */
+    private static final long HIERARCHY_MAGIC = 0x424D415043485243L;
+    /** Version of the hierarchy layout. */
+    private static final int HIERARCHY_VERSION = 3;
+    /** Suffix appended to the XML file name to get the hierarchy file name. */
+    private static final String HIERARCHY_SUFFIX = ".ch";
+    /** Size of the buffer used to checksum the XML file. */
+    private static final int CHECKSUM_BUFFER_SIZE = 1 << 16;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Returns the snapshot file for an OSM XML file.
+     * @param source The OSM XML file.
+     * @return The snapshot file next to it.
+     */
+    static File snapshotFor(File source) {
+        return new File(source.getPath() + SUFFIX);
+    }
+
+    /**
+     * Fills a graph from a snapshot, if the snapshot exists and matches its source.
+     * @param g The empty graph to fill.
+     * @param source The OSM XML file the snapshot should have been built from.
+     * @param snapshot The snapshot file.
+     * @return Whether the graph was loaded from the snapshot.
+     */
+    static boolean load(GraphDB g, File source, File snapshot) {
+        if (!snapshot.isFile() || !source.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!checkTrailer(buf) || !readHeader(buf, MAGIC, VERSION, source)) {
+                return false;
+            }
+
+            g.ids = readLongs(buf);
+            g.lons = readDoubles(buf);
+            g.lats = readDoubles(buf);
+            g.offsets = readInts(buf);
+            g.targets = readInts(buf);
+            g.weights = readDoubles(buf);
+            g.edgeWays = readInts(buf);
+            g.wayNameIds = readInts(buf);
+            g.names = readStrings(buf);
+            g.cleanNames = readStrings(buf);
+            g.locationIds = readLongs(buf);
+            g.locationLons = readDoubles(buf);
+            g.locationLats = readDoubles(buf);
+            g.locationNameIds = readInts(buf);
+            g.locationOrder = readInts(buf);
+            int[] landmarkVertices = readInts(buf);
+            float[][] landmarkDistances = new float[landmarkVertices.length][];
+            for (int i = 0; i < landmarkVertices.length; i += 1) {
+                landmarkDistances[i] = readFloats(buf);
+            }
+            g.landmarks = new Landmarks(landmarkVertices, landmarkDistances);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable graph snapshot " + snapshot + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot of a cleaned graph. Failing to write it is not fatal; the XML will simply
+     * be parsed again next time.
+     * @param g The cleaned graph.
+     * @param source The OSM XML file the graph was built from.
+     * @param snapshot The snapshot file to write.
+     */
+    static void save(GraphDB g, File source, File snapshot) {
+        File temp = new File(snapshot.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = open(temp, crc)) {
+            writeHeader(out, MAGIC, VERSION, source);
+            writeLongs(out, g.ids);
+            writeDoubles(out, g.lons);
+            writeDoubles(out, g.lats);
+            writeInts(out, g.offsets);
+            writeInts(out, g.targets);
+            writeDoubles(out, g.weights);
+            writeInts(out, g.edgeWays);
+            writeInts(out, g.wayNameIds);
+            writeStrings(out, g.names);
+            writeStrings(out, g.cleanNames);
+            writeLongs(out, g.locationIds);
+            writeDoubles(out, g.locationLons);
+            writeDoubles(out, g.locationLats);
+            writeInts(out, g.locationNameIds);
+            writeInts(out, g.locationOrder);
+            writeInts(out, g.landmarks.vertices);
+            for (float[] distances : g.landmarks.distances) {
+                writeFloats(out, distances);
+            }
+            writeTrailer(out, crc);
+        } catch (IOException e) {
+            System.out.println("Could not write graph snapshot " + snapshot + ": " + e);
+            temp.delete();
+            return;
+        }
+        replace(temp, snapshot);
+    }
+
+    /**
+     * Loads the contraction hierarchy built for the graph of an OSM file, if there is one.
+     * @param source The OSM XML file.
+     * @param g The cleaned graph of the file.
+     * @return The hierarchy, or null if none was built for the current version of the file and
+     * for exactly this graph.
+     */
+    static ContractionHierarchy loadHierarchy(File source, GraphDB g) {
+        File file = new File(source.getPath() + HIERARCHY_SUFFIX);
+        if (!file.isFile() || !source.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!checkTrailer(buf) || !readHeader(buf, HIERARCHY_MAGIC, HIERARCHY_VERSION, source)
+                    || buf.getInt() != VERSION || buf.getInt() != g.offsets.length
+                    || buf.getInt() != g.targets.length || buf.getLong() != layoutChecksum(g)) {
+                return null;
+            }
+            int[] ranks = readInts(buf);
+            if (ranks.length != g.size()) {
+                return null;
+            }
+            return new ContractionHierarchy(ranks, readInts(buf), readInts(buf),
+                    readDoubles(buf), readInts(buf));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable contraction hierarchy " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the contraction hierarchy built for the graph of an OSM file next to it.
+     * @param ch The hierarchy.
+     * @param g The graph the hierarchy was built for.
+     * @param source The OSM XML file the graph was built from.
+     */
+    static void saveHierarchy(ContractionHierarchy ch, GraphDB g, File source) {
+        File file = new File(source.getPath() + HIERARCHY_SUFFIX);
+        File temp = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = open(temp, crc)) {
+            writeHeader(out, HIERARCHY_MAGIC, HIERARCHY_VERSION, source);
+            out.writeInt(VERSION);
+            out.writeInt(g.offsets.length);
+            out.writeInt(g.targets.length);
+            out.writeLong(layoutChecksum(g));
+            writeInts(out, ch.ranks);
+            writeInts(out, ch.upOffsets);
+            writeInts(out, ch.upTargets);
+            writeDoubles(out, ch.upWeights);
+            writeInts(out, ch.upMiddles);
+            writeTrailer(out, crc);
+        } catch (IOException e) {
+            System.out.println("Could not write contraction hierarchy " + file + ": " + e);
+            temp.delete();
+            return;
+        }
+        replace(temp, file);
+    }
+
+    /**
+     * Checks the magic number and version of a file, and that the source it was built from has
+     * not changed since.
+     */
+    private static boolean readHeader(ByteBuffer buf, long magic, int version, File source)
+            throws IOException {
+        if (buf.getLong() != magic || buf.getInt() != version) {
+            return false;
+        }
+        long length = buf.getLong();
+        long modified = buf.getLong();
+        long checksum = buf.getLong();
+        if (length != source.length()) {
+            return false;
+        }
+        /* Only pay for the checksum if the file was touched since the snapshot. */
+        return modified == source.lastModified() || checksum == checksum(source);
+    }
+
+    private static void writeHeader(DataOutputStream out, long magic, int version, File source)
+            throws IOException {
+        out.writeLong(magic);
+        out.writeInt(version);
+        out.writeLong(source.length());
+        out.writeLong(source.lastModified());
+        out.writeLong(checksum(source));
+    }
+
+    /**
+     * Opens a file for writing, updating a checksum with every byte written.
+     */
+    private static DataOutputStream open(File file, CRC32 crc) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(new FileOutputStream(file), crc)));
+    }
+
+    /**
+     * Ends a file with the checksum of everything written to it so far.
+     */
+    private static void writeTrailer(DataOutputStream out, CRC32 crc) throws IOException {
+        out.flush();
+        out.writeLong(crc.getValue());
+    }
+
+    /**
+     * Checks the checksum at the end of a file against the rest of it, and limits the buffer to
+     * the rest so that reading past it underflows.
+     */
+    private static boolean checkTrailer(ByteBuffer buf) {
+        int end = buf.limit() - Long.BYTES;
+        if (end < 0) {
+            return false;
+        }
+        ByteBuffer body = buf.duplicate();
+        body.limit(end);
+        body.position(0);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if (crc.getValue() != buf.getLong(end)) {
+            return false;
+        }
+        buf.limit(end);
+        return true;
+    }
+
+    private static void replace(File temp, File file) {
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not write " + file + ": " + e);
+            temp.delete();
+        }
+    }
+
+    /**
+     * Computes the CRC32 checksum of a file.
+     * @param file The file.
+     * @return The checksum of its content.
+     * @throws IOException If the file can not be read.
+     */
+    static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Computes the CRC32 checksum of the adjacency arrays of a graph, which fix the numbering of
+     * its vertices and edges.
+     * @param g The cleaned graph.
+     * @return The checksum of offsets followed by targets.
+     */
+    static long layoutChecksum(GraphDB g) {
+        CRC32 crc = new CRC32();
+        ByteBuffer bytes = ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        for (int[] a : new int[][] {g.offsets, g.targets}) {
+            for (int x : a) {
+                if (!bytes.hasRemaining()) {
+                    crc.update(bytes.array(), 0, bytes.position());
+                    bytes.clear();
+                }
+                bytes.putInt(x);
+            }
+        }
+        crc.update(bytes.array(), 0, bytes.position());
+        return crc.getValue();
+    }
+
+    /**
+     * Reads the length of an array, checking that the buffer holds that many elements so that a
+     * corrupt length can not cause a huge allocation.
+     */
+    private static int readLength(ByteBuffer buf, int elementBytes) throws IOException {
+        int length = buf.getInt();
+        if (length < 0 || (long) length * elementBytes > buf.remaining()) {
+            throw new IOException("Invalid array length " + length + " at " + buf.position());
+        }
+        return length;
+    }
+
+    private static long[] readLongs(ByteBuffer buf) throws IOException {
+        long[] a = new long[readLength(buf, Long.BYTES)];
+        buf.asLongBuffer().get(a);
+        buf.position(buf.position() + Long.BYTES * a.length);
+        return a;
+    }
+
+    private static int[] readInts(ByteBuffer buf) throws IOException {
+        int[] a = new int[readLength(buf, Integer.BYTES)];
+        buf.asIntBuffer().get(a);
+        buf.position(buf.position() + Integer.BYTES * a.length);
+        return a;
+    }
+
+    private static double[] readDoubles(ByteBuffer buf) throws IOException {
+        double[] a = new double[readLength(buf, Double.BYTES)];
+        buf.asDoubleBuffer().get(a);
+        buf.position(buf.position() + Double.BYTES * a.length);
+        return a;
+    }
+
+    private static float[] readFloats(ByteBuffer buf) throws IOException {
+        float[] a = new float[readLength(buf, Float.BYTES)];
+        buf.asFloatBuffer().get(a);
+        buf.position(buf.position() + Float.BYTES * a.length);
+        return a;
+    }
+
+    private static String[] readStrings(ByteBuffer buf) throws IOException {
+        /* Every string takes at least its length. */
+        String[] a = new String[readLength(buf, Integer.BYTES)];
+        for (int i = 0; i < a.length; i += 1) {
+            int length = buf.getInt();
+            if (length > buf.remaining()) {
+                throw new IOException("Invalid string length " + length + " at " + buf.position());
+            }
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                buf.get(bytes);
+                a[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return a;
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] a) throws IOException {
+        out.writeInt(a.length);
+        for (long x : a) {
+            out.writeLong(x);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+        out.writeInt(a.length);
+        for (int x : a) {
+            out.writeInt(x);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] a) throws IOException {
+        out.writeInt(a.length);
+        for (double x : a) {
+            out.writeDouble(x);
+        }
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] a) throws IOException {
+        out.writeInt(a.length);
+        for (float x : a) {
+            out.writeFloat(x);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] a) throws IOException {
+        out.writeInt(a.length);
+        for (String s : a) {
+            if (s == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary min-heap of int vertices 0 to capacity - 1, each in the heap at most once, with double
+ * priorities. The heap, the priorities and the position of every vertex in the heap are kept in
+ * parallel primitive arrays, so adding, decreasing and removing never allocate, and a vertex
+ * whose priority drops is moved up in place instead of being added a second time.
+ *
+ * Searches borrow heaps from a per-thread pool, so that the arrays are allocated once per thread
+ * instead of once per search. A borrowed heap must be handed back with release once the search
+ * is done, and must not be used after that.
+ */
+class IndexedMinHeap {
+    /** Heaps released by each thread, ready to be borrowed again. */
+    private static final ThreadLocal<ArrayDeque<IndexedMinHeap>> POOL =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    /** heap[i] is the vertex at position i; the children of i are at 2i + 1 and 2i + 2. */
+    private int[] heap;
+    /** keys[i] is the priority of the vertex at position i, next to it so comparisons are cheap. */
+    private double[] keys;
+    /** positions[v] is the position of vertex v in the heap, or -1 if it is not in the heap. */
+    private int[] positions;
+    private int size;
+
+    /**
+     * Creates an empty heap.
+     * @param capacity One more than the largest vertex the heap can hold.
+     */
+    IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new double[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+        size = 0;
+    }
+
+    /**
+     * Borrows an empty heap from the pool of the current thread, creating or growing one if
+     * needed.
+     * @param capacity One more than the largest vertex the heap must hold.
+     * @return An empty heap.
+     */
+    static IndexedMinHeap borrow(int capacity) {
+        IndexedMinHeap h = POOL.get().poll();
+        if (h == null) {
+            return new IndexedMinHeap(capacity);
+        }
+        h.ensureCapacity(capacity);
+        return h;
+    }
+
+    /**
+     * Empties a borrowed heap and returns it to the pool of the current thread.
+     * @param h The heap.
+     */
+    static void release(IndexedMinHeap h) {
+        h.clear();
+        POOL.get().push(h);
+    }
+
+    /**
+     * Returns the number of vertices in the heap.
+     * @return The size of the heap.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns whether a vertex is in the heap.
+     * @param v The vertex.
+     * @return Whether v is in the heap.
+     */
+    boolean contains(int v) {
+        return positions[v] >= 0;
+    }
+
+    /**
+     * Adds a vertex, or changes its priority if it is already in the heap.
+     * @param v The vertex.
+     * @param priority Its priority.
+     */
+    void put(int v, double priority) {
+        int i = positions[v];
+        if (i < 0) {
+            i = size;
+            size += 1;
+            swim(i, v, priority);
+        } else if (priority < keys[i]) {
+            swim(i, v, priority);
+        } else {
+            sink(i, v, priority);
+        }
+    }
+
+    /**
+     * Adds a vertex, or lowers its priority if it is already in the heap with a higher one.
+     * @param v The vertex.
+     * @param priority Its new priority.
+     * @return Whether the vertex was added or its priority lowered.
+     */
+    boolean decreaseKey(int v, double priority) {
+        if (positions[v] >= 0 && keys[positions[v]] <= priority) {
+            return false;
+        }
+        put(v, priority);
+        return true;
+    }
+
+    /**
+     * Returns the vertex with the smallest priority.
+     * @return The vertex.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException("The heap is empty.");
+        }
+        return heap[0];
+    }
+
+    /**
+     * Returns the smallest priority in the heap.
+     * @return The priority of peek().
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    double peekPriority() {
+        peek();
+        return keys[0];
+    }
+
+    /**
+     * Returns the priority of a vertex in the heap.
+     * @param v The vertex, which must be in the heap.
+     * @return Its priority.
+     */
+    double priority(int v) {
+        return keys[positions[v]];
+    }
+
+    /**
+     * Removes the vertex with the smallest priority.
+     * @return The vertex.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    int poll() {
+        int v = peek();
+        size -= 1;
+        positions[v] = -1;
+        if (size > 0) {
+            sink(0, heap[size], keys[size]);
+        }
+        return v;
+    }
+
+    /**
+     * Removes every vertex. Takes time proportional to the size of the heap, not its capacity.
+     */
+    void clear() {
+        for (int i = 0; i < size; i += 1) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > positions.length) {
+            int old = positions.length;
+            heap = Arrays.copyOf(heap, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            Arrays.fill(positions, old, capacity, -1);
+        }
+    }
+
+    /**
+     * Moves vertex v with priority p up from position i, which is treated as empty, to its place.
+     */
+    private void swim(int i, int v, double p) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= p) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, v, p);
+    }
+
+    /**
+     * Moves vertex v with priority p down from position i, which is treated as empty, to its
+     * place.
+     */
+    private void sink(int i, int v, double p) {
+        int child = 2 * i + 1;
+        while (child < size) {
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child += 1;
+            }
+            if (p <= keys[child]) {
+                break;
+            }
+            move(child, i);
+            i = child;
+            child = 2 * i + 1;
+        }
+        set(i, v, p);
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        positions[heap[to]] = to;
+    }
+
+    private void set(int i, int v, double p) {
+        heap[i] = v;
+        keys[i] = p;
+        positions[v] = i;
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Static k-d tree over the vertices of a GraphDB, used to answer closest queries.
+ *
+ * Each vertex is projected onto the unit sphere, where the straight-line (chord) distance
+ * between two points grows with their great-circle distance, so the nearest point in this
+ * 3-d space is exactly the vertex with the smallest great-circle distance.
+ *
+ * The tree is stored implicitly in flat arrays: the subtree over positions [lo, hi) has its
+ * splitting point at (lo + hi) / 2, the lower half on its left and the upper half on its right.
+ * It is built once by recursive median selection, and queries neither allocate nor mutate the
+ * tree, so they can run concurrently.
+ */
+class KDTree {
+    private static final int DIMENSION = 3;
+
+    /** Projected coordinates, by tree position. */
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    /** The vertex index at each tree position. */
+    private final int[] vertices;
+    /** The axis the point at each tree position splits its subtree on. */
+    private final byte[] axes;
+
+    /**
+     * Builds a tree over vertices 0 to lons.length - 1.
+     * @param lons The longitudes of the vertices.
+     * @param lats The latitudes of the vertices.
+     */
+    KDTree(double[] lons, double[] lats) {
+        int n = lons.length;
+        xs = new double[n];
+        ys = new double[n];
+        zs = new double[n];
+        vertices = new int[n];
+        axes = new byte[n];
+        for (int i = 0; i < n; i += 1) {
+            double phi = Math.toRadians(lats[i]);
+            double lambda = Math.toRadians(lons[i]);
+            xs[i] = Math.cos(phi) * Math.cos(lambda);
+            ys[i] = Math.cos(phi) * Math.sin(lambda);
+            zs[i] = Math.sin(phi);
+            vertices[i] = i;
+        }
+        build(0, n);
+    }
+
+    /**
+     * Returns the vertex closest to a point.
+     * @param lon The longitude of the point.
+     * @param lat The latitude of the point.
+     * @return The index of the closest vertex, or -1 if the tree is empty.
+     */
+    int nearest(double lon, double lat) {
+        if (vertices.length == 0) {
+            return -1;
+        }
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lon);
+        double x = Math.cos(phi) * Math.cos(lambda);
+        double y = Math.cos(phi) * Math.sin(lambda);
+        double z = Math.sin(phi);
+        int best = nearest(0, vertices.length, x, y, z, (vertices.length - 1) >>> 1);
+        return vertices[best];
+    }
+
+    /**
+     * Returns the number of points in the tree.
+     * @return The number of points.
+     */
+    int size() {
+        return vertices.length;
+    }
+
+    private void build(int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int axis = widestAxis(lo, hi);
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis);
+        axes[mid] = (byte) axis;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Returns the closest tree position to (x, y, z) within [lo, hi), or best if none is closer.
+     */
+    private int nearest(int lo, int hi, double x, double y, double z, int best) {
+        if (lo >= hi) {
+            return best;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (squaredDistance(mid, x, y, z) < squaredDistance(best, x, y, z)) {
+            best = mid;
+        }
+
+        double diff = query(axes[mid], x, y, z) - coordinate(axes[mid], mid);
+        if (diff < 0) {
+            best = nearest(lo, mid, x, y, z, best);
+            if (diff * diff < squaredDistance(best, x, y, z)) {
+                best = nearest(mid + 1, hi, x, y, z, best);
+            }
+        } else {
+            best = nearest(mid + 1, hi, x, y, z, best);
+            if (diff * diff < squaredDistance(best, x, y, z)) {
+                best = nearest(lo, mid, x, y, z, best);
+            }
+        }
+        return best;
+    }
+
+    private double squaredDistance(int i, double x, double y, double z) {
+        double dx = xs[i] - x;
+        double dy = ys[i] - y;
+        double dz = zs[i] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private double coordinate(int axis, int i) {
+        if (axis == 0) {
+            return xs[i];
+        } else if (axis == 1) {
+            return ys[i];
+        }
+        return zs[i];
+    }
+
+    private static double query(int axis, double x, double y, double z) {
+        if (axis == 0) {
+            return x;
+        } else if (axis == 1) {
+            return y;
+        }
+        return z;
+    }
+
+    /**
+     * Returns the axis along which the points in [lo, hi) are most spread out.
+     */
+    private int widestAxis(int lo, int hi) {
+        int widest = 0;
+        double widestSpread = -1;
+        for (int axis = 0; axis < DIMENSION; axis += 1) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i += 1) {
+                double c = coordinate(axis, i);
+                min = Math.min(min, c);
+                max = Math.max(max, c);
+            }
+            if (max - min > widestSpread) {
+                widest = axis;
+                widestSpread = max - min;
+            }
+        }
+        return widest;
+    }
+
+    /**
+     * Quickselect: rearranges [lo, hi] so that position k holds the point that would be there if
+     * the range were sorted along the axis, with no larger point before it and no smaller after.
+     */
+    private void select(int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            double pivot = coordinate(axis, (lo + hi) >>> 1);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (coordinate(axis, i) < pivot) {
+                    i += 1;
+                }
+                while (coordinate(axis, j) > pivot) {
+                    j -= 1;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i += 1;
+                    j -= 1;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        double x = xs[i];
+        xs[i] = xs[j];
+        xs[j] = x;
+        double y = ys[i];
+        ys[i] = ys[j];
+        ys[j] = y;
+        double z = zs[i];
+        zs[i] = zs[j];
+        zs[j] = z;
+        int v = vertices[i];
+        vertices[i] = vertices[j];
+        vertices[j] = v;
+    }
+}
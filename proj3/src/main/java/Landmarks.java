@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+/**
+ * Landmark distances for the ALT (A*, landmarks, triangle inequality) heuristic.
+ *
+ * A handful of landmark vertices are picked far apart from each other, and the road distance
+ * from every landmark to every vertex is computed once with Dijkstra's algorithm. Because roads
+ * are two-way, the triangle inequality gives |d(L, t) - d(L, v)| <= d(v, t) for every landmark
+ * L, so the largest of these differences is an admissible and consistent lower bound on the
+ * remaining distance from v to the target t.
+ *
+ * The distances are kept as floats, which halves the memory they take and the cache misses of
+ * looking them up; the bound gives up the rounding error so that it stays a lower bound.
+ */
+class Landmarks {
+    /** Number of landmarks picked when building a graph, unless it asks for another number. */
+    static final int DEFAULT_COUNT = 16;
+    /** Largest relative error of rounding a distance to a float. */
+    private static final double FLOAT_ERROR = Math.ulp(1.0f) / 2;
+
+    /** The landmark vertices. */
+    final int[] vertices;
+    /** distances[i][v] is the road distance in miles from landmark i to vertex v. */
+    final float[][] distances;
+
+    /**
+     * Wraps precomputed landmark distances.
+     * @param vertices The landmark vertices.
+     * @param distances The distances from each landmark to every vertex.
+     */
+    Landmarks(int[] vertices, float[][] distances) {
+        this.vertices = vertices;
+        this.distances = distances;
+    }
+
+    /**
+     * Picks landmarks by farthest-point selection and computes their distances. The first
+     * landmark is the vertex farthest from vertex 0; each following one is the vertex whose
+     * distance to its closest landmark is largest, which spreads them along the edge of the map.
+     * @param g The cleaned graph.
+     * @param count The number of landmarks to pick.
+     * @return The landmarks of the graph.
+     */
+    static Landmarks select(GraphDB g, int count) {
+        int n = g.size();
+        count = Math.min(count, n);
+        int[] vertices = new int[count];
+        float[][] distances = new float[count][];
+        if (count == 0) {
+            return new Landmarks(vertices, distances);
+        }
+
+        double[] closestLandmark = new double[n];
+        Arrays.fill(closestLandmark, Double.POSITIVE_INFINITY);
+        int next = farthest(dijkstra(g, 0));
+        for (int i = 0; i < count; i += 1) {
+            vertices[i] = next;
+            double[] distTo = dijkstra(g, next);
+            distances[i] = new float[n];
+            for (int v = 0; v < n; v += 1) {
+                distances[i][v] = (float) distTo[v];
+                closestLandmark[v] = Math.min(closestLandmark[v], distTo[v]);
+            }
+            next = farthest(closestLandmark);
+        }
+        return new Landmarks(vertices, distances);
+    }
+
+    /**
+     * Returns the landmark lower bound on the road distance between two vertices.
+     * @param v The index of one vertex.
+     * @param t The index of the other vertex.
+     * @return A lower bound on the distance in miles.
+     */
+    double lowerBound(int v, int t) {
+        double bound = 0;
+        for (float[] d : distances) {
+            double dv = d[v];
+            double dt = d[t];
+            /* A landmark in another component says nothing about v and t. */
+            if (dv != Double.POSITIVE_INFINITY && dt != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, Math.abs(dt - dv) - (dt + dv) * FLOAT_ERROR);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Returns the vertex with the largest finite distance.
+     */
+    private static int farthest(double[] distances) {
+        int best = 0;
+        double bestDistance = -1;
+        for (int v = 0; v < distances.length; v += 1) {
+            if (distances[v] != Double.POSITIVE_INFINITY && distances[v] > bestDistance) {
+                best = v;
+                bestDistance = distances[v];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Single-source Dijkstra over the whole graph.
+     * @param g The graph.
+     * @param source The index of the source vertex.
+     * @return The distance from the source to every vertex, infinite if unreachable.
+     */
+    static double[] dijkstra(GraphDB g, int source) {
+        double[] distTo = new double[g.size()];
+        Arrays.fill(distTo, Double.POSITIVE_INFINITY);
+        distTo[source] = 0;
+        IndexedMinHeap fringe = IndexedMinHeap.borrow(g.size());
+        fringe.put(source, 0);
+        try {
+            while (!fringe.isEmpty()) {
+                int v = fringe.poll();
+                for (int e = g.edgesFrom(v); e < g.edgesTo(v); e += 1) {
+                    int w = g.target(e);
+                    double d = distTo[v] + g.weight(e);
+                    if (d < distTo[w]) {
+                        distTo[w] = d;
+                        fringe.put(w, d);
+                    }
+                }
+            }
+        } finally {
+            IndexedMinHeap.release(fringe);
+        }
+        return distTo;
+    }
+}
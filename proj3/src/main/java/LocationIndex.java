@@ -0,0 +1,310 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Static prefix index over the locations (named nodes) of a GraphDB, used to autocomplete and
+ * look up location names.
+ *
+ * The distinct names of the locations are the entries of the index, sorted by cleaned name and
+ * then name. The locations of entry e are postings[postingStarts[e]] to
+ * postings[postingStarts[e + 1] - 1], so the locations of any run of entries are one slice of
+ * postings. Entries are ranked by popularity, i.e. by how many locations carry them, breaking
+ * ties by their sorted order.
+ *
+ * A trie over the cleaned names is stored in flat arrays. Since the entries are sorted, the
+ * entries below a trie node are a range [lo, hi) of them, and the ones whose cleaned name ends at
+ * the node come first, up to exactEnd. Every node with more than TOP_K entries below it also
+ * stores its TOP_K most popular entries, so completing a prefix takes time proportional to the
+ * length of the prefix plus the number of completions asked for. The index never changes once
+ * built, so queries can run concurrently.
+ */
+class LocationIndex {
+    /** Number of most popular completions stored for each trie node. */
+    static final int TOP_K = 10;
+
+    /** The name of each entry. */
+    private final String[] entryNames;
+    private final int[] postingStarts;
+    private final int[] postings;
+    /** The popularity rank of each entry, 0 for the most popular. */
+    private final int[] ranks;
+    /** The entry of each popularity rank. */
+    private final int[] entriesByRank;
+
+    /* The trie, by node; the root is node 0. */
+    private int[] nodeLos;
+    private int[] nodeExactEnds;
+    private int[] nodeHis;
+    /** The children of node v are childNodes[firstChild[v]] onwards, numChildren[v] of them. */
+    private int[] firstChild;
+    private int[] numChildren;
+    /** Where the TOP_K entries of each node start in tops, or -1 if the node stores none. */
+    private int[] topStarts;
+    private int numNodes = 0;
+    /** The last character of the cleaned name of each child, in ascending order per node. */
+    private char[] childLabels;
+    private int[] childNodes;
+    private int numChildSlots = 0;
+    private int[] tops;
+    private int numTops = 0;
+
+    /**
+     * Builds an index over locations 0 to nameIds.length - 1.
+     * @param nameIds The name id of each location.
+     * @param names The name of each name id.
+     * @param cleanNames The cleaned name of each name id, as returned by GraphDB.cleanString.
+     * @param order The locations sorted by cleaned name.
+     */
+    LocationIndex(int[] nameIds, String[] names, String[] cleanNames, int[] order) {
+        int n = order.length;
+        /* Within each run of equal cleaned names, sort by name, so that entries are runs too. */
+        Integer[] sorted = new Integer[n];
+        for (int j = 0; j < n; j += 1) {
+            sorted[j] = order[j];
+        }
+        for (int lo = 0, hi; lo < n; lo = hi) {
+            String cleanName = cleanNames[nameIds[sorted[lo]]];
+            hi = lo + 1;
+            while (hi < n && cleanNames[nameIds[sorted[hi]]].equals(cleanName)) {
+                hi += 1;
+            }
+            Arrays.sort(sorted, lo, hi, (a, b) -> names[nameIds[a]].compareTo(names[nameIds[b]]));
+        }
+
+        postings = new int[n];
+        int[] starts = new int[n + 1];
+        String[] entryCleanNames = new String[n];
+        String[] namesByEntry = new String[n];
+        int numEntries = 0;
+        for (int j = 0; j < n; j += 1) {
+            int location = sorted[j];
+            postings[j] = location;
+            if (j == 0 || nameIds[location] != nameIds[sorted[j - 1]]) {
+                starts[numEntries] = j;
+                entryCleanNames[numEntries] = cleanNames[nameIds[location]];
+                namesByEntry[numEntries] = names[nameIds[location]];
+                numEntries += 1;
+            }
+        }
+        starts[numEntries] = n;
+        postingStarts = Arrays.copyOf(starts, numEntries + 1);
+        entryNames = Arrays.copyOf(namesByEntry, numEntries);
+
+        Integer[] byPopularity = new Integer[numEntries];
+        for (int e = 0; e < numEntries; e += 1) {
+            byPopularity[e] = e;
+        }
+        Arrays.sort(byPopularity, (a, b) -> {
+            int cmp = Integer.compare(numLocations(b), numLocations(a));
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        ranks = new int[numEntries];
+        entriesByRank = new int[numEntries];
+        for (int r = 0; r < numEntries; r += 1) {
+            ranks[byPopularity[r]] = r;
+            entriesByRank[r] = byPopularity[r];
+        }
+
+        int capacity = 16;
+        nodeLos = new int[capacity];
+        nodeExactEnds = new int[capacity];
+        nodeHis = new int[capacity];
+        firstChild = new int[capacity];
+        numChildren = new int[capacity];
+        topStarts = new int[capacity];
+        childLabels = new char[capacity];
+        childNodes = new int[capacity];
+        tops = new int[capacity];
+        build(entryCleanNames, 0, 0, numEntries);
+        nodeLos = Arrays.copyOf(nodeLos, numNodes);
+        nodeExactEnds = Arrays.copyOf(nodeExactEnds, numNodes);
+        nodeHis = Arrays.copyOf(nodeHis, numNodes);
+        firstChild = Arrays.copyOf(firstChild, numNodes);
+        numChildren = Arrays.copyOf(numChildren, numNodes);
+        topStarts = Arrays.copyOf(topStarts, numNodes);
+        childLabels = Arrays.copyOf(childLabels, numChildSlots);
+        childNodes = Arrays.copyOf(childNodes, numChildSlots);
+        tops = Arrays.copyOf(tops, numTops);
+    }
+
+    /**
+     * Returns the most popular names whose cleaned name starts with a prefix.
+     * @param cleanPrefix The cleaned prefix.
+     * @param limit The most names to return.
+     * @return The names, most popular first.
+     */
+    List<String> complete(String cleanPrefix, int limit) {
+        int v = find(cleanPrefix);
+        if (v < 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        int lo = nodeLos[v];
+        int hi = nodeHis[v];
+        List<String> names = new ArrayList<>(Math.min(limit, hi - lo));
+        if (limit <= TOP_K && topStarts[v] >= 0) {
+            for (int i = 0; i < limit; i += 1) {
+                names.add(entryNames[tops[topStarts[v] + i]]);
+            }
+            return names;
+        }
+        int[] byRank = new int[hi - lo];
+        for (int e = lo; e < hi; e += 1) {
+            byRank[e - lo] = ranks[e];
+        }
+        Arrays.sort(byRank);
+        for (int i = 0; i < byRank.length && i < limit; i += 1) {
+            names.add(entryNames[entriesByRank[byRank[i]]]);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the locations with a cleaned name.
+     * @param cleanName The cleaned name.
+     * @return The locations, sorted by name.
+     */
+    int[] locations(String cleanName) {
+        int v = find(cleanName);
+        if (v < 0) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(postings, postingStarts[nodeLos[v]],
+                postingStarts[nodeExactEnds[v]]);
+    }
+
+    /**
+     * Returns the number of distinct names in the index.
+     * @return The number of entries.
+     */
+    int size() {
+        return entryNames.length;
+    }
+
+    /**
+     * Returns the number of nodes of the trie.
+     * @return The number of nodes.
+     */
+    int numNodes() {
+        return numNodes;
+    }
+
+    private int numLocations(int e) {
+        return postingStarts[e + 1] - postingStarts[e];
+    }
+
+    /**
+     * Returns the trie node of a cleaned prefix.
+     * @return The node, or -1 if no cleaned name starts with the prefix.
+     */
+    private int find(String cleanPrefix) {
+        int v = 0;
+        for (int i = 0; i < cleanPrefix.length(); i += 1) {
+            int first = firstChild[v];
+            int k = Arrays.binarySearch(childLabels, first, first + numChildren[v],
+                    cleanPrefix.charAt(i));
+            if (k < 0) {
+                return -1;
+            }
+            v = childNodes[k];
+        }
+        return v;
+    }
+
+    /**
+     * Builds the subtrie over entries [lo, hi), whose cleaned names share their first depth
+     * characters.
+     * @return The root of the subtrie.
+     */
+    private int build(String[] cleanNames, int depth, int lo, int hi) {
+        int v = newNode(lo, hi);
+        int exactEnd = lo;
+        while (exactEnd < hi && cleanNames[exactEnd].length() == depth) {
+            exactEnd += 1;
+        }
+        nodeExactEnds[v] = exactEnd;
+
+        int children = 0;
+        for (int e = exactEnd; e < hi; e += 1) {
+            if (e == exactEnd || cleanNames[e].charAt(depth) != cleanNames[e - 1].charAt(depth)) {
+                children += 1;
+            }
+        }
+        /* Reserve the child slots first, so that the children of a node are adjacent. */
+        int first = numChildSlots;
+        if (first + children > childNodes.length) {
+            int capacity = Math.max(2 * childNodes.length, first + children);
+            childLabels = Arrays.copyOf(childLabels, capacity);
+            childNodes = Arrays.copyOf(childNodes, capacity);
+        }
+        numChildSlots += children;
+        firstChild[v] = first;
+        numChildren[v] = children;
+        for (int e = exactEnd, k = first; e < hi; k += 1) {
+            char label = cleanNames[e].charAt(depth);
+            int end = e + 1;
+            while (end < hi && cleanNames[end].charAt(depth) == label) {
+                end += 1;
+            }
+            childLabels[k] = label;
+            /* Building the child may grow childNodes, so only store into it afterwards. */
+            int child = build(cleanNames, depth + 1, e, end);
+            childNodes[k] = child;
+            e = end;
+        }
+
+        if (hi - lo > TOP_K) {
+            storeTop(v);
+        }
+        return v;
+    }
+
+    /**
+     * Stores the TOP_K most popular entries of a node, picking them among the entries ending at
+     * the node and the top entries of its children.
+     */
+    private void storeTop(int v) {
+        int[] candidates = new int[nodeExactEnds[v] - nodeLos[v] + TOP_K * numChildren[v]];
+        int n = 0;
+        for (int e = nodeLos[v]; e < nodeExactEnds[v]; e += 1) {
+            candidates[n++] = ranks[e];
+        }
+        for (int k = firstChild[v]; k < firstChild[v] + numChildren[v]; k += 1) {
+            int w = childNodes[k];
+            if (topStarts[w] >= 0) {
+                for (int i = 0; i < TOP_K; i += 1) {
+                    candidates[n++] = ranks[tops[topStarts[w] + i]];
+                }
+            } else {
+                for (int e = nodeLos[w]; e < nodeHis[w]; e += 1) {
+                    candidates[n++] = ranks[e];
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, n);
+        if (numTops + TOP_K > tops.length) {
+            tops = Arrays.copyOf(tops, 2 * tops.length + TOP_K);
+        }
+        topStarts[v] = numTops;
+        for (int i = 0; i < TOP_K; i += 1) {
+            tops[numTops++] = entriesByRank[candidates[i]];
+        }
+    }
+
+    private int newNode(int lo, int hi) {
+        if (numNodes == nodeLos.length) {
+            int capacity = 2 * nodeLos.length;
+            nodeLos = Arrays.copyOf(nodeLos, capacity);
+            nodeExactEnds = Arrays.copyOf(nodeExactEnds, capacity);
+            nodeHis = Arrays.copyOf(nodeHis, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            numChildren = Arrays.copyOf(numChildren, capacity);
+            topStarts = Arrays.copyOf(topStarts, capacity);
+        }
+        nodeLos[numNodes] = lo;
+        nodeHis[numNodes] = hi;
+        topStarts[numNodes] = -1;
+        numNodes += 1;
+        return numNodes - 1;
+    }
+}
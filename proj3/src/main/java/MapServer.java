@@ -3,20 +3,25 @@ import java.awt.Graphics2D;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.util.Base64;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
 import java.io.IOException;
 
 
 /* Maven is used to pull in these dependencies. */
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
 
 import static spark.Spark.*;
 
@@ -46,6 +51,45 @@ public class MapServer {
     public static final Color ROUTE_STROKE_COLOR = new Color(108, 181, 230, 200);
     /** The tile images are in the IMG_ROOT folder. */
     private static final String IMG_ROOT = "../library-sp18/data/proj3_imgs/";
+    /**
+     * Bytes of decoded tiles kept in memory. A decoded tile takes 256 KiB, so this holds a few
+     * hundred tiles, several screens' worth at every depth.
+     */
+    private static final long TILE_CACHE_BYTES = 64L << 20;
+    /**
+     * Bytes of encoded raster responses kept in memory. A full screen of tiles encodes to
+     * roughly 1-2 MiB of Base64, so this holds the last few dozen views.
+     */
+    private static final long RASTER_CACHE_BYTES = 64L << 20;
+    /**
+     * Largest encoded raster that is cached. Larger ones are streamed to the client without a
+     * copy, since a few of them would evict everything else.
+     */
+    private static final int MAX_CACHED_RASTER_BYTES = (int) (RASTER_CACHE_BYTES / 16);
+    /**
+     * Most sources, and most targets, one distance matrix request may have. A full matrix takes
+     * one search per source, bounded by the targets, and this many squared cells.
+     */
+    private static final int MAX_MATRIX_POINTS = 1000;
+    /** Whether rastering also loads the tiles around the raster into the tile cache. */
+    private static final boolean PREFETCH_NEIGHBOURS = true;
+    /** Threads loading prefetched tiles, apart from those compositing rasters. */
+    private static final int PREFETCH_THREADS = 2;
+    /** Prefetches waiting for a thread; beyond this the oldest are dropped. */
+    private static final int PREFETCH_QUEUE = 16;
+    /**
+     * How the route endpoint finds routes. The contraction hierarchy has to be built offline
+     * with ContractionHierarchy.main; without one the server routes with ROUTING_FALLBACK.
+     */
+    private static final Router.Heuristic ROUTING = Router.Heuristic.CONTRACTION_HIERARCHY;
+    private static final Router.Heuristic ROUTING_FALLBACK = Router.Heuristic.LANDMARKS;
+    /**
+     * Landmarks picked for the ALT heuristic. Each one takes a Dijkstra search when the extract
+     * is parsed and a float per vertex; fewer make weaker bounds.
+     */
+    private static final int NUM_LANDMARKS = Landmarks.DEFAULT_COUNT;
+    /** Number of completions the search endpoint suggests for a prefix. */
+    private static final int AUTOCOMPLETE_RESULTS = LocationIndex.TOP_K;
     /**
      * The OSM XML file path. Downloaded from <a href="http://download.bbbike.org/osm/">here</a>
      * using custom region selection.
@@ -79,7 +123,36 @@ public class MapServer {
 
     private static Rasterer rasterer;
     private static GraphDB graph;
-    private static List<Long> route = new LinkedList<>();
+    /** ROUTING, or ROUTING_FALLBACK if the graph lacks what ROUTING needs. */
+    private static Router.Heuristic routing;
+    /** Session attribute holding the RouteState of a client. */
+    private static final String ROUTE_ATTRIBUTE = "route";
+    /** Seconds of inactivity after which a session, and the route it holds, is dropped. */
+    private static final int SESSION_TIMEOUT_SECONDS = 30 * 60;
+    /** Source of route versions, unique across all sessions. */
+    private static final AtomicLong ROUTE_VERSIONS = new AtomicLong();
+    /** Latency histograms of the endpoints and of the phases of answering them. */
+    private static final Metrics METRICS = new Metrics();
+    private static final String REQUEST_METRIC = "bearmaps_request_seconds";
+    private static final String PHASE_METRIC = "bearmaps_phase_seconds";
+    private static final Metrics.Histogram RASTERER_PHASE = phase("rasterer");
+    private static final Metrics.Histogram TILE_LOAD_PHASE = phase("tile_load");
+    /** Compositing includes loading the tiles that were not cached, which tile_load times. */
+    private static final Metrics.Histogram COMPOSITE_PHASE = phase("composite");
+    /**
+     * The PNG is encoded straight into the response, so this includes writing it to the client
+     * and waits on the network.
+     */
+    private static final Metrics.Histogram PNG_ENCODE_WRITE_PHASE = phase("png_encode_write");
+    private static final Metrics.Histogram ROUTING_PHASE = phase("routing");
+    private static final Metrics.Histogram SEARCH_PHASE = phase("search");
+    private static final TileCache TILE_CACHE = new TileCache(TILE_CACHE_BYTES,
+            MapServer::loadTile);
+    private static final RasterCache RASTER_CACHE = new RasterCache(RASTER_CACHE_BYTES);
+    private static final TileCompositor COMPOSITOR =
+            new TileCompositor(new ForkJoinPool(),
+                    TileCompositor.prefetchPool(PREFETCH_THREADS, PREFETCH_QUEUE),
+                    file -> getImage(IMG_ROOT + file));
     /* Define any static variables here. Do not define any instance variables of MapServer. */
 
 
@@ -89,12 +162,34 @@ public class MapServer {
      * This is for testing purposes, and you may fail tests otherwise.
      **/
     public static void initialize() {
-        graph = new GraphDB(OSM_DB_PATH);
-        rasterer = new Rasterer();
+        initialize(new GraphDB(OSM_DB_PATH, NUM_LANDMARKS));
+    }
+
+    /**
+     * Initializes the server with a graph that was already loaded, e.g. a synthetic one for load
+     * tests.
+     * @param g The graph to route on.
+     */
+    static void initialize(GraphDB g) {
+        graph = g;
+        rasterer = new Rasterer(PREFETCH_NEIGHBOURS);
+        routing = ROUTING;
+        if (routing == Router.Heuristic.CONTRACTION_HIERARCHY && g.hierarchy() == null) {
+            System.out.println("No contraction hierarchy for the graph, routing with "
+                    + ROUTING_FALLBACK + " instead.");
+            routing = ROUTING_FALLBACK;
+        }
     }
 
     public static void main(String[] args) {
         initialize();
+        serve();
+    }
+
+    /**
+     * Defines the endpoints and starts serving them, on Spark's port.
+     */
+    static void serve() {
         staticFileLocation("/page");
         /* Allow for all origin requests (since this is not an authenticated server, we do not
          * care about CSRF).  */
@@ -106,62 +201,154 @@ public class MapServer {
 
         /* Define the raster endpoint for HTTP GET requests. I use anonymous functions to define
          * the request handlers. */
-        get("/raster", (req, res) -> {
+        get("/raster", timed("/raster", (req, res) -> {
             HashMap<String, Double> params =
                     getRequestParams(req, REQUIRED_RASTER_REQUEST_PARAMS);
-            /* The png image is written to the ByteArrayOutputStream */
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
             /* getMapRaster() does almost all the work for this API call */
+            long start = System.nanoTime();
             Map<String, Object> rasteredImgParams = rasterer.getMapRaster(params);
+            RASTERER_PHASE.observeSince(start);
 
             boolean rasterSuccess = validateRasteredImgParams(rasteredImgParams);
 
-            if (rasterSuccess) {
-                writeImagesToOutputStream(rasteredImgParams, os);
-                String encodedImage = Base64.getEncoder().encodeToString(os.toByteArray());
-                rasteredImgParams.put("b64_encoded_image_data", encodedImage);
+            Gson gson = new Gson();
+            if (!rasterSuccess) {
+                return gson.toJson(rasteredImgParams);
             }
 
-            /* Encode response to Json */
-            Gson gson = new Gson();
-            return gson.toJson(rasteredImgParams);
-        });
+            /* Each client sees its own route, with a version only that route has. */
+            RouteState state = routeOf(req);
+            long version = state.version;
+            List<Long> currentRoute = state.route;
+            if (!routeOverlaps(currentRoute, rasteredImgParams)) {
+                version = RasterCache.NO_ROUTE;
+            }
+            String key = RasterCache.key(
+                    (String[][]) rasteredImgParams.get("render_grid"), version);
+
+            /* Render the image before committing the response, so that a failure still gets an
+             * error status instead of a truncated body. */
+            RasterCache.Raster raster = RASTER_CACHE.get(key);
+            BufferedImage img = null;
+            if (raster == null) {
+                img = renderImage(rasteredImgParams, currentRoute);
+            } else {
+                rasteredImgParams.put("raster_width", raster.width);
+                rasteredImgParams.put("raster_height", raster.height);
+            }
+
+            /* The PNG goes straight to the response through the Base64 encoder, so that neither
+             * it nor its Base64 text is held as a whole apart from the cached copy. */
+            res.type("application/json");
+            OutputStream out = res.raw().getOutputStream();
+            JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            json.beginObject();
+            for (Map.Entry<String, Object> field : rasteredImgParams.entrySet()) {
+                json.name(field.getKey());
+                gson.toJson(field.getValue(), field.getValue().getClass(), json);
+            }
+            /* Base64 needs no escaping, so the text is written raw between the quotes. */
+            json.name("b64_encoded_image_data").jsonValue("\"");
+            json.flush();
+            if (raster == null) {
+                BoundedCopyOutputStream copy =
+                        new BoundedCopyOutputStream(out, MAX_CACHED_RASTER_BYTES);
+                long encodeStart = System.nanoTime();
+                TileCompositor.writeBase64Png(img, copy);
+                PNG_ENCODE_WRITE_PHASE.observeSince(encodeStart);
+                byte[] encodedImage = copy.copied();
+                if (encodedImage != null) {
+                    RASTER_CACHE.put(key, new RasterCache.Raster(encodedImage, img.getWidth(),
+                            img.getHeight(), version));
+                }
+            } else {
+                out.write(raster.encodedImage);
+            }
+            out.write('"');
+            json.endObject();
+            json.flush();
+            /* A cached raster means this area was viewed lately and its neighbours prefetched. */
+            if (img != null) {
+                COMPOSITOR.prefetch(rasterer.neighbourTiles(params));
+            }
+            return "";
+        }));
 
         /* Define the routing endpoint for HTTP GET requests. */
-        get("/route", (req, res) -> {
+        get("/route", timed("/route", (req, res) -> {
             HashMap<String, Double> params =
                     getRequestParams(req, REQUIRED_ROUTE_REQUEST_PARAMS);
-            route = Router.shortestPath(graph, params.get("start_lon"), params.get("start_lat"),
-                    params.get("end_lon"), params.get("end_lat"));
-            String directions = getDirectionsText();
+            long start = System.nanoTime();
+            List<Long> route = Router.findRoute(graph, params.get("start_lon"),
+                    params.get("start_lat"), params.get("end_lon"), params.get("end_lat"),
+                    routing).path;
+            ROUTING_PHASE.observeSince(start);
+            setRoute(req, route);
+            String directions = getDirectionsText(route);
             Map<String, Object> routeParams = new HashMap<>();
             routeParams.put("routing_success", !route.isEmpty());
             routeParams.put("directions_success", directions.length() > 0);
             routeParams.put("directions", directions);
             Gson gson = new Gson();
             return gson.toJson(routeParams);
-        });
+        }));
+
+        /* Define the batch routing endpoint, which takes a JSON body of source and target
+         * points and answers with the road distances between all of them. */
+        post("/distance_matrix", timed("/distance_matrix", (req, res) -> {
+            MatrixRequest matrixRequest = null;
+            try {
+                matrixRequest = new Gson().fromJson(req.body(), MatrixRequest.class);
+            } catch (JsonParseException e) {
+                halt(HALT_RESPONSE, "Incorrect parameters - provide JSON.");
+            }
+            if (!MatrixRequest.isValid(matrixRequest)) {
+                halt(HALT_RESPONSE, "Incorrect parameters - provide at most "
+                        + MAX_MATRIX_POINTS + " [lon, lat] sources and targets.");
+            }
+            Gson gson = new Gson();
+            return gson.toJson(getDistanceMatrix(matrixRequest.sources, matrixRequest.targets));
+        }));
 
         /* Define the API endpoint for clearing the current route. */
-        get("/clear_route", (req, res) -> {
-            clearRoute();
+        get("/clear_route", timed("/clear_route", (req, res) -> {
+            clearRoute(req);
             return true;
-        });
+        }));
 
         /* Define the API endpoint for search */
-        get("/search", (req, res) -> {
+        get("/search", timed("/search", (req, res) -> {
             Set<String> reqParams = req.queryParams();
             String term = req.queryParams("term");
             Gson gson = new Gson();
+            long start = System.nanoTime();
             /* Search for actual location data. */
             if (reqParams.contains("full")) {
                 List<Map<String, Object>> data = getLocations(term);
+                SEARCH_PHASE.observeSince(start);
                 return gson.toJson(data);
             } else {
                 /* Search for prefix matching strings. */
-                List<String> matches = getLocationsByPrefix(term);
+                List<String> matches = getLocationsByPrefix(term, AUTOCOMPLETE_RESULTS);
+                SEARCH_PHASE.observeSince(start);
                 return gson.toJson(matches);
             }
+        }));
+
+        /* Define the debug endpoints reporting how well the caches are doing. */
+        get("/debug/tile_cache", (req, res) -> {
+            Gson gson = new Gson();
+            return gson.toJson(TILE_CACHE.stats());
+        });
+        get("/debug/raster_cache", (req, res) -> {
+            Gson gson = new Gson();
+            return gson.toJson(RASTER_CACHE.stats());
+        });
+
+        /* Define the metrics endpoint, in the Prometheus text format. */
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4");
+            return METRICS.exposition();
         });
 
         /* Define map application redirect */
@@ -171,6 +358,46 @@ public class MapServer {
         });
     }
 
+    /**
+     * Wraps a handler so that the latency of every request to it is recorded, including
+     * requests that are halted.
+     * @param endpoint The path of the endpoint, which labels its histogram.
+     * @param handler The handler.
+     * @return The timed handler.
+     */
+    private static spark.Route timed(String endpoint, spark.Route handler) {
+        Metrics.Histogram latency = METRICS.histogram(REQUEST_METRIC,
+                "Latency of requests by endpoint.", "endpoint", endpoint);
+        return (req, res) -> {
+            long start = System.nanoTime();
+            try {
+                return handler.handle(req, res);
+            } finally {
+                latency.observeSince(start);
+            }
+        };
+    }
+
+    /**
+     * Returns the histogram of a phase of answering requests, registering it if needed.
+     */
+    private static Metrics.Histogram phase(String name) {
+        return METRICS.histogram(PHASE_METRIC, "Latency of the phases of answering requests.",
+                "phase", name);
+    }
+
+    /**
+     * Loads a tile that is not in the tile cache, recording how long it takes.
+     */
+    private static BufferedImage loadTile(String path) {
+        long start = System.nanoTime();
+        try {
+            return TileCache.read(path);
+        } finally {
+            TILE_LOAD_PHASE.observeSince(start);
+        }
+    }
+
     /**
      * Validate & return a parameter map of the required request parameters.
      * Requires that all input parameters are doubles.
@@ -198,31 +425,19 @@ public class MapServer {
     }
 
     /**
-     * Writes the images corresponding to rasteredImgParams to the output stream.
+     * Renders the image corresponding to rasteredImgParams: the tiles of its render grid,
+     * composited in parallel, with the route drawn over them. Also puts the size of the image
+     * into rasteredImgParams.
      * In Spring 2016, students had to do this on their own, but in 2017,
      * we have made this into provided code since it was just a bit too low level.
      */
-    private static void writeImagesToOutputStream(Map<String, Object> rasteredImageParams,
-                                                  ByteArrayOutputStream os) {
+    private static BufferedImage renderImage(Map<String, Object> rasteredImageParams,
+                                             List<Long> route) {
         String[][] renderGrid = (String[][]) rasteredImageParams.get("render_grid");
-        int numVertTiles = renderGrid.length;
-        int numHorizTiles = renderGrid[0].length;
-
-        BufferedImage img = new BufferedImage(numHorizTiles * MapServer.TILE_SIZE,
-                numVertTiles * MapServer.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        long start = System.nanoTime();
+        BufferedImage img = COMPOSITOR.composite(renderGrid);
+        COMPOSITE_PHASE.observeSince(start);
         Graphics graphic = img.getGraphics();
-        int x = 0, y = 0;
-
-        for (int r = 0; r < numVertTiles; r += 1) {
-            for (int c = 0; c < numHorizTiles; c += 1) {
-                graphic.drawImage(getImage(IMG_ROOT + renderGrid[r][c]), x, y, null);
-                x += MapServer.TILE_SIZE;
-                if (x >= img.getWidth()) {
-                    x = 0;
-                    y += MapServer.TILE_SIZE;
-                }
-            }
-        }
 
         /* If there is a route, draw it. */
         double ullon = (double) rasteredImageParams.get("raster_ul_lon"); //tiles.get(0).ulp;
@@ -230,62 +445,147 @@ public class MapServer {
         double lrlon = (double) rasteredImageParams.get("raster_lr_lon"); //tiles.get(0).ulp;
         double lrlat = (double) rasteredImageParams.get("raster_lr_lat"); //tiles.get(0).ulp;
 
-        final double wdpp = (lrlon - ullon) / img.getWidth();
-        final double hdpp = (ullat - lrlat) / img.getHeight();
         if (route != null && !route.isEmpty()) {
             Graphics2D g2d = (Graphics2D) graphic;
             g2d.setColor(MapServer.ROUTE_STROKE_COLOR);
             g2d.setStroke(new BasicStroke(MapServer.ROUTE_STROKE_WIDTH_PX,
                     BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-            route.stream().reduce((v, w) -> {
-                g2d.drawLine((int) ((graph.lon(v) - ullon) * (1 / wdpp)),
-                             (int) ((ullat - graph.lat(v)) * (1 / hdpp)),
-                             (int) ((graph.lon(w) - ullon) * (1 / wdpp)),
-                             (int) ((ullat - graph.lat(w)) * (1 / hdpp)));
-                return w;
-            });
+            RouteRenderer.draw(g2d, graph, route, ullon, ullat, lrlon, lrlat, img.getWidth(),
+                    img.getHeight());
         }
+        graphic.dispose();
 
         rasteredImageParams.put("raster_width", img.getWidth());
         rasteredImageParams.put("raster_height", img.getHeight());
+        return img;
+    }
 
-        try {
-            ImageIO.write(img, "png", os);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static BufferedImage getImage(String imgPath) {
+        return TILE_CACHE.get(imgPath);
+    }
+
+    /**
+     * Computes the road distances between two sets of points, each snapped to its closest
+     * vertex.
+     * @param sources The [lon, lat] of the source points.
+     * @param targets The [lon, lat] of the target points.
+     * @return A map of "sources" and "targets", the ids of the vertices the points were snapped
+     * to, and "distances", the rows of distances in miles from every source to every target,
+     * with null where there is no path.
+     */
+    static Map<String, Object> getDistanceMatrix(double[][] sources, double[][] targets) {
+        long[] sourceIds = closestIds(sources);
+        long[] targetIds = closestIds(targets);
+        double[] distances = Router.distanceMatrix(graph, sourceIds, targetIds);
+        Double[][] rows = new Double[sources.length][targets.length];
+        for (int i = 0; i < sources.length; i += 1) {
+            for (int j = 0; j < targets.length; j += 1) {
+                double d = distances[i * targets.length + j];
+                rows[i][j] = Double.isInfinite(d) ? null : d;
+            }
         }
+        Map<String, Object> result = new HashMap<>();
+        result.put("sources", sourceIds);
+        result.put("targets", targetIds);
+        result.put("distances", rows);
+        return result;
+    }
 
+    private static long[] closestIds(double[][] points) {
+        long[] ids = new long[points.length];
+        for (int i = 0; i < points.length; i += 1) {
+            ids[i] = graph.closest(points[i][0], points[i][1]);
+        }
+        return ids;
     }
 
-    private static BufferedImage getImage(String imgPath) {
-        BufferedImage tileImg = null;
-        if (tileImg == null) {
-            try {
-                File in = new File(imgPath);
-                tileImg = ImageIO.read(in);
-            } catch (IOException | NullPointerException e) {
-                e.printStackTrace();
-            }
+    /**
+     * Clear the current found route of the client making a request, if it exists.
+     * @param req The request of the client.
+     */
+    public static void clearRoute(spark.Request req) {
+        setRoute(req, new LinkedList<Long>());
+    }
+
+    /**
+     * Returns the route of the client making a request.
+     */
+    private static RouteState routeOf(spark.Request req) {
+        spark.Session session = req.session(false);
+        RouteState state = session == null ? null : session.attribute(ROUTE_ATTRIBUTE);
+        return state == null ? RouteState.NONE : state;
+    }
+
+    /**
+     * Replaces the route of the client making a request, and drops the cached rasters its old
+     * route was drawn on. Routes of other clients are not affected.
+     */
+    private static void setRoute(spark.Request req, List<Long> route) {
+        spark.Session session = req.session(true);
+        if (session.isNew()) {
+            session.maxInactiveInterval(SESSION_TIMEOUT_SECONDS);
+        }
+        RouteState old = session.attribute(ROUTE_ATTRIBUTE);
+        session.attribute(ROUTE_ATTRIBUTE,
+                new RouteState(route, ROUTE_VERSIONS.incrementAndGet()));
+        if (old != null) {
+            RASTER_CACHE.invalidateRoute(old.version);
         }
-        return tileImg;
     }
 
     /**
-     * Clear the current found route, if it exists.
+     * Returns whether any part of a route may be drawn on a raster, going by the bounding box of
+     * the route.
      */
-    public static void clearRoute() {
-        route = new LinkedList<Long>();
+    private static boolean routeOverlaps(List<Long> r, Map<String, Object> rasteredImageParams) {
+        if (r == null || r.isEmpty()) {
+            return false;
+        }
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        for (long id : r) {
+            minLon = Math.min(minLon, graph.lon(id));
+            maxLon = Math.max(maxLon, graph.lon(id));
+            minLat = Math.min(minLat, graph.lat(id));
+            maxLat = Math.max(maxLat, graph.lat(id));
+        }
+        /* Pad by the width of the stroke, which may reach into the raster from outside it. */
+        double ullon = (double) rasteredImageParams.get("raster_ul_lon");
+        double ullat = (double) rasteredImageParams.get("raster_ul_lat");
+        double lrlon = (double) rasteredImageParams.get("raster_lr_lon");
+        double lrlat = (double) rasteredImageParams.get("raster_lr_lat");
+        String[][] renderGrid = (String[][]) rasteredImageParams.get("render_grid");
+        double padLon = ROUTE_STROKE_WIDTH_PX * (lrlon - ullon)
+                / (renderGrid[0].length * TILE_SIZE);
+        double padLat = ROUTE_STROKE_WIDTH_PX * (ullat - lrlat)
+                / (renderGrid.length * TILE_SIZE);
+        return minLon <= lrlon + padLon && maxLon >= ullon - padLon
+                && minLat <= ullat + padLat && maxLat >= lrlat - padLat;
     }
 
     /**
-     * In linear time, collect all the names of OSM locations that prefix-match the query string.
+     * Collect all the names of OSM locations that prefix-match the query string.
      * @param prefix Prefix string to be searched for. Could be any case, with our without
      *               punctuation.
      * @return A <code>List</code> of the full names of locations whose cleaned name matches the
-     * cleaned <code>prefix</code>.
+     * cleaned <code>prefix</code>, most popular first.
      */
     public static List<String> getLocationsByPrefix(String prefix) {
-        return new LinkedList<>();
+        return getLocationsByPrefix(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Collect the most popular names of OSM locations that prefix-match the query string, i.e.
+     * the names most locations carry. Takes time proportional to the length of the prefix plus
+     * <code>limit</code>, for limits up to LocationIndex.TOP_K.
+     * @param prefix Prefix string to be searched for.
+     * @param limit The most names to return.
+     * @return A <code>List</code> of at most <code>limit</code> full names, most popular first.
+     */
+    static List<String> getLocationsByPrefix(String prefix, int limit) {
+        return graph.locationIndex().complete(GraphDB.cleanString(prefix), limit);
     }
 
     /**
@@ -301,7 +601,17 @@ public class MapServer {
      * "id" : Number, The id of the node. <br>
      */
     public static List<Map<String, Object>> getLocations(String locationName) {
-        return new LinkedList<>();
+        int[] matches = graph.locationIndex().locations(GraphDB.cleanString(locationName));
+        List<Map<String, Object>> locations = new ArrayList<>(matches.length);
+        for (int j : matches) {
+            Map<String, Object> location = new HashMap<>();
+            location.put("lat", graph.locationLat(j));
+            location.put("lon", graph.locationLon(j));
+            location.put("name", graph.locationName(j));
+            location.put("id", graph.locationId(j));
+            locations.add(location);
+        }
+        return locations;
     }
 
     /**
@@ -326,10 +636,10 @@ public class MapServer {
     }
 
     /**
-     * Takes the route of this MapServer and converts it into an HTML friendly
+     * Takes a route of this MapServer and converts it into an HTML friendly
      * String to be passed to the frontend.
      */
-    private static String getDirectionsText() {
+    private static String getDirectionsText(List<Long> route) {
         List<Router.NavigationDirection> directions = Router.routeDirections(graph, route);
         if (directions == null || directions.isEmpty()) {
           return "";
@@ -342,4 +652,96 @@ public class MapServer {
         }
         return sb.toString();
     }
+
+    /**
+     * The JSON body of a distance matrix request.
+     */
+    private static class MatrixRequest {
+        double[][] sources;
+        double[][] targets;
+
+        static boolean isValid(MatrixRequest r) {
+            return r != null && isValid(r.sources) && isValid(r.targets);
+        }
+
+        private static boolean isValid(double[][] points) {
+            if (points == null || points.length > MAX_MATRIX_POINTS) {
+                return false;
+            }
+            for (double[] p : points) {
+                if (p == null || p.length != 2) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The route of one client, which is never modified, so that the route and its version are
+     * always read together. The version keys the rasters the route is drawn on.
+     */
+    private static class RouteState {
+        static final RouteState NONE =
+                new RouteState(new LinkedList<Long>(), RasterCache.NO_ROUTE);
+
+        final List<Long> route;
+        final long version;
+
+        RouteState(List<Long> route, long version) {
+            this.route = route;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Writes everything to a stream, and keeps a copy of it as long as the copy stays within a
+     * bound, so that rasters too large to cache are not buffered.
+     */
+    private static class BoundedCopyOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final int maxBytes;
+        /** The copy, or null once it has outgrown maxBytes. */
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        BoundedCopyOutputStream(OutputStream out, int maxBytes) {
+            this.out = out;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Returns the bytes written.
+         * @return The bytes, or null if there were more than the bound.
+         */
+        byte[] copied() {
+            return copy == null ? null : copy.toByteArray();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null && copy.size() + 1 > maxBytes) {
+                copy = null;
+            }
+            if (copy != null) {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null && copy.size() + len > maxBytes) {
+                copy = null;
+            }
+            if (copy != null) {
+                copy.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
 }
@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process registry of latency histograms, written out in the Prometheus text exposition
+ * format for the metrics endpoint of the server.
+ *
+ * A histogram counts observations in fixed buckets from half a millisecond to ten seconds, so
+ * recording one is a scan of a few bounds and two atomic additions, and never allocates.
+ * Histograms are registered once, typically into static fields, and recorded into from any
+ * thread.
+ */
+class Metrics {
+    /** Upper bounds of the buckets in seconds; a last bucket takes everything larger. */
+    static final double[] BUCKET_SECONDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+        0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_SECONDS.length; i += 1) {
+            BUCKET_NANOS[i] = (long) (BUCKET_SECONDS[i] * 1e9);
+        }
+    }
+
+    /** Histograms by family name, each family in registration order. */
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Returns the histogram of a family with the given label, registering it if it is new.
+     * @param family The metric name, such as bearmaps_request_seconds.
+     * @param help What the family measures, for the exposition.
+     * @param label The name of the label telling the histograms of the family apart.
+     * @param value The value of the label.
+     * @return The histogram.
+     */
+    synchronized Histogram histogram(String family, String help, String label, String value) {
+        Family f = families.computeIfAbsent(family, k -> new Family(help, label));
+        if (!f.label.equals(label)) {
+            throw new IllegalArgumentException("The histograms of " + family
+                    + " are labelled by " + f.label + ", not " + label + ".");
+        }
+        for (Histogram h : f.histograms) {
+            if (h.value.equals(value)) {
+                return h;
+            }
+        }
+        Histogram h = new Histogram(value);
+        f.histograms.add(h);
+        return h;
+    }
+
+    /**
+     * Writes all histograms in the Prometheus text exposition format: cumulative bucket
+     * counts, then the sum and count of every histogram.
+     * @return The text.
+     */
+    synchronized String exposition() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family f = entry.getValue();
+            text.append("# HELP ").append(name).append(' ').append(f.help).append('\n');
+            text.append("# TYPE ").append(name).append(" histogram\n");
+            for (Histogram h : f.histograms) {
+                String labels = f.label + "=\"" + h.value + "\"";
+                long count = 0;
+                for (int i = 0; i <= BUCKET_SECONDS.length; i += 1) {
+                    count += h.buckets.get(i);
+                    String le = i < BUCKET_SECONDS.length ? Double.toString(BUCKET_SECONDS[i])
+                            : "+Inf";
+                    text.append(name).append("_bucket{").append(labels).append(",le=\"")
+                            .append(le).append("\"} ").append(count).append('\n');
+                }
+                text.append(name).append("_sum{").append(labels).append("} ")
+                        .append(h.sumNanos.sum() / 1e9).append('\n');
+                text.append(name).append("_count{").append(labels).append("} ")
+                        .append(count).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * The histograms of one metric name, and the label that tells them apart.
+     */
+    private static class Family {
+        final String help;
+        final String label;
+        final List<Histogram> histograms = new ArrayList<>();
+
+        Family(String help, String label) {
+            this.help = help;
+            this.label = label;
+        }
+    }
+
+    /**
+     * A latency histogram.
+     */
+    static class Histogram {
+        private final String value;
+        /** Observations per bucket, not cumulative; the last bucket is the overflow. */
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_SECONDS.length + 1);
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram(String value) {
+            this.value = value;
+        }
+
+        /**
+         * Records a latency.
+         * @param nanos The latency in nanoseconds.
+         */
+        void observe(long nanos) {
+            int i = 0;
+            while (i < BUCKET_NANOS.length && nanos > BUCKET_NANOS[i]) {
+                i += 1;
+            }
+            buckets.incrementAndGet(i);
+            sumNanos.add(nanos);
+        }
+
+        /**
+         * Records the time since a start time.
+         * @param startNanos The start, as returned by System.nanoTime().
+         */
+        void observeSince(long startNanos) {
+            observe(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Returns the number of observations so far.
+         * @return The count.
+         */
+        long count() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i += 1) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+    }
+}
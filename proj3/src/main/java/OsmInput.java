@@ -0,0 +1,65 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens OSM XML extracts for streaming, plain or gzip-compressed, through one large buffer. The
+ * compression is recognised by the first bytes of the file, not its name.
+ */
+class OsmInput {
+    /** Size of the read buffer, and of the inflater's input buffer for compressed files. */
+    static final int BUFFER_SIZE = 1 << 20;
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    private OsmInput() {
+    }
+
+    /**
+     * Opens an extract.
+     * @param file The extract, either XML or XML compressed with gzip.
+     * @return A stream of the XML, which the caller must close.
+     * @throws IOException If the file can not be read, or is compressed with bzip2, which the
+     * JDK can not decompress.
+     */
+    static InputStream open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+        try {
+            in.mark(3);
+            int b1 = in.read();
+            int b2 = in.read();
+            int b3 = in.read();
+            in.reset();
+            if (b1 == GZIP_MAGIC_1 && b2 == GZIP_MAGIC_2) {
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            }
+            if (b1 == 'B' && b2 == 'Z' && b3 == 'h') {
+                throw new IOException("bzip2 extracts are not supported, recompress " + file
+                        + " with gzip.");
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns whether an extract is compressed.
+     * @param file The extract.
+     * @return Whether the file starts with the gzip magic number.
+     * @throws IOException If the file can not be read.
+     */
+    static boolean isCompressed(File file) throws IOException {
+        try (InputStream in = Channels.newInputStream(FileChannel.open(file.toPath(),
+                StandardOpenOption.READ))) {
+            return in.read() == GZIP_MAGIC_1 && in.read() == GZIP_MAGIC_2;
+        }
+    }
+}
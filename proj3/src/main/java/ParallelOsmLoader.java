@@ -0,0 +1,372 @@
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Stages an OSM extract into a GraphDB on several threads. The parser thread only tokenizes: it
+ * copies the raw attribute values of nodes and ways into batches and hands them to worker
+ * threads. The workers parse the numbers, drop the nodes and ways GraphBuildingHandler would
+ * drop, and turn the ways into edges. The parser thread then stages the converted batches in
+ * file order, so the staged graph is exactly the one GraphBuildingHandler would stage, and
+ * GraphDB.clean() builds the adjacency structure from it as usual.
+ *
+ * A batch holds either nodes or ways, never both, so that names are met in file order too, and
+ * only a bounded number of batches are in flight at once, so memory does not grow with the
+ * extract while the parser runs ahead of the workers.
+ */
+class ParallelOsmLoader {
+    /** Nodes and way refs per batch. */
+    private static final int BATCH_SIZE = 1 << 13;
+    /** Batches in flight per worker. */
+    private static final int BATCHES_PER_WORKER = 4;
+
+    private final GraphDB g;
+    private final long[] roadNodes;
+    private final int numWorkers;
+
+    /* Nanoseconds spent in each phase; workerNanos is summed over all workers. */
+    private long parseNanos = 0;
+    private long stageNanos = 0;
+    private long waitNanos = 0;
+    private final AtomicLong workerNanos = new AtomicLong();
+
+    /**
+     * Creates a loader.
+     * @param g The graph to stage the extract into.
+     * @param roadNodes The sorted ids of the nodes on roads, as collected by RoadNodeCollector;
+     *                  other nodes are only staged if they are named. Null to stage all nodes.
+     * @param numWorkers The number of worker threads, besides the parser thread.
+     */
+    ParallelOsmLoader(GraphDB g, long[] roadNodes, int numWorkers) {
+        this.g = g;
+        this.roadNodes = roadNodes;
+        this.numWorkers = numWorkers;
+    }
+
+    /**
+     * Stages the nodes, ways and locations of an extract.
+     * @param file The extract, which may be compressed with gzip.
+     * @throws ParserConfigurationException If no SAX parser is available.
+     * @throws SAXException If the XML is malformed, or a worker fails to convert a batch.
+     * @throws IOException If the file can not be read.
+     */
+    void load(File file) throws ParserConfigurationException, SAXException, IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(numWorkers, r -> {
+            Thread t = new Thread(r, "osm-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        long start = System.nanoTime();
+        try (InputStream in = OsmInput.open(file)) {
+            Tokenizer tokenizer = new Tokenizer(workers);
+            SAXParserFactory.newInstance().newSAXParser().parse(in, tokenizer);
+            tokenizer.finish();
+        } finally {
+            workers.shutdownNow();
+        }
+        parseNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Returns how long the last load took, by phase, in milliseconds.
+     * @return The wall-clock time of the whole load ("total"), the time the parser thread spent
+     * tokenizing, staging converted batches and waiting for workers, and the time the workers
+     * spent converting batches, summed over the workers.
+     */
+    Map<String, Object> timings() {
+        Map<String, Object> timings = new LinkedHashMap<>();
+        timings.put("total", parseNanos / 1e6);
+        timings.put("tokenize", (parseNanos - stageNanos - waitNanos) / 1e6);
+        timings.put("stage", stageNanos / 1e6);
+        timings.put("wait", waitNanos / 1e6);
+        timings.put("convert", workerNanos.get() / 1e6);
+        timings.put("workers", numWorkers);
+        return timings;
+    }
+
+    /**
+     * Converts a batch of raw attribute values into staged form.
+     */
+    private Converted convert(Batch batch) {
+        long start = System.nanoTime();
+        Converted c = new Converted();
+        if (batch.numNodes > 0) {
+            c.nodeIds = new long[batch.numNodes];
+            c.nodeLons = new double[batch.numNodes];
+            c.nodeLats = new double[batch.numNodes];
+            c.locationIds = new long[batch.numLocations];
+            c.locationNames = new String[batch.numLocations];
+            for (int i = 0; i < batch.numNodes; i += 1) {
+                long id = Long.parseLong(batch.nodeIds[i]);
+                String name = batch.nodeNames[i];
+                if (name != null || roadNodes == null
+                        || Arrays.binarySearch(roadNodes, id) >= 0) {
+                    c.nodeIds[c.numNodes] = id;
+                    c.nodeLons[c.numNodes] = Double.parseDouble(batch.nodeLons[i]);
+                    c.nodeLats[c.numNodes] = Double.parseDouble(batch.nodeLats[i]);
+                    c.numNodes += 1;
+                }
+                if (name != null) {
+                    c.locationIds[c.numLocations] = id;
+                    c.locationNames[c.numLocations] = name;
+                    c.numLocations += 1;
+                }
+            }
+        }
+        if (batch.numWays > 0) {
+            c.wayNames = new String[batch.numWays];
+            c.edgeFroms = new long[batch.numRefs];
+            c.edgeTos = new long[batch.numRefs];
+            c.edgeWays = new int[batch.numRefs];
+            int first = 0;
+            for (int w = 0; w < batch.numWays; w += 1) {
+                int end = batch.wayEnds[w];
+                if (GraphBuildingHandler.isRoad(batch.wayHighways[w])) {
+                    c.wayNames[c.numWays] = batch.wayNames[w];
+                    long previous = first < end ? Long.parseLong(batch.refs[first]) : 0;
+                    for (int k = first + 1; k < end; k += 1) {
+                        long ref = Long.parseLong(batch.refs[k]);
+                        c.edgeFroms[c.numEdges] = previous;
+                        c.edgeTos[c.numEdges] = ref;
+                        c.edgeWays[c.numEdges] = c.numWays;
+                        c.numEdges += 1;
+                        previous = ref;
+                    }
+                    c.numWays += 1;
+                }
+                first = end;
+            }
+        }
+        workerNanos.addAndGet(System.nanoTime() - start);
+        return c;
+    }
+
+    /**
+     * Stages a converted batch, in the same order GraphBuildingHandler would.
+     */
+    private void stage(Converted c) {
+        long start = System.nanoTime();
+        for (int i = 0; i < c.numNodes; i += 1) {
+            g.addNode(c.nodeIds[i], c.nodeLons[i], c.nodeLats[i]);
+        }
+        for (int j = 0; j < c.numLocations; j += 1) {
+            g.addLocation(c.locationIds[j], c.locationNames[j]);
+        }
+        int[] ways = new int[c.numWays];
+        for (int w = 0; w < c.numWays; w += 1) {
+            ways[w] = g.addWay(c.wayNames[w]);
+        }
+        for (int e = 0; e < c.numEdges; e += 1) {
+            g.addEdge(c.edgeFroms[e], c.edgeTos[e], ways[c.edgeWays[e]]);
+        }
+        stageNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Raw attribute values of a run of nodes, or of a run of ways.
+     */
+    private static class Batch {
+        String[] nodeIds;
+        String[] nodeLons;
+        String[] nodeLats;
+        /** The name of each node, or null if it has none. */
+        String[] nodeNames;
+        int numNodes = 0;
+        int numLocations = 0;
+        /** The refs of way w are refs[wayEnds[w - 1]] to refs[wayEnds[w] - 1]. */
+        String[] refs;
+        int numRefs = 0;
+        int[] wayEnds;
+        String[] wayHighways;
+        String[] wayNames;
+        int numWays = 0;
+
+        /**
+         * Starts the next node.
+         */
+        void startNode(String id, String lon, String lat) {
+            if (nodeIds == null) {
+                nodeIds = new String[BATCH_SIZE];
+                nodeLons = new String[BATCH_SIZE];
+                nodeLats = new String[BATCH_SIZE];
+                nodeNames = new String[BATCH_SIZE];
+            }
+            nodeIds[numNodes] = id;
+            nodeLons[numNodes] = lon;
+            nodeLats[numNodes] = lat;
+            nodeNames[numNodes] = null;
+        }
+
+        /**
+         * Starts the next way.
+         */
+        void startWay() {
+            if (refs == null) {
+                refs = new String[BATCH_SIZE];
+                wayEnds = new int[BATCH_SIZE];
+                wayHighways = new String[BATCH_SIZE];
+                wayNames = new String[BATCH_SIZE];
+            }
+            wayHighways[numWays] = null;
+            wayNames[numWays] = null;
+        }
+
+        /**
+         * Adds a ref to the current way. A single way may have more than BATCH_SIZE refs.
+         */
+        void addRef(String ref) {
+            if (numRefs == refs.length) {
+                refs = Arrays.copyOf(refs, 2 * refs.length);
+            }
+            refs[numRefs++] = ref;
+        }
+
+        boolean isFull() {
+            return numNodes == BATCH_SIZE || numRefs >= BATCH_SIZE || numWays == BATCH_SIZE;
+        }
+
+        boolean isEmpty() {
+            return numNodes == 0 && numWays == 0;
+        }
+    }
+
+    /**
+     * A batch converted by a worker, ready to be staged.
+     */
+    private static class Converted {
+        long[] nodeIds;
+        double[] nodeLons;
+        double[] nodeLats;
+        int numNodes = 0;
+        long[] locationIds;
+        String[] locationNames;
+        int numLocations = 0;
+        /** The names of the roads of the batch; the other ways are dropped. */
+        String[] wayNames;
+        int numWays = 0;
+        long[] edgeFroms;
+        long[] edgeTos;
+        /** The index, into wayNames, of the road of each edge. */
+        int[] edgeWays;
+        int numEdges = 0;
+    }
+
+    /**
+     * The SAX handler of the parser thread, which fills batches and stages the converted ones.
+     */
+    private class Tokenizer extends DefaultHandler {
+        private final ExecutorService workers;
+        /** Converted batches, in file order, not staged yet. */
+        private final ArrayDeque<Future<Converted>> inFlight = new ArrayDeque<>();
+        private Batch batch = new Batch();
+        private boolean inNode = false;
+        private boolean inWay = false;
+
+        Tokenizer(ExecutorService workers) {
+            this.workers = workers;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                                 Attributes attributes) throws SAXException {
+            if (qName.equals("node")) {
+                if (batch.numWays > 0 || batch.numNodes == BATCH_SIZE) {
+                    submit();
+                }
+                inNode = true;
+                batch.startNode(attributes.getValue("id"), attributes.getValue("lon"),
+                        attributes.getValue("lat"));
+            } else if (qName.equals("way")) {
+                if (batch.numNodes > 0 || batch.isFull()) {
+                    submit();
+                }
+                inWay = true;
+                batch.startWay();
+            } else if (inWay && qName.equals("nd")) {
+                batch.addRef(attributes.getValue("ref"));
+            } else if (qName.equals("tag")) {
+                String k = attributes.getValue("k");
+                if (inWay && k.equals("highway")) {
+                    batch.wayHighways[batch.numWays] = attributes.getValue("v");
+                } else if (inWay && k.equals("name")) {
+                    batch.wayNames[batch.numWays] = attributes.getValue("v");
+                } else if (inNode && k.equals("name")) {
+                    batch.nodeNames[batch.numNodes] = attributes.getValue("v");
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (qName.equals("node")) {
+                if (batch.nodeNames[batch.numNodes] != null) {
+                    batch.numLocations += 1;
+                }
+                batch.numNodes += 1;
+                inNode = false;
+            } else if (qName.equals("way")) {
+                batch.wayEnds[batch.numWays] = batch.numRefs;
+                batch.numWays += 1;
+                inWay = false;
+            }
+        }
+
+        /**
+         * Submits the last batch and stages every batch still in flight.
+         */
+        void finish() throws SAXException {
+            if (!batch.isEmpty()) {
+                submit();
+            }
+            while (!inFlight.isEmpty()) {
+                stageNext();
+            }
+        }
+
+        /**
+         * Hands the current batch to the workers, and stages the converted batches that are
+         * ready, waiting for the oldest one if too many are in flight.
+         */
+        private void submit() throws SAXException {
+            Batch full = batch;
+            inFlight.add(workers.submit(() -> convert(full)));
+            batch = new Batch();
+            while (!inFlight.isEmpty() && (inFlight.peek().isDone()
+                    || inFlight.size() > BATCHES_PER_WORKER * numWorkers)) {
+                stageNext();
+            }
+        }
+
+        private void stageNext() throws SAXException {
+            long start = System.nanoTime();
+            Converted converted;
+            try {
+                converted = inFlight.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw new SAXException("Could not convert a batch of the extract.",
+                        cause instanceof Exception ? (Exception) cause : e);
+            }
+            waitNanos += System.nanoTime() - start;
+            stage(converted);
+        }
+    }
+}
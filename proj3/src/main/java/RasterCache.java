@@ -0,0 +1,146 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of fully rendered raster responses, so that viewing the same tiles again skips
+ * compositing them, encoding the PNG and encoding that in Base64.
+ *
+ * A raster is identified by its render grid, which Rasterer derives deterministically from the
+ * query box, and by the version of the route drawn over it, or -1 if no route was drawn. Every
+ * route of every client gets a version of its own, and the rasters of a route are dropped by
+ * invalidateRoute when its client replaces it; rasters without a route are shared and stay
+ * valid. The cache is bounded by the size of the encoded images and evicts the least recently
+ * used first. All methods are synchronized.
+ */
+class RasterCache {
+    /** Route version of rasters without a route drawn over them. */
+    static final long NO_ROUTE = -1;
+
+    private final long capacityBytes;
+    /** Rasters by key, in access order, from least to most recently used. */
+    private final LinkedHashMap<String, Raster> rasters = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * Creates an empty cache.
+     * @param capacityBytes The most bytes the encoded images may take.
+     */
+    RasterCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /**
+     * Returns the key of a raster.
+     * @param renderGrid The render grid of the raster, as returned by Rasterer.
+     * @param routeVersion The version of the route drawn over it, or NO_ROUTE.
+     * @return The key, made of the first and last tiles of the grid and the route version.
+     */
+    static String key(String[][] renderGrid, long routeVersion) {
+        String[] lastRow = renderGrid[renderGrid.length - 1];
+        return renderGrid[0][0] + ':' + lastRow[lastRow.length - 1] + ':' + routeVersion;
+    }
+
+    /**
+     * Returns a cached raster.
+     * @param key The key of the raster.
+     * @return The raster, or null if it is not cached.
+     */
+    synchronized Raster get(String key) {
+        Raster raster = rasters.get(key);
+        if (raster == null) {
+            misses += 1;
+        } else {
+            hits += 1;
+        }
+        return raster;
+    }
+
+    /**
+     * Caches a raster, evicting the least recently used ones if the cache is full.
+     * @param key The key of the raster.
+     * @param raster The rendered raster.
+     */
+    synchronized void put(String key, Raster raster) {
+        long bytes = raster.sizeBytes();
+        if (bytes > capacityBytes) {
+            return;
+        }
+        Raster old = rasters.put(key, raster);
+        if (old != null) {
+            sizeBytes -= old.sizeBytes();
+        }
+        sizeBytes += bytes;
+        Iterator<Raster> lru = rasters.values().iterator();
+        while (sizeBytes > capacityBytes) {
+            sizeBytes -= lru.next().sizeBytes();
+            lru.remove();
+            evictions += 1;
+        }
+    }
+
+    /**
+     * Drops every raster a route was drawn over, since the route was replaced.
+     * @param routeVersion The version of the route.
+     */
+    synchronized void invalidateRoute(long routeVersion) {
+        if (routeVersion == NO_ROUTE) {
+            return;
+        }
+        Iterator<Raster> it = rasters.values().iterator();
+        while (it.hasNext()) {
+            Raster raster = it.next();
+            if (raster.routeVersion == routeVersion) {
+                sizeBytes -= raster.sizeBytes();
+                it.remove();
+                invalidations += 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the counters of the cache, for the debug endpoint of the server.
+     * @return The capacity and current size in bytes, the number of cached rasters, and the
+     * number of hits, misses, evictions and invalidations so far.
+     */
+    synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity_bytes", capacityBytes);
+        stats.put("size_bytes", sizeBytes);
+        stats.put("rasters", rasters.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        long lookups = hits + misses;
+        stats.put("hit_rate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return stats;
+    }
+
+    /**
+     * A rendered raster: the PNG as Base64 text in ASCII, ready to be written to a response, and
+     * its size in pixels.
+     */
+    static class Raster {
+        final byte[] encodedImage;
+        final int width;
+        final int height;
+        /** Version of the route drawn over the image, or NO_ROUTE. */
+        final long routeVersion;
+
+        Raster(byte[] encodedImage, int width, int height, long routeVersion) {
+            this.encodedImage = encodedImage;
+            this.width = width;
+            this.height = height;
+            this.routeVersion = routeVersion;
+        }
+
+        long sizeBytes() {
+            return encodedImage.length;
+        }
+    }
+}
@@ -8,9 +8,26 @@ import java.util.Map;
  * not draw the output correctly.
  */
 public class Rasterer {
+    /** Depth of the deepest tiles, d7_x127_y127.png being the last one. */
+    static final int MAX_DEPTH = 7;
+    /** The tiles of the map area, shared by all rasterers. */
+    static final TilePyramid PYRAMID = new TilePyramid(MapServer.ROOT_ULLON, MapServer.ROOT_ULLAT,
+            MapServer.ROOT_LRLON, MapServer.ROOT_LRLAT, MAX_DEPTH, MapServer.TILE_SIZE);
+    private static final String[] NO_TILES = new String[0];
+
+    private final boolean prefetchNeighbours;
 
     public Rasterer() {
-        // YOUR CODE HERE
+        this(false);
+    }
+
+    /**
+     * Creates a rasterer.
+     * @param prefetchNeighbours Whether neighbourTiles should name the tiles around a raster,
+     *                           so that they can be loaded before the user pans to them.
+     */
+    Rasterer(boolean prefetchNeighbours) {
+        this.prefetchNeighbours = prefetchNeighbours;
     }
 
     /**
@@ -42,11 +59,70 @@ public class Rasterer {
      *                    forget to set this to true on success! <br>
      */
     public Map<String, Object> getMapRaster(Map<String, Double> params) {
-        // System.out.println(params);
+        double ullon = params.get("ullon");
+        double ullat = params.get("ullat");
+        double lrlon = params.get("lrlon");
+        double lrlat = params.get("lrlat");
+        double width = params.get("w");
+
         Map<String, Object> results = new HashMap<>();
-        System.out.println("Since you haven't implemented getMapRaster, nothing is displayed in "
-                           + "your browser.");
+        if (!isValid(ullon, ullat, lrlon, lrlat)) {
+            results.put("query_success", false);
+            return results;
+        }
+
+        /* The depth, tile ranges and names all come from the pyramid; nothing is formatted. */
+        int depth = PYRAMID.depthFor((lrlon - ullon) / width);
+        int xMin = PYRAMID.column(depth, ullon);
+        int xMax = PYRAMID.column(depth, lrlon);
+        int yMin = PYRAMID.row(depth, ullat);
+        int yMax = PYRAMID.row(depth, lrlat);
+
+        String[][] grid = new String[yMax - yMin + 1][xMax - xMin + 1];
+        for (int y = yMin; y <= yMax; y += 1) {
+            for (int x = xMin; x <= xMax; x += 1) {
+                grid[y - yMin][x - xMin] = PYRAMID.fileName(depth, x, y);
+            }
+        }
+
+        results.put("render_grid", grid);
+        results.put("raster_ul_lon", PYRAMID.lon(depth, xMin));
+        results.put("raster_ul_lat", PYRAMID.lat(depth, yMin));
+        results.put("raster_lr_lon", PYRAMID.lon(depth, xMax + 1));
+        results.put("raster_lr_lat", PYRAMID.lat(depth, yMax + 1));
+        results.put("depth", depth);
+        results.put("query_success", true);
         return results;
     }
 
+    /**
+     * Returns the tiles around the raster of a query, at the same depth, if this rasterer
+     * prefetches neighbours. Warming the tile cache with them makes panning by up to a tile
+     * draw from memory.
+     * @param params The query, as for getMapRaster.
+     * @return The file names of the neighbouring tiles, or none if this rasterer does not
+     * prefetch or the query fails.
+     */
+    public String[] neighbourTiles(Map<String, Double> params) {
+        double ullon = params.get("ullon");
+        double ullat = params.get("ullat");
+        double lrlon = params.get("lrlon");
+        double lrlat = params.get("lrlat");
+        if (!prefetchNeighbours || !isValid(ullon, ullat, lrlon, lrlat)) {
+            return NO_TILES;
+        }
+        int depth = PYRAMID.depthFor((lrlon - ullon) / params.get("w"));
+        return PYRAMID.neighbours(depth, PYRAMID.column(depth, ullon),
+                PYRAMID.column(depth, lrlon), PYRAMID.row(depth, ullat),
+                PYRAMID.row(depth, lrlat));
+    }
+
+    /**
+     * Returns whether a query box is well formed and overlaps the area the tiles cover.
+     */
+    private static boolean isValid(double ullon, double ullat, double lrlon, double lrlat) {
+        return ullon < lrlon && ullat > lrlat
+                && lrlon > MapServer.ROOT_ULLON && ullon < MapServer.ROOT_LRLON
+                && lrlat < MapServer.ROOT_ULLAT && ullat > MapServer.ROOT_LRLAT;
+    }
 }
@@ -0,0 +1,96 @@
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.Arrays;
+
+/**
+ * First pass over an OSM extract, which collects the ids of the nodes on roads that
+ * GraphBuildingHandler will turn into edges. Given these, the second pass can drop every other
+ * unnamed node as it streams by, instead of staging all of them and pruning them in
+ * GraphDB.clean().
+ *
+ * The ids are kept sorted and distinct in one long array. New ids are buffered and merged into
+ * it whenever the buffer fills up, so memory stays proportional to the number of road nodes
+ * however many ways refer to them.
+ */
+class RoadNodeCollector extends DefaultHandler {
+    /** Number of ids buffered before they are merged into the sorted ids. */
+    private static final int PENDING_CAPACITY = 1 << 20;
+
+    private long[] nodeIds = new long[0];
+    private final long[] pending = new long[PENDING_CAPACITY];
+    private int numPending = 0;
+    /** Node references of the way currently being parsed, in wayNodes[0..wayLength). */
+    private long[] wayNodes = new long[16];
+    private int wayLength = 0;
+    private boolean inWay = false;
+    private boolean validWay = false;
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if (qName.equals("way")) {
+            inWay = true;
+            wayLength = 0;
+            validWay = false;
+        } else if (inWay && qName.equals("nd")) {
+            if (wayLength == wayNodes.length) {
+                wayNodes = Arrays.copyOf(wayNodes, 2 * wayLength);
+            }
+            wayNodes[wayLength++] = Long.parseLong(attributes.getValue("ref"));
+        } else if (inWay && qName.equals("tag") && attributes.getValue("k").equals("highway")) {
+            validWay = GraphBuildingHandler.isRoad(attributes.getValue("v"));
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (qName.equals("way")) {
+            /* A lone node makes no edge, so GraphBuildingHandler would not keep it either. */
+            if (validWay && wayLength > 1) {
+                for (int i = 0; i < wayLength; i += 1) {
+                    if (numPending == PENDING_CAPACITY) {
+                        merge();
+                    }
+                    pending[numPending++] = wayNodes[i];
+                }
+            }
+            inWay = false;
+        }
+    }
+
+    /**
+     * Returns the ids of the road nodes collected so far.
+     * @return The ids, sorted ascending and without duplicates.
+     */
+    long[] nodeIds() {
+        merge();
+        return nodeIds;
+    }
+
+    /**
+     * Merges the pending ids into nodeIds.
+     */
+    private void merge() {
+        if (numPending == 0) {
+            return;
+        }
+        Arrays.sort(pending, 0, numPending);
+        long[] merged = new long[nodeIds.length + numPending];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < nodeIds.length || j < numPending) {
+            long id;
+            if (j == numPending || (i < nodeIds.length && nodeIds[i] <= pending[j])) {
+                id = nodeIds[i++];
+            } else {
+                id = pending[j++];
+            }
+            if (n == 0 || merged[n - 1] != id) {
+                merged[n++] = id;
+            }
+        }
+        nodeIds = Arrays.copyOf(merged, n);
+        numPending = 0;
+    }
+}
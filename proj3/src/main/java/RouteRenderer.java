@@ -0,0 +1,184 @@
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.util.List;
+
+/**
+ * Draws routes onto rasters as one path. The route is projected to pixels, the segments that
+ * can not reach into the raster are dropped, and what is left is simplified with the
+ * Douglas-Peucker algorithm, so that a route many miles long costs a few dozen path segments
+ * at any zoom instead of a drawLine call per node.
+ *
+ * Clipping keeps the segments whose ends are not both beyond the same edge of the raster,
+ * padded by the stroke width. That keeps a few segments that pass by a corner, but never drops
+ * one that shows, and the kept points are the route's own, so the drawn path is unchanged.
+ */
+class RouteRenderer {
+    /**
+     * The farthest, in pixels, a dropped node may be from the simplified path. At half a pixel
+     * the simplified path covers the same pixels as the full one, give or take rounding.
+     */
+    static final double SIMPLIFY_TOLERANCE_PX = 0.5;
+    private static final int LEFT = 1;
+    private static final int RIGHT = 2;
+    private static final int ABOVE = 4;
+    private static final int BELOW = 8;
+
+    private RouteRenderer() {
+    }
+
+    /**
+     * Draws a route with the color and stroke of a graphics context.
+     * @param g2d The graphics context of the raster image.
+     * @param g The graph the route is on.
+     * @param route The ids of the nodes on the route.
+     * @param ullon The upper left longitude of the raster.
+     * @param ullat The upper left latitude of the raster.
+     * @param lrlon The lower right longitude of the raster.
+     * @param lrlat The lower right latitude of the raster.
+     * @param width The width of the raster in pixels.
+     * @param height The height of the raster in pixels.
+     * @return The number of points on the path that was drawn.
+     */
+    static int draw(Graphics2D g2d, GraphDB g, List<Long> route, double ullon, double ullat,
+                    double lrlon, double lrlat, int width, int height) {
+        int n = route.size();
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        double wdpp = (lrlon - ullon) / width;
+        double hdpp = (ullat - lrlat) / height;
+        int i = 0;
+        for (long id : route) {
+            xs[i] = (g.lon(id) - ullon) / wdpp;
+            ys[i] = (ullat - g.lat(id)) / hdpp;
+            i += 1;
+        }
+        Path2D.Float path = new Path2D.Float();
+        int points = path(xs, ys, n, width, height, MapServer.ROUTE_STROKE_WIDTH_PX,
+                SIMPLIFY_TOLERANCE_PX, path);
+        if (points > 0) {
+            g2d.draw(path);
+        }
+        return points;
+    }
+
+    /**
+     * Appends the clipped and simplified polyline of a route to a path.
+     * @param xs The x coordinates of the route's nodes, in pixels.
+     * @param ys The y coordinates of the route's nodes, in pixels.
+     * @param n The number of nodes.
+     * @param width The width of the raster in pixels.
+     * @param height The height of the raster in pixels.
+     * @param pad How far outside the raster a segment may be and still be drawn, in pixels.
+     * @param tolerance The farthest a dropped node may be from the path, in pixels.
+     * @param path The path to append to.
+     * @return The number of points appended.
+     */
+    static int path(double[] xs, double[] ys, int n, double width, double height, double pad,
+                    double tolerance, Path2D.Float path) {
+        int[] codes = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            codes[i] = outcode(xs[i], ys[i], -pad, -pad, width + pad, height + pad);
+        }
+        boolean[] keep = new boolean[n];
+        int[] stack = new int[2 * n];
+        int points = 0;
+        int i = 0;
+        while (i + 1 < n) {
+            if ((codes[i] & codes[i + 1]) != 0) {
+                i += 1;
+                continue;
+            }
+            /* A run of segments that may be visible, from node i to node j. */
+            int j = i + 1;
+            while (j + 1 < n && (codes[j] & codes[j + 1]) == 0) {
+                j += 1;
+            }
+            simplify(xs, ys, i, j, tolerance, keep, stack);
+            path.moveTo(xs[i], ys[i]);
+            points += 1;
+            for (int k = i + 1; k <= j; k += 1) {
+                if (keep[k]) {
+                    path.lineTo(xs[k], ys[k]);
+                    points += 1;
+                }
+            }
+            i = j;
+        }
+        return points;
+    }
+
+    /**
+     * Marks the nodes of a polyline that its Douglas-Peucker simplification keeps. Works with
+     * an explicit stack, so routes of any length are fine.
+     * @param xs The x coordinates of the nodes.
+     * @param ys The y coordinates of the nodes.
+     * @param from The first node of the polyline.
+     * @param to The last node of the polyline.
+     * @param tolerance The farthest a dropped node may be from the simplified polyline.
+     * @param keep Set to true for the nodes in [from, to] that are kept.
+     * @param stack Room for at least 2 * (to - from + 1) ints.
+     */
+    static void simplify(double[] xs, double[] ys, int from, int to, double tolerance,
+                         boolean[] keep, int[] stack) {
+        keep[from] = true;
+        keep[to] = true;
+        int size = 0;
+        stack[size++] = from;
+        stack[size++] = to;
+        double toleranceSquared = tolerance * tolerance;
+        while (size > 0) {
+            int hi = stack[--size];
+            int lo = stack[--size];
+            int farthest = -1;
+            double farthestSquared = toleranceSquared;
+            for (int k = lo + 1; k < hi; k += 1) {
+                double d = distanceSquared(xs[k], ys[k], xs[lo], ys[lo], xs[hi], ys[hi]);
+                if (d > farthestSquared) {
+                    farthest = k;
+                    farthestSquared = d;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[size++] = lo;
+                stack[size++] = farthest;
+                stack[size++] = farthest;
+                stack[size++] = hi;
+            }
+        }
+    }
+
+    /**
+     * Returns the squared distance from point p to the segment from a to b.
+     */
+    static double distanceSquared(double px, double py, double ax, double ay, double bx,
+                                  double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Returns which sides of a rectangle a point is beyond, as a set of bits.
+     */
+    private static int outcode(double x, double y, double xMin, double yMin, double xMax,
+                               double yMax) {
+        int code = 0;
+        if (x < xMin) {
+            code |= LEFT;
+        } else if (x > xMax) {
+            code |= RIGHT;
+        }
+        if (y < yMin) {
+            code |= ABOVE;
+        } else if (y > yMax) {
+            code |= BELOW;
+        }
+        return code;
+    }
+}
@@ -1,5 +1,13 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,10 +20,42 @@ import java.util.regex.Pattern;
  * down to the priority you use to order your vertices.
  */
 public class Router {
+    /* The largest changes of bearing, in degrees, still counted as going straight, as a slight
+     * turn and as a turn; anything larger is a sharp turn. */
+    private static final double STRAIGHT_DEGREES = 15;
+    private static final double SLIGHT_DEGREES = 30;
+    private static final double TURN_DEGREES = 100;
+    /** Pool the rows of distance matrices are computed on, shared by all requests. */
+    private static final ExecutorService MATRIX_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                Thread t = new Thread(r, "distance-matrix");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * Heuristics the A* search can be guided by, and the contraction hierarchy query. Every
+     * heuristic is a lower bound on the remaining road distance, so they all find shortest paths;
+     * they differ in how many vertices the search settles before reaching the destination.
+     */
+    public enum Heuristic {
+        /** No heuristic, i.e. plain Dijkstra's algorithm. */
+        NONE,
+        /** The great-circle distance to the destination. */
+        GREAT_CIRCLE,
+        /** The landmark (ALT) bound, or the great-circle distance if it is larger. */
+        LANDMARKS,
+        /**
+         * Not an A* heuristic: a bidirectional query over the contraction hierarchy of the
+         * graph, which must have been built with ContractionHierarchy.main.
+         */
+        CONTRACTION_HIERARCHY
+    }
+
     /**
      * Return a List of longs representing the shortest path from the node
      * closest to a start location and the node closest to the destination
-     * location.
+     * location, with A* guided by the great-circle distance.
      * @param g The graph to use.
      * @param stlon The longitude of the start location.
      * @param stlat The latitude of the start location.
@@ -25,7 +65,293 @@ public class Router {
      */
     public static List<Long> shortestPath(GraphDB g, double stlon, double stlat,
                                           double destlon, double destlat) {
-        return null; // FIXME
+        return findRoute(g, stlon, stlat, destlon, destlat, Heuristic.GREAT_CIRCLE).path;
+    }
+
+    /**
+     * Finds the shortest route between the nodes closest to a start and a destination location,
+     * with the given A* heuristic or the contraction hierarchy.
+     * @param g The graph to use.
+     * @param stlon The longitude of the start location.
+     * @param stlat The latitude of the start location.
+     * @param destlon The longitude of the destination location.
+     * @param destlat The latitude of the destination location.
+     * @param heuristic The heuristic to guide the search with.
+     * @return The route found, with an empty path if the destination is unreachable.
+     * @throws IllegalStateException If the contraction hierarchy is asked for but the graph has
+     * none.
+     */
+    public static Route findRoute(GraphDB g, double stlon, double stlat,
+                                  double destlon, double destlat, Heuristic heuristic) {
+        int s = g.indexOf(g.closest(stlon, stlat));
+        int t = g.indexOf(g.closest(destlon, destlat));
+        return search(g, s, t, heuristic);
+    }
+
+    /**
+     * A* search, or a contraction hierarchy query, between two vertices.
+     * @param g The graph to use.
+     * @param s The index of the start vertex.
+     * @param t The index of the destination vertex.
+     * @param heuristic The heuristic to guide the search with.
+     * @return The route found, with an empty path if t is unreachable from s.
+     * @throws IllegalStateException If the contraction hierarchy is asked for but the graph has
+     * none.
+     */
+    static Route search(GraphDB g, int s, int t, Heuristic heuristic) {
+        if (heuristic == Heuristic.CONTRACTION_HIERARCHY) {
+            if (g.hierarchy() == null) {
+                throw new IllegalStateException("The graph has no contraction hierarchy.");
+            }
+            return g.hierarchy().query(g, s, t);
+        }
+        return PointToPoint.borrow(g.size()).run(g, s, t, heuristic);
+    }
+
+    private static double estimate(GraphDB g, int v, int t, Heuristic heuristic) {
+        switch (heuristic) {
+            case GREAT_CIRCLE:
+                return GraphDB.distance(g.lonAt(v), g.latAt(v), g.lonAt(t), g.latAt(t));
+            case LANDMARKS:
+                return Math.max(g.landmarks().lowerBound(v, t),
+                        GraphDB.distance(g.lonAt(v), g.latAt(v), g.lonAt(t), g.latAt(t)));
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Computes the road distances from every source to every target, with one Dijkstra search
+     * per source that stops once it has settled all the targets. The searches run in parallel on
+     * a shared pool and reuse per-thread buffers, so a large matrix costs far less than a search
+     * per pair.
+     * @param g The graph to use.
+     * @param sources The ids of the source vertices.
+     * @param targets The ids of the target vertices.
+     * @return The distances in miles, row by row: the distance from sources[i] to targets[j] is
+     * at i * targets.length + j, and is infinite if there is no path.
+     * @throws IllegalArgumentException If a source or target is not a vertex of the graph.
+     */
+    public static double[] distanceMatrix(GraphDB g, long[] sources, long[] targets) {
+        return distanceMatrix(g, indicesOf(g, sources), indicesOf(g, targets), MATRIX_POOL);
+    }
+
+    /**
+     * Computes the distance matrix of vertices given by index, running the searches on a pool.
+     * @param g The graph to use.
+     * @param sources The indices of the source vertices.
+     * @param targets The indices of the target vertices.
+     * @param pool The pool to search on.
+     * @return The distances, as distanceMatrix(GraphDB, long[], long[]) returns them.
+     */
+    static double[] distanceMatrix(GraphDB g, int[] sources, int[] targets,
+                                   ExecutorService pool) {
+        double[] distances = new double[sources.length * targets.length];
+        List<Callable<Void>> rows = new ArrayList<>(sources.length);
+        for (int i = 0; i < sources.length; i += 1) {
+            int row = i;
+            rows.add(() -> {
+                OneToMany search = OneToMany.borrow(g.size());
+                search.run(g, sources[row], targets, distances, row * targets.length);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> row : pool.invokeAll(rows)) {
+                row.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing distances.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Computing distances failed.", e.getCause());
+        }
+        return distances;
+    }
+
+    private static int[] indicesOf(GraphDB g, long[] ids) {
+        int[] indices = new int[ids.length];
+        for (int i = 0; i < ids.length; i += 1) {
+            indices[i] = g.indexOf(ids[i]);
+            if (indices[i] < 0) {
+                throw new IllegalArgumentException("No vertex with id " + ids[i]
+                        + " in the graph.");
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Buffers of a point-to-point A* search, kept per thread and stamped like those of OneToMany.
+     */
+    private static final class PointToPoint {
+        private static final ThreadLocal<PointToPoint> BUFFERS =
+                ThreadLocal.withInitial(PointToPoint::new);
+
+        private int stamp = 0;
+        /** distTo[v] and edgeTo[v] are valid if reached[v] == stamp. */
+        private double[] distTo = new double[0];
+        private int[] edgeTo = new int[0];
+        private int[] reached = new int[0];
+        private int[] settled = new int[0];
+
+        static PointToPoint borrow(int capacity) {
+            PointToPoint search = BUFFERS.get();
+            if (search.reached.length < capacity) {
+                search.distTo = new double[capacity];
+                search.edgeTo = new int[capacity];
+                search.reached = new int[capacity];
+                search.settled = new int[capacity];
+                search.stamp = 0;
+            }
+            return search;
+        }
+
+        Route run(GraphDB g, int s, int t, Heuristic heuristic) {
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(reached, 0);
+                Arrays.fill(settled, 0);
+                stamp = 0;
+            }
+            stamp += 1;
+
+            IndexedMinHeap fringe = IndexedMinHeap.borrow(g.size());
+            int numSettled = 0;
+            try {
+                distTo[s] = 0;
+                edgeTo[s] = -1;
+                reached[s] = stamp;
+                fringe.put(s, estimate(g, s, t, heuristic));
+                while (!fringe.isEmpty()) {
+                    int v = fringe.poll();
+                    settled[v] = stamp;
+                    numSettled += 1;
+                    if (v == t) {
+                        break;
+                    }
+                    for (int e = g.edgesFrom(v); e < g.edgesTo(v); e += 1) {
+                        int w = g.target(e);
+                        double d = distTo[v] + g.weight(e);
+                        if (settled[w] != stamp && (reached[w] != stamp || d < distTo[w])) {
+                            distTo[w] = d;
+                            edgeTo[w] = v;
+                            reached[w] = stamp;
+                            fringe.put(w, d + estimate(g, w, t, heuristic));
+                        }
+                    }
+                }
+            } finally {
+                IndexedMinHeap.release(fringe);
+            }
+
+            LinkedList<Long> path = new LinkedList<>();
+            if (settled[t] != stamp) {
+                return new Route(path, Double.POSITIVE_INFINITY, numSettled);
+            }
+            for (int v = t; v != -1; v = edgeTo[v]) {
+                path.addFirst(g.idAt(v));
+            }
+            return new Route(path, distTo[t], numSettled);
+        }
+    }
+
+    /**
+     * Buffers of a one-to-many Dijkstra search, kept per thread. Instead of clearing the arrays
+     * before every search, each search gets a new stamp, and an entry only counts if it carries
+     * the current stamp.
+     */
+    private static final class OneToMany {
+        private static final ThreadLocal<OneToMany> BUFFERS =
+                ThreadLocal.withInitial(OneToMany::new);
+
+        private int stamp = 0;
+        /** distTo[v] is valid if reached[v] == stamp. */
+        private double[] distTo = new double[0];
+        private int[] reached = new int[0];
+        private int[] settled = new int[0];
+        /** isTarget[v] == stamp marks the targets of the current search. */
+        private int[] isTarget = new int[0];
+
+        static OneToMany borrow(int capacity) {
+            OneToMany search = BUFFERS.get();
+            if (search.reached.length < capacity) {
+                search.distTo = new double[capacity];
+                search.reached = new int[capacity];
+                search.settled = new int[capacity];
+                search.isTarget = new int[capacity];
+                search.stamp = 0;
+            }
+            return search;
+        }
+
+        /**
+         * Searches from s until every target is settled, and writes the distances to the targets
+         * to distances[offset..offset + targets.length).
+         */
+        void run(GraphDB g, int s, int[] targets, double[] distances, int offset) {
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(reached, 0);
+                Arrays.fill(settled, 0);
+                Arrays.fill(isTarget, 0);
+                stamp = 0;
+            }
+            stamp += 1;
+            int remaining = 0;
+            for (int t : targets) {
+                if (isTarget[t] != stamp) {
+                    isTarget[t] = stamp;
+                    remaining += 1;
+                }
+            }
+
+            IndexedMinHeap fringe = IndexedMinHeap.borrow(g.size());
+            try {
+                distTo[s] = 0;
+                reached[s] = stamp;
+                fringe.put(s, 0);
+                while (remaining > 0 && !fringe.isEmpty()) {
+                    int v = fringe.poll();
+                    settled[v] = stamp;
+                    if (isTarget[v] == stamp) {
+                        remaining -= 1;
+                    }
+                    for (int e = g.edgesFrom(v); e < g.edgesTo(v); e += 1) {
+                        int w = g.target(e);
+                        double d = distTo[v] + g.weight(e);
+                        if (settled[w] != stamp && (reached[w] != stamp || d < distTo[w])) {
+                            distTo[w] = d;
+                            reached[w] = stamp;
+                            fringe.put(w, d);
+                        }
+                    }
+                }
+            } finally {
+                IndexedMinHeap.release(fringe);
+            }
+
+            for (int j = 0; j < targets.length; j += 1) {
+                int t = targets[j];
+                distances[offset + j] = settled[t] == stamp ? distTo[t] : Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    /**
+     * The result of a search: the path, its length and how much work finding it took.
+     */
+    public static class Route {
+        /** Ids of the nodes on the path, from start to destination. */
+        public final List<Long> path;
+        /** Length of the path in miles, infinite if there is no path. */
+        public final double distance;
+        /** Number of vertices the search settled. */
+        public final int settled;
+
+        Route(List<Long> path, double distance, int settled) {
+            this.path = path;
+            this.distance = distance;
+            this.settled = settled;
+        }
     }
 
     /**
@@ -37,7 +363,97 @@ public class Router {
      * route.
      */
     public static List<NavigationDirection> routeDirections(GraphDB g, List<Long> route) {
-        return null; // FIXME
+        int[] path = new int[route.size()];
+        int i = 0;
+        for (long v : route) {
+            path[i] = g.indexOf(v);
+            if (path[i] < 0) {
+                throw new IllegalArgumentException("No vertex with id " + v + " in the graph.");
+            }
+            i += 1;
+        }
+        return routeDirections(g, path);
+    }
+
+    /**
+     * Creates the directions of a route given by vertex indices, in one pass over its edges.
+     * Consecutive edges on ways of the same name are merged into one direction, and the turn
+     * onto a new way is classified by how far the bearing of its first edge is from that of the
+     * last edge before it. Only the directions themselves are allocated.
+     * @param g The graph to use.
+     * @param path The indices of the vertices on the route, in order.
+     * @return The directions, empty if the route has no edges.
+     */
+    static List<NavigationDirection> routeDirections(GraphDB g, int[] path) {
+        List<NavigationDirection> directions = new ArrayList<>();
+        NavigationDirection current = null;
+        int name = -1;
+        double previousBearing = 0;
+        for (int i = 0; i + 1 < path.length; i += 1) {
+            int e = edgeBetween(g, path[i], path[i + 1], name);
+            int edgeName = g.wayNameId(e);
+            double bearing = g.edgeBearing(e);
+            if (current == null || edgeName != name) {
+                current = new NavigationDirection();
+                current.direction = directions.isEmpty()
+                        ? NavigationDirection.START : turn(previousBearing, bearing);
+                /* The expected directions call an unnamed way "", not UNKNOWN_ROAD. */
+                current.way = edgeName < 0 ? "" : g.name(edgeName);
+                directions.add(current);
+                name = edgeName;
+            }
+            current.distance += g.weight(e);
+            previousBearing = bearing;
+        }
+        return directions;
+    }
+
+    /**
+     * Returns the edge from v to w, preferring one on a way with the given name, so that a route
+     * along a street is not broken up where another way shares the edge.
+     */
+    private static int edgeBetween(GraphDB g, int v, int w, int name) {
+        int found = -1;
+        for (int e = g.edgesFrom(v); e < g.edgesTo(v); e += 1) {
+            if (g.target(e) == w) {
+                if (g.wayNameId(e) == name) {
+                    return e;
+                }
+                if (found < 0) {
+                    found = e;
+                }
+            }
+        }
+        if (found < 0) {
+            throw new IllegalArgumentException("The route has no edge from vertex " + v
+                    + " to vertex " + w + ".");
+        }
+        return found;
+    }
+
+    /**
+     * Classifies a turn from one bearing to another.
+     * @param from The bearing before the turn, in degrees.
+     * @param to The bearing after the turn, in degrees.
+     * @return One of the direction constants of NavigationDirection other than START.
+     */
+    static int turn(double from, double to) {
+        double relative = to - from;
+        if (relative > 180) {
+            relative -= 360;
+        } else if (relative < -180) {
+            relative += 360;
+        }
+        double angle = Math.abs(relative);
+        boolean left = relative < 0;
+        if (angle <= STRAIGHT_DEGREES) {
+            return NavigationDirection.STRAIGHT;
+        } else if (angle <= SLIGHT_DEGREES) {
+            return left ? NavigationDirection.SLIGHT_LEFT : NavigationDirection.SLIGHT_RIGHT;
+        } else if (angle <= TURN_DEGREES) {
+            return left ? NavigationDirection.LEFT : NavigationDirection.RIGHT;
+        }
+        return left ? NavigationDirection.SHARP_LEFT : NavigationDirection.SHARP_RIGHT;
     }
 
 
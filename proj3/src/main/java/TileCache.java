@@ -0,0 +1,129 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import javax.imageio.ImageIO;
+
+/**
+ * Bounded cache of decoded tile images, so that rastering the same area again draws tiles from
+ * memory instead of reading and decoding the PNGs from disk every time.
+ *
+ * The cache is bounded by the number of bytes the decoded images take, and evicts the least
+ * recently used tiles first. It is safe to use from several threads: lookups and insertions hold
+ * the cache's lock, but decoding a missing tile does not, so two threads may occasionally decode
+ * the same tile at once, and the second one simply replaces the first.
+ */
+class TileCache {
+    private final long capacityBytes;
+    private final Function<String, BufferedImage> loader;
+    /** Tiles by path, in access order, from least to most recently used. */
+    private final LinkedHashMap<String, BufferedImage> tiles =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a cache that reads tiles from disk with ImageIO.
+     * @param capacityBytes The most bytes the decoded tiles may take.
+     */
+    TileCache(long capacityBytes) {
+        this(capacityBytes, TileCache::read);
+    }
+
+    /**
+     * Creates a cache that loads tiles with the given function.
+     * @param capacityBytes The most bytes the decoded tiles may take.
+     * @param loader Loads the tile at a path, returning null if it can not be read.
+     */
+    TileCache(long capacityBytes, Function<String, BufferedImage> loader) {
+        this.capacityBytes = capacityBytes;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the tile at a path, loading it if it is not cached.
+     * @param path The path of the tile image.
+     * @return The decoded tile, or null if it could not be read.
+     */
+    BufferedImage get(String path) {
+        synchronized (this) {
+            BufferedImage tile = tiles.get(path);
+            if (tile != null) {
+                hits += 1;
+                return tile;
+            }
+            misses += 1;
+        }
+
+        BufferedImage tile = loader.apply(path);
+        if (tile == null) {
+            return null;
+        }
+        long bytes = sizeOf(tile);
+        synchronized (this) {
+            /* A tile larger than the whole cache is returned but not kept. */
+            if (bytes > capacityBytes) {
+                return tile;
+            }
+            BufferedImage old = tiles.put(path, tile);
+            if (old != null) {
+                sizeBytes -= sizeOf(old);
+            }
+            sizeBytes += bytes;
+            Iterator<BufferedImage> lru = tiles.values().iterator();
+            while (sizeBytes > capacityBytes) {
+                sizeBytes -= sizeOf(lru.next());
+                lru.remove();
+                evictions += 1;
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Returns the counters of the cache, for the debug endpoint of the server.
+     * @return The capacity and current size in bytes, the number of cached tiles, and the
+     * number of hits, misses and evictions so far.
+     */
+    synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity_bytes", capacityBytes);
+        stats.put("size_bytes", sizeBytes);
+        stats.put("tiles", tiles.size());
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        long lookups = hits + misses;
+        stats.put("hit_rate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return stats;
+    }
+
+    /**
+     * Returns the number of bytes a decoded image takes, going by its pixel data.
+     */
+    static long sizeOf(BufferedImage image) {
+        DataBuffer data = image.getRaster().getDataBuffer();
+        return (long) data.getSize() * data.getNumBanks()
+                * (DataBuffer.getDataTypeSize(data.getDataType()) / Byte.SIZE);
+    }
+
+    /**
+     * Reads and decodes a tile from disk.
+     * @param path The path of the tile image.
+     * @return The tile, or null if it can not be read.
+     */
+    static BufferedImage read(String path) {
+        try {
+            return ImageIO.read(new File(path));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
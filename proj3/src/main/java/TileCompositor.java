@@ -0,0 +1,233 @@
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.imageio.ImageIO;
+
+/**
+ * Composites the tiles of a render grid into one image, decoding and copying tiles in parallel,
+ * and writes images out as Base64 encoded PNGs without buffering the PNG first.
+ *
+ * Every tile is drawn into its own rectangle of the image, so the tasks never touch the same
+ * pixels and need no locking.
+ */
+class TileCompositor {
+    /** Tiles a task copies itself instead of splitting further. */
+    private static final int TILES_PER_TASK = 2;
+    /** Seconds an idle prefetch thread waits for work before it stops. */
+    private static final int PREFETCH_KEEP_ALIVE_SECONDS = 30;
+
+    private final ForkJoinPool pool;
+    private final Executor prefetchPool;
+    private final Function<String, BufferedImage> tiles;
+    /** Tiles a prefetch has been asked for and not yet loaded. */
+    private final Set<String> prefetching = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a compositor that prefetches on one thread of its own.
+     * @param pool The pool to decode and copy tiles on.
+     * @param tiles Returns the tile image of a file name in a render grid, or null if the tile
+     *              can not be read. Must be safe to call from several threads at once.
+     */
+    TileCompositor(ForkJoinPool pool, Function<String, BufferedImage> tiles) {
+        this(pool, prefetchPool(1, 1), tiles);
+    }
+
+    /**
+     * Creates a compositor.
+     * @param pool The pool to decode and copy tiles on.
+     * @param prefetchPool The pool to prefetch tiles on, apart from pool so that prefetches
+     *                     never hold up compositing. See prefetchPool.
+     * @param tiles Returns the tile image of a file name in a render grid, or null if the tile
+     *              can not be read. Must be safe to call from several threads at once.
+     */
+    TileCompositor(ForkJoinPool pool, Executor prefetchPool,
+                   Function<String, BufferedImage> tiles) {
+        this.pool = pool;
+        this.prefetchPool = prefetchPool;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Returns a pool to prefetch tiles on, of daemon threads that stop when idle. When more
+     * prefetches are waiting than it queues, the oldest one is dropped, since the client has
+     * most likely panned on from the area it was for.
+     * @param threads The number of threads.
+     * @param queued The most prefetches waiting for a thread.
+     */
+    static ThreadPoolExecutor prefetchPool(int threads, int queued) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                PREFETCH_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queued),
+                task -> {
+                    Thread thread = new Thread(task, "tile-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new DiscardOldestPrefetch());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Composites the tiles of a render grid.
+     * @param renderGrid The file names of the tiles, by row and column.
+     * @return An image of TILE_SIZE pixels per tile, with unreadable tiles left black.
+     */
+    BufferedImage composite(String[][] renderGrid) {
+        int rows = renderGrid.length;
+        int cols = renderGrid[0].length;
+        BufferedImage img = new BufferedImage(cols * MapServer.TILE_SIZE,
+                rows * MapServer.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        pool.invoke(new CopyTiles(tiles, renderGrid, img, 0, rows * cols));
+        return img;
+    }
+
+    /**
+     * Loads tiles in the background on the prefetch pool, so that a later composite finds them
+     * cached. Returns right away. Tiles an earlier prefetch is still loading are skipped, so that
+     * clients panning over the same area do not queue the same tiles over and over.
+     * @param files The file names of the tiles.
+     */
+    void prefetch(String[] files) {
+        List<String> queued = new ArrayList<>(files.length);
+        for (String file : files) {
+            if (prefetching.add(file)) {
+                queued.add(file);
+            }
+        }
+        if (queued.isEmpty()) {
+            return;
+        }
+        prefetchPool.execute(new Prefetch(queued));
+    }
+
+    /**
+     * Writes an image as a PNG encoded in Base64, streaming the PNG through the encoder.
+     * @param img The image.
+     * @param out Where to write the Base64 text; it is flushed but left open.
+     * @throws IOException If writing fails.
+     */
+    static void writeBase64Png(BufferedImage img, OutputStream out) throws IOException {
+        /* Closing the encoder writes the final padding; the stream underneath stays open. */
+        try (OutputStream base64 = Base64.getEncoder().wrap(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        })) {
+            ImageIO.write(img, "png", base64);
+        }
+    }
+
+    /**
+     * Loads the tiles of one prefetch, or gives them up if the prefetch is dropped.
+     */
+    private final class Prefetch implements Runnable {
+        private final List<String> files;
+
+        Prefetch(List<String> files) {
+            this.files = files;
+        }
+
+        @Override
+        public void run() {
+            for (String file : files) {
+                try {
+                    tiles.apply(file);
+                } finally {
+                    prefetching.remove(file);
+                }
+            }
+        }
+
+        /** Lets later prefetches ask for the tiles again. */
+        void discard() {
+            prefetching.removeAll(files);
+        }
+    }
+
+    /**
+     * Drops the oldest waiting prefetch to make room for a new one, or the new one once the pool
+     * is shut down.
+     */
+    private static class DiscardOldestPrefetch implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                discard(task);
+                return;
+            }
+            discard(executor.getQueue().poll());
+            executor.execute(task);
+        }
+
+        private static void discard(Runnable task) {
+            if (task instanceof Prefetch) {
+                ((Prefetch) task).discard();
+            }
+        }
+    }
+
+    /**
+     * Copies the tiles at positions [lo, hi) of the grid, in row-major order, into the image.
+     */
+    private static class CopyTiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Function<String, BufferedImage> tiles;
+        private final String[][] renderGrid;
+        private final transient BufferedImage img;
+        private final int lo;
+        private final int hi;
+
+        CopyTiles(Function<String, BufferedImage> tiles, String[][] renderGrid, BufferedImage img,
+                  int lo, int hi) {
+            this.tiles = tiles;
+            this.renderGrid = renderGrid;
+            this.img = img;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > TILES_PER_TASK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new CopyTiles(tiles, renderGrid, img, lo, mid),
+                        new CopyTiles(tiles, renderGrid, img, mid, hi));
+                return;
+            }
+            int cols = renderGrid[0].length;
+            /* Each task draws through its own Graphics, so tasks share nothing but the pixels. */
+            Graphics graphic = img.getGraphics();
+            try {
+                for (int i = lo; i < hi; i += 1) {
+                    int r = i / cols;
+                    int c = i % cols;
+                    graphic.drawImage(tiles.apply(renderGrid[r][c]), c * MapServer.TILE_SIZE,
+                            r * MapServer.TILE_SIZE, null);
+                }
+            } finally {
+                graphic.dispose();
+            }
+        }
+    }
+}
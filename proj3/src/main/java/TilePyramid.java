@@ -0,0 +1,166 @@
+/**
+ * Describes the quadtree of map tiles: at depth d the area of the root tile is split into
+ * 2^d by 2^d tiles. The longitudinal distance per pixel, the size of a tile and the file name of
+ * every tile are computed once for every depth, so that rastering a query only looks them up.
+ *
+ * The names of all tiles down to depth 7 take about 22 thousand strings, roughly a megabyte.
+ */
+class TilePyramid {
+    private final double ullon;
+    private final double ullat;
+    private final int maxDepth;
+    /** lonDPP[d] is the longitudinal distance per pixel of the tiles at depth d. */
+    private final double[] lonDPP;
+    /** tileLon[d] and tileLat[d] are the width and height of a tile at depth d, in degrees. */
+    private final double[] tileLon;
+    private final double[] tileLat;
+    /** fileNames[d][y * 2^d + x] is the file name of tile x, y at depth d. */
+    private final String[][] fileNames;
+
+    /**
+     * Describes the tiles of an area.
+     * @param ullon The upper left longitude of the root tile.
+     * @param ullat The upper left latitude of the root tile.
+     * @param lrlon The lower right longitude of the root tile.
+     * @param lrlat The lower right latitude of the root tile.
+     * @param maxDepth The depth of the deepest tiles.
+     * @param tileSize The width and height of a tile in pixels.
+     */
+    TilePyramid(double ullon, double ullat, double lrlon, double lrlat, int maxDepth,
+                int tileSize) {
+        this.ullon = ullon;
+        this.ullat = ullat;
+        this.maxDepth = maxDepth;
+        lonDPP = new double[maxDepth + 1];
+        tileLon = new double[maxDepth + 1];
+        tileLat = new double[maxDepth + 1];
+        fileNames = new String[maxDepth + 1][];
+        double rootLonDPP = (lrlon - ullon) / tileSize;
+        for (int d = 0; d <= maxDepth; d += 1) {
+            int tiles = 1 << d;
+            lonDPP[d] = rootLonDPP / tiles;
+            tileLon[d] = (lrlon - ullon) / tiles;
+            tileLat[d] = (ullat - lrlat) / tiles;
+            fileNames[d] = new String[tiles * tiles];
+            for (int y = 0; y < tiles; y += 1) {
+                for (int x = 0; x < tiles; x += 1) {
+                    fileNames[d][y * tiles + x] = "d" + d + "_x" + x + "_y" + y + ".png";
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the depth of the deepest tiles.
+     * @return The deepest depth.
+     */
+    int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the shallowest depth whose tiles have at most the given longitudinal distance per
+     * pixel, or the deepest depth if none do.
+     * @param queryLonDPP The longitudinal distance per pixel of the query.
+     * @return The depth.
+     */
+    int depthFor(double queryLonDPP) {
+        int depth = 0;
+        while (depth < maxDepth && lonDPP[depth] > queryLonDPP) {
+            depth += 1;
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the number of tiles per row and per column at a depth.
+     * @param depth The depth.
+     * @return 2^depth.
+     */
+    int tiles(int depth) {
+        return 1 << depth;
+    }
+
+    /**
+     * Returns the column of the tile containing a longitude, clamped to the columns there are.
+     * @param depth The depth.
+     * @param lon The longitude.
+     * @return The column, from 0 in the west.
+     */
+    int column(int depth, double lon) {
+        return clamp((int) Math.floor((lon - ullon) / tileLon[depth]), depth);
+    }
+
+    /**
+     * Returns the row of the tile containing a latitude, clamped to the rows there are.
+     * @param depth The depth.
+     * @param lat The latitude.
+     * @return The row, from 0 in the north.
+     */
+    int row(int depth, double lat) {
+        return clamp((int) Math.floor((ullat - lat) / tileLat[depth]), depth);
+    }
+
+    /**
+     * Returns the western longitude of a column of tiles.
+     * @param depth The depth.
+     * @param x The column; x = 2^depth gives the eastern edge of the area.
+     * @return The longitude.
+     */
+    double lon(int depth, int x) {
+        return ullon + x * tileLon[depth];
+    }
+
+    /**
+     * Returns the northern latitude of a row of tiles.
+     * @param depth The depth.
+     * @param y The row; y = 2^depth gives the southern edge of the area.
+     * @return The latitude.
+     */
+    double lat(int depth, int y) {
+        return ullat - y * tileLat[depth];
+    }
+
+    /**
+     * Returns the file name of a tile, such as d7_x127_y127.png.
+     * @param depth The depth.
+     * @param x The column.
+     * @param y The row.
+     * @return The file name.
+     */
+    String fileName(int depth, int x, int y) {
+        return fileNames[depth][(y << depth) + x];
+    }
+
+    /**
+     * Returns the file names of the tiles bordering a block of tiles, i.e. those one step away
+     * from it in any direction, including diagonally. Tiles outside the area are left out.
+     * @param depth The depth.
+     * @param xMin The first column of the block.
+     * @param xMax The last column of the block.
+     * @param yMin The first row of the block.
+     * @param yMax The last row of the block.
+     * @return The file names, row by row.
+     */
+    String[] neighbours(int depth, int xMin, int xMax, int yMin, int yMax) {
+        int x0 = Math.max(0, xMin - 1);
+        int x1 = Math.min(tiles(depth) - 1, xMax + 1);
+        int y0 = Math.max(0, yMin - 1);
+        int y1 = Math.min(tiles(depth) - 1, yMax + 1);
+        int block = (xMax - xMin + 1) * (yMax - yMin + 1);
+        String[] names = new String[(x1 - x0 + 1) * (y1 - y0 + 1) - block];
+        int n = 0;
+        for (int y = y0; y <= y1; y += 1) {
+            for (int x = x0; x <= x1; x += 1) {
+                if (x < xMin || x > xMax || y < yMin || y > yMax) {
+                    names[n++] = fileName(depth, x, y);
+                }
+            }
+        }
+        return names;
+    }
+
+    private int clamp(int index, int depth) {
+        return Math.max(0, Math.min(tiles(depth) - 1, index));
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.Random;
+
+/**
+ * Times GraphDB.closest's k-d tree against a linear scan over random vertices spread across the
+ * map. Run with a large heap for the 1M case, e.g. java -Xmx2g ClosestBenchmark.
+ */
+public class ClosestBenchmark {
+    private static final int[] SIZES = {10000, 100000, 1000000};
+    private static final int NUM_QUERIES = 10000;
+    private static final int NUM_LINEAR_QUERIES = 200;
+
+    public static void main(String[] args) {
+        Random random = new Random(61);
+        for (int n : SIZES) {
+            double[] lons = new double[n];
+            double[] lats = new double[n];
+            for (int i = 0; i < n; i += 1) {
+                lons[i] = TestKDTree.randomLon(random);
+                lats[i] = TestKDTree.randomLat(random);
+            }
+            double[] queryLons = new double[NUM_QUERIES];
+            double[] queryLats = new double[NUM_QUERIES];
+            for (int q = 0; q < NUM_QUERIES; q += 1) {
+                queryLons[q] = TestKDTree.randomLon(random);
+                queryLats[q] = TestKDTree.randomLat(random);
+            }
+
+            long start = System.nanoTime();
+            KDTree tree = new KDTree(lons, lats);
+            double buildMs = (System.nanoTime() - start) / 1e6;
+
+            /* Warm up, then time. */
+            long checksum = 0;
+            for (int q = 0; q < NUM_QUERIES; q += 1) {
+                checksum += tree.nearest(queryLons[q], queryLats[q]);
+            }
+            start = System.nanoTime();
+            for (int q = 0; q < NUM_QUERIES; q += 1) {
+                checksum += tree.nearest(queryLons[q], queryLats[q]);
+            }
+            double treeUs = (System.nanoTime() - start) / 1e3 / NUM_QUERIES;
+
+            start = System.nanoTime();
+            for (int q = 0; q < NUM_LINEAR_QUERIES; q += 1) {
+                checksum += TestKDTree.linearScan(lons, lats, queryLons[q], queryLats[q]);
+            }
+            double linearUs = (System.nanoTime() - start) / 1e3 / NUM_LINEAR_QUERIES;
+
+            System.out.println(String.format("%8d vertices: build %8.1f ms, k-d tree %8.2f us/query,"
+                    + " linear scan %10.2f us/query (%d)", n, buildMs, treeUs, linearUs,
+                    checksum % 10));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Compares Router.routeDirections with a straightforward version that builds a direction per
+ * edge, looks way names up as strings and recomputes bearings from the coordinates, and merges
+ * the directions afterwards. Pass the path of an OSM file to use it; otherwise a synthetic grid
+ * is used.
+ */
+public class DirectionsBenchmark {
+    private static final int NUM_ROUTES = 200;
+    /** Each version is timed over this many rounds, and the fastest round is reported. */
+    private static final int NUM_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Random random = new Random(61);
+        GraphDB g = args.length > 0 ? new GraphDB(args[0]) : SyntheticGraphs.grid(160, 160, random);
+        List<List<Long>> routes = new ArrayList<>();
+        long edges = 0;
+        while (routes.size() < NUM_ROUTES) {
+            List<Long> path = Router.search(g, random.nextInt(g.size()), random.nextInt(g.size()),
+                    Router.Heuristic.GREAT_CIRCLE).path;
+            if (path.size() > 1) {
+                routes.add(path);
+                edges += path.size() - 1;
+            }
+        }
+        System.out.println(String.format("%d routes, %d edges per route on average", NUM_ROUTES,
+                edges / NUM_ROUTES));
+
+        long directions = 0;
+        double ms = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            directions = 0;
+            long start = System.nanoTime();
+            for (List<Long> route : routes) {
+                directions += Router.routeDirections(g, route).size();
+            }
+            /* Round 0 only warms up. */
+            if (round > 0) {
+                ms = Math.min(ms, (System.nanoTime() - start) / 1e6 / NUM_ROUTES);
+            }
+        }
+        System.out.println(String.format("%-15s %6d directions/route %8.4f ms/route",
+                "routeDirections", directions / NUM_ROUTES, ms));
+
+        ms = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            directions = 0;
+            long start = System.nanoTime();
+            for (List<Long> route : routes) {
+                directions += perEdgeDirections(g, route).size();
+            }
+            if (round > 0) {
+                ms = Math.min(ms, (System.nanoTime() - start) / 1e6 / NUM_ROUTES);
+            }
+        }
+        System.out.println(String.format("%-15s %6d directions/route %8.4f ms/route",
+                "per edge", directions / NUM_ROUTES, ms));
+    }
+
+    /**
+     * Makes one direction per edge, then merges runs with equal names.
+     */
+    private static List<Router.NavigationDirection> perEdgeDirections(GraphDB g, List<Long> route) {
+        List<Router.NavigationDirection> perEdge = new ArrayList<>();
+        List<Double> bearings = new ArrayList<>();
+        for (int i = 0; i + 1 < route.size(); i += 1) {
+            long v = route.get(i);
+            long w = route.get(i + 1);
+            Router.NavigationDirection d = new Router.NavigationDirection();
+            int from = g.indexOf(v);
+            int to = g.indexOf(w);
+            for (int e = g.edgesFrom(from); e < g.edgesTo(from); e += 1) {
+                if (g.target(e) == to) {
+                    String name = g.wayName(e);
+                    d.way = name == null ? "" : name;
+                    break;
+                }
+            }
+            d.distance = g.distance(v, w);
+            perEdge.add(d);
+            bearings.add(g.bearing(v, w));
+        }
+        List<Router.NavigationDirection> merged = new ArrayList<>();
+        for (int i = 0; i < perEdge.size(); i += 1) {
+            Router.NavigationDirection d = perEdge.get(i);
+            Router.NavigationDirection last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && Objects.equals(last.way, d.way)) {
+                last.distance += d.distance;
+            } else {
+                d.direction = last == null ? Router.NavigationDirection.START
+                        : Router.turn(bearings.get(i - 1), bearings.get(i));
+                merged.add(d);
+            }
+        }
+        return merged;
+    }
+}
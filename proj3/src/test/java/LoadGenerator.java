@@ -0,0 +1,423 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends a mix of /raster, /route and /search requests to MapServer from many clients at once,
+ * and reports the throughput and latency percentiles of every endpoint, and the mean time the
+ * server spent in each phase going by its /metrics endpoint.
+ *
+ * Options are given as key=value arguments:
+ * <ul>
+ *     <li>url: the server to load, e.g. http://localhost:4567. Without it a server is started
+ *     in this process on a free port.</li>
+ *     <li>osm: the OSM file the started server loads, e.g.
+ *     ../library-sp18/data/berkeley-2018.osm.xml; otherwise a synthetic grid is used.</li>
+ *     <li>concurrency: the number of clients, each with its own session (default 16).</li>
+ *     <li>duration: seconds to measure for (default 20), after warmup seconds (default 5)
+ *     that are not counted.</li>
+ *     <li>mix: the relative weights of the endpoints (default raster:6,route:2,search:2).</li>
+ *     <li>replay: a file of recorded request paths, one per line such as
+ *     /route?start_lon=...; the clients take turns sending them, in order, instead of the
+ *     synthetic mix.</li>
+ *     <li>seed: the seed of the synthetic mix (default 61).</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    private static final String[] ENDPOINTS = {"/raster", "/route", "/search"};
+    private static final String[] PREFIXES = {"a", "b", "c", "m", "s", "t", "ba", "ca", "pe",
+        "st", "top", "berk", "bank", "cafe"};
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final String host;
+    private final int concurrency;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final int[] mix;
+    private final List<String> replay;
+    private final long seed;
+    private final String[] prefixes;
+    private final AtomicLong nextReplay = new AtomicLong();
+
+    LoadGenerator(String host, int concurrency, double warmupSeconds, double durationSeconds,
+                  int[] mix, List<String> replay, long seed, String[] prefixes) {
+        this.host = host;
+        this.concurrency = concurrency;
+        this.warmupNanos = (long) (warmupSeconds * 1e9);
+        this.durationNanos = (long) (durationSeconds * 1e9);
+        this.mix = mix;
+        this.replay = replay;
+        this.seed = seed;
+        this.prefixes = prefixes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            options.put(kv[0], kv[1]);
+        }
+
+        String host = options.get("url");
+        String[] prefixes = PREFIXES;
+        if (host == null) {
+            GraphDB g = options.containsKey("osm") ? new GraphDB(options.get("osm"))
+                    : SyntheticGraphs.grid(160, 160, new Random(61));
+            host = startServer(g);
+            prefixes = locationPrefixes(g);
+        }
+        List<String> replay = options.containsKey("replay")
+                ? Files.readAllLines(Paths.get(options.get("replay")), StandardCharsets.UTF_8)
+                : null;
+        if (replay != null) {
+            replay.removeIf(line -> line.trim().isEmpty());
+        }
+        LoadGenerator generator = new LoadGenerator(host,
+                Integer.parseInt(options.getOrDefault("concurrency", "16")),
+                Double.parseDouble(options.getOrDefault("warmup", "5")),
+                Double.parseDouble(options.getOrDefault("duration", "20")),
+                parseMix(options.getOrDefault("mix", "raster:6,route:2,search:2")), replay,
+                Long.parseLong(options.getOrDefault("seed", "61")), prefixes);
+        System.out.println(generator.run());
+        System.exit(0);
+    }
+
+    /**
+     * Starts MapServer in this process, on a free port.
+     * @return The URL of the server.
+     */
+    static String startServer(GraphDB g) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        spark.Spark.port(port);
+        MapServer.initialize(g);
+        MapServer.serve();
+        spark.Spark.awaitInitialization();
+        return "http://localhost:" + port;
+    }
+
+    /**
+     * Runs the clients for the warmup and the duration.
+     * @return The report.
+     */
+    String run() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        List<Future<Recorder>> clients = new ArrayList<>();
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        Map<String, Double> phasesBefore = null;
+        for (int i = 0; i < concurrency; i += 1) {
+            Random random = new Random(seed + i);
+            clients.add(pool.submit(() -> runClient(random, measureFrom, end)));
+        }
+        if (warmupNanos > 0) {
+            Thread.sleep(warmupNanos / 1000000);
+            phasesBefore = phases();
+        }
+        Recorder total = new Recorder();
+        for (Future<Recorder> client : clients) {
+            total.addAll(client.get());
+        }
+        pool.shutdown();
+        Map<String, Double> phasesAfter = phases();
+        return total.report(concurrency, durationNanos / 1e9, phasesBefore, phasesAfter);
+    }
+
+    /**
+     * Sends requests one after the other until the end, recording those that start after the
+     * warmup.
+     */
+    private Recorder runClient(Random random, long measureFrom, long end) {
+        Recorder recorder = new Recorder();
+        String cookie = null;
+        for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+            String path = replay != null
+                    ? replay.get((int) (nextReplay.getAndIncrement() % replay.size()))
+                    : syntheticRequest(random);
+            String endpoint = endpointOf(path);
+            boolean ok;
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection =
+                        (HttpURLConnection) new URL(host + path).openConnection();
+                if (cookie != null) {
+                    connection.setRequestProperty("Cookie", cookie);
+                }
+                ok = connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+                String setCookie = connection.getHeaderField("Set-Cookie");
+                if (setCookie != null) {
+                    cookie = setCookie.split(";", 2)[0];
+                }
+                drain(ok ? connection.getInputStream() : connection.getErrorStream());
+            } catch (IOException e) {
+                ok = false;
+            }
+            if (start >= measureFrom) {
+                recorder.record(endpoint, System.nanoTime() - start, ok);
+            }
+        }
+        return recorder;
+    }
+
+    /**
+     * Returns a request from the synthetic mix: rasters of random views at every zoom level,
+     * routes between random points, and searches for short prefixes.
+     */
+    private String syntheticRequest(Random random) {
+        int total = 0;
+        for (int weight : mix) {
+            total += weight;
+        }
+        int pick = random.nextInt(total);
+        int endpoint = 0;
+        while (pick >= mix[endpoint]) {
+            pick -= mix[endpoint];
+            endpoint += 1;
+        }
+        double mapLon = MapServer.ROOT_LRLON - MapServer.ROOT_ULLON;
+        double mapLat = MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT;
+        switch (ENDPOINTS[endpoint]) {
+            case "/raster":
+                double width = mapLon * Math.pow(2, -7 * random.nextDouble());
+                double height = width * mapLat / mapLon;
+                double ullon = MapServer.ROOT_ULLON + (mapLon - width) * random.nextDouble();
+                double ullat = MapServer.ROOT_ULLAT - (mapLat - height) * random.nextDouble();
+                return String.format("/raster?ullon=%s&ullat=%s&lrlon=%s&lrlat=%s&w=%d&h=%d",
+                        ullon, ullat, ullon + width, ullat - height, 1024, 768);
+            case "/route":
+                return String.format("/route?start_lon=%s&start_lat=%s&end_lon=%s&end_lat=%s",
+                        MapServer.ROOT_ULLON + mapLon * random.nextDouble(),
+                        MapServer.ROOT_LRLAT + mapLat * random.nextDouble(),
+                        MapServer.ROOT_ULLON + mapLon * random.nextDouble(),
+                        MapServer.ROOT_LRLAT + mapLat * random.nextDouble());
+            default:
+                try {
+                    return "/search?term=" + URLEncoder.encode(
+                            prefixes[random.nextInt(prefixes.length)], "UTF-8");
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+        }
+    }
+
+    /**
+     * Returns the prefixes users would type to search for the locations of a graph: the first
+     * one to four letters of every name.
+     */
+    private static String[] locationPrefixes(GraphDB g) {
+        List<String> prefixes = new ArrayList<>();
+        for (int j = 0; j < g.numLocations(); j += 1) {
+            String name = g.locationName(j);
+            for (int length = 1; length <= 4 && length <= name.length(); length += 1) {
+                prefixes.add(name.substring(0, length));
+            }
+        }
+        return prefixes.isEmpty() ? PREFIXES : prefixes.toArray(new String[0]);
+    }
+
+    private static int[] parseMix(String text) {
+        int[] mix = new int[ENDPOINTS.length];
+        for (String part : text.split(",")) {
+            String[] kv = part.split(":", 2);
+            int i = Arrays.asList(ENDPOINTS).indexOf("/" + kv[0].trim());
+            if (i < 0 || kv.length != 2) {
+                throw new IllegalArgumentException("Unknown mix entry " + part);
+            }
+            mix[i] = Integer.parseInt(kv[1].trim());
+        }
+        if (Arrays.stream(mix).sum() <= 0) {
+            throw new IllegalArgumentException("The mix must have some weight: " + text);
+        }
+        return mix;
+    }
+
+    private static String endpointOf(String path) {
+        int query = path.indexOf('?');
+        return query < 0 ? path : path.substring(0, query);
+    }
+
+    /**
+     * Reads a response body to the end and closes it.
+     * @return The number of bytes read.
+     */
+    private static long drain(InputStream in) throws IOException {
+        if (in == null) {
+            return 0;
+        }
+        try (InputStream body = in) {
+            byte[] buffer = new byte[1 << 16];
+            long bytes = 0;
+            for (int n = body.read(buffer); n >= 0; n = body.read(buffer)) {
+                bytes += n;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Returns the sums and counts of the server's phase histograms, by series name.
+     */
+    private Map<String, Double> phases() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        try {
+            HttpURLConnection connection =
+                    (HttpURLConnection) new URL(host + "/metrics").openConnection();
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return values;
+            }
+            String text;
+            try (InputStream in = connection.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1 << 14];
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    out.write(buffer, 0, n);
+                }
+                text = out.toString(StandardCharsets.UTF_8.name());
+            }
+            for (String line : text.split("\n")) {
+                if (line.startsWith("bearmaps_phase_seconds_sum")
+                        || line.startsWith("bearmaps_phase_seconds_count")) {
+                    int space = line.lastIndexOf(' ');
+                    values.put(line.substring(0, space),
+                            Double.parseDouble(line.substring(space + 1)));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read the server's metrics: " + e);
+        }
+        return values;
+    }
+
+    /**
+     * Latencies and errors of the requests of one or more clients, by endpoint.
+     */
+    static class Recorder {
+        private final Map<String, long[]> latencies = new LinkedHashMap<>();
+        private final Map<String, Integer> counts = new LinkedHashMap<>();
+        private final Map<String, Integer> errors = new LinkedHashMap<>();
+
+        void record(String endpoint, long nanos, boolean ok) {
+            int n = counts.getOrDefault(endpoint, 0);
+            long[] l = latencies.getOrDefault(endpoint, new long[64]);
+            if (n == l.length) {
+                l = Arrays.copyOf(l, 2 * n);
+            }
+            l[n] = nanos;
+            latencies.put(endpoint, l);
+            counts.put(endpoint, n + 1);
+            if (!ok) {
+                errors.merge(endpoint, 1, Integer::sum);
+            }
+        }
+
+        void addAll(Recorder other) {
+            for (String endpoint : other.counts.keySet()) {
+                long[] l = other.latencies.get(endpoint);
+                for (int i = 0; i < other.counts.get(endpoint); i += 1) {
+                    record(endpoint, l[i], true);
+                }
+                errors.merge(endpoint, other.errors.getOrDefault(endpoint, 0), Integer::sum);
+            }
+        }
+
+        /**
+         * Returns a table of the requests per endpoint and in total, and of the mean time the
+         * server spent per phase while measuring.
+         */
+        String report(int concurrency, double seconds, Map<String, Double> phasesBefore,
+                      Map<String, Double> phasesAfter) {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%d clients, %.0f s%n", concurrency, seconds));
+            text.append(String.format("%-16s %8s %7s %9s", "endpoint", "requests", "errors",
+                    "req/s"));
+            for (double p : PERCENTILES) {
+                text.append(String.format(" %8s", "p" + (p == (int) p ? "" + (int) p : "" + p)));
+            }
+            text.append(String.format(" %8s%n", "max"));
+            long[] all = new long[0];
+            int allErrors = 0;
+            for (String endpoint : counts.keySet()) {
+                long[] l = Arrays.copyOf(latencies.get(endpoint), counts.get(endpoint));
+                int e = errors.getOrDefault(endpoint, 0);
+                row(text, endpoint, l, e, seconds);
+                all = concat(all, l);
+                allErrors += e;
+            }
+            row(text, "all", all, allErrors, seconds);
+
+            if (!phasesAfter.isEmpty()) {
+                text.append(String.format("%nserver phases while measuring (mean ms, count)%n"));
+                for (Map.Entry<String, Double> entry : phasesAfter.entrySet()) {
+                    String key = entry.getKey();
+                    if (!key.startsWith("bearmaps_phase_seconds_sum")) {
+                        continue;
+                    }
+                    String countKey = key.replace("_sum", "_count");
+                    double sum = entry.getValue() - before(phasesBefore, key);
+                    double count = phasesAfter.getOrDefault(countKey, 0.0)
+                            - before(phasesBefore, countKey);
+                    String phase = key.substring(key.indexOf('"') + 1, key.lastIndexOf('"'));
+                    text.append(String.format("%-16s %8.2f %8.0f%n", phase,
+                            count == 0 ? 0 : 1000 * sum / count, count));
+                }
+            }
+            return text.toString();
+        }
+
+        private static double before(Map<String, Double> phasesBefore, String key) {
+            return phasesBefore == null ? 0 : phasesBefore.getOrDefault(key, 0.0);
+        }
+
+        private static void row(StringBuilder text, String name, long[] l, int errors,
+                                double seconds) {
+            Arrays.sort(l);
+            text.append(String.format("%-16s %8d %7d %9.1f", name, l.length, errors,
+                    l.length / seconds));
+            for (double p : PERCENTILES) {
+                text.append(String.format(" %8.1f", percentile(l, p) / 1e6));
+            }
+            text.append(String.format(" %8.1f%n", l.length == 0 ? 0 : l[l.length - 1] / 1e6));
+        }
+
+        /**
+         * Returns a percentile of sorted latencies, by the nearest rank.
+         */
+        static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        private static long[] concat(long[] a, long[] b) {
+            long[] c = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, c, a.length, b.length);
+            return c;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.Random;
+
+/**
+ * Compares a 100 by 100 distance matrix from Router.distanceMatrix with a route per pair, both
+ * from A* and from the contraction hierarchy. Pass the path of an OSM file to use it; otherwise
+ * a synthetic grid is used.
+ */
+public class MatrixBenchmark {
+    private static final int NUM_SOURCES = 100;
+    private static final int NUM_TARGETS = 100;
+    /** Each version is timed over this many rounds, and the fastest round is reported. */
+    private static final int NUM_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        Random random = new Random(61);
+        GraphDB g = args.length > 0 ? new GraphDB(args[0]) : SyntheticGraphs.grid(160, 160, random);
+        long[] sources = new long[NUM_SOURCES];
+        long[] targets = new long[NUM_TARGETS];
+        for (int i = 0; i < NUM_SOURCES; i += 1) {
+            sources[i] = g.idAt(random.nextInt(g.size()));
+        }
+        for (int j = 0; j < NUM_TARGETS; j += 1) {
+            targets[j] = g.idAt(random.nextInt(g.size()));
+        }
+        System.out.println(String.format("%d vertices, %d x %d matrix, %d threads", g.size(),
+                NUM_SOURCES, NUM_TARGETS, Runtime.getRuntime().availableProcessors()));
+
+        double ms = Double.POSITIVE_INFINITY;
+        double checksum = 0;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            long start = System.nanoTime();
+            double[] distances = Router.distanceMatrix(g, sources, targets);
+            /* Round 0 only warms up. */
+            if (round > 0) {
+                ms = Math.min(ms, (System.nanoTime() - start) / 1e6);
+            }
+            checksum = sum(distances);
+        }
+        System.out.println(String.format("%-16s %10.1f ms/matrix  (sum %.3f)", "distanceMatrix",
+                ms, checksum));
+
+        ms = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            checksum = 0;
+            long start = System.nanoTime();
+            for (long s : sources) {
+                for (long t : targets) {
+                    checksum += finite(Router.search(g, g.indexOf(s), g.indexOf(t),
+                            Router.Heuristic.GREAT_CIRCLE).distance);
+                }
+            }
+            if (round > 0) {
+                ms = Math.min(ms, (System.nanoTime() - start) / 1e6);
+            }
+        }
+        System.out.println(String.format("%-16s %10.1f ms/matrix  (sum %.3f)", "A* per pair", ms,
+                checksum));
+
+        ContractionHierarchy ch = g.hierarchy() != null ? g.hierarchy()
+                : ContractionHierarchy.build(g);
+        ms = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            checksum = 0;
+            long start = System.nanoTime();
+            for (long s : sources) {
+                for (long t : targets) {
+                    checksum += finite(ch.query(g, g.indexOf(s), g.indexOf(t)).distance);
+                }
+            }
+            if (round > 0) {
+                ms = Math.min(ms, (System.nanoTime() - start) / 1e6);
+            }
+        }
+        System.out.println(String.format("%-16s %10.1f ms/matrix  (sum %.3f)", "CH per pair", ms,
+                checksum));
+    }
+
+    private static double sum(double[] distances) {
+        double sum = 0;
+        for (double d : distances) {
+            sum += finite(d);
+        }
+        return sum;
+    }
+
+    private static double finite(double d) {
+        return Double.isInfinite(d) ? 0 : d;
+    }
+}
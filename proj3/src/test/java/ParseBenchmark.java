@@ -0,0 +1,162 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Times parsing an OSM extract and cleaning the graph, and measures the heap the graph takes
+ * after each phase, in one pass, in two passes (see GraphDB.parse), and in two passes over a
+ * gzip-compressed copy. Then times the parallel parse by phase on 1 to MAX_THREADS threads.
+ * Pass the path of an OSM file to use it, e.g. ../library-sp18/data/berkeley-2018.osm.xml;
+ * otherwise a synthetic extract is written to a temporary file. The snapshot is bypassed, so
+ * the XML is always parsed.
+ */
+public class ParseBenchmark {
+    /** Each phase is timed over this many rounds, and the fastest round is reported. */
+    private static final int NUM_ROUNDS = 5;
+    private static final int SYNTHETIC_SIZE = 500;
+    private static final int MAX_THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        File file;
+        if (args.length > 0) {
+            file = new File(args[0]);
+        } else {
+            file = File.createTempFile("synthetic", ".osm.xml");
+            file.deleteOnExit();
+            SyntheticGraphs.writeOsm(file, SYNTHETIC_SIZE, SYNTHETIC_SIZE, new Random(61));
+        }
+        File compressed = File.createTempFile("extract", ".osm.gz");
+        compressed.deleteOnExit();
+        gzip(file, compressed);
+        System.out.println(String.format("%s: %.1f MB, %.1f MB compressed", file,
+                file.length() / 1e6, compressed.length() / 1e6));
+
+        measure("one pass", file, false);
+        measure("two passes", file, true);
+        GraphDB g = measure("two passes, gzip", compressed, true);
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+        for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+            measureThreads(file, threads);
+        }
+
+        /* Compare GraphDB.cleanString with the regular expression it replaced. */
+        String[] locationNames = new String[g.numLocations()];
+        for (int j = 0; j < locationNames.length; j += 1) {
+            locationNames[j] = g.locationName(j);
+        }
+        double cleanStringUs = Double.POSITIVE_INFINITY;
+        double regexUs = Double.POSITIVE_INFINITY;
+        long checksum = 0;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            long start = System.nanoTime();
+            for (String name : locationNames) {
+                checksum += GraphDB.cleanString(name).length();
+            }
+            double us = (System.nanoTime() - start) / 1e3;
+            start = System.nanoTime();
+            for (String name : locationNames) {
+                checksum += name.replaceAll("[^a-zA-Z ]", "").toLowerCase().length();
+            }
+            if (round > 0) {
+                cleanStringUs = Math.min(cleanStringUs, us);
+                regexUs = Math.min(regexUs, (System.nanoTime() - start) / 1e3);
+            }
+        }
+        System.out.println(String.format("cleaning %d location names: cleanString %.1f us, "
+                + "regex %.1f us (%d)", locationNames.length, cleanStringUs, regexUs,
+                checksum % 10));
+    }
+
+    /**
+     * Parses and cleans an extract over several rounds, and prints the fastest times and the
+     * heap taken after each phase.
+     * @return The graph of the last round.
+     */
+    private static GraphDB measure(String label, File file, boolean twoPass) throws Exception {
+        double parseMs = Double.POSITIVE_INFINITY;
+        double cleanMs = Double.POSITIVE_INFINITY;
+        long parsedBytes = 0;
+        long cleanedBytes = 0;
+        GraphDB g = null;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            g = null;
+            long baseBytes = usedHeap();
+            long start = System.nanoTime();
+            g = new GraphDB();
+            g.parse(file, twoPass);
+            double ms = (System.nanoTime() - start) / 1e6;
+            parsedBytes = usedHeap() - baseBytes;
+            start = System.nanoTime();
+            g.clean();
+            double msClean = (System.nanoTime() - start) / 1e6;
+            cleanedBytes = usedHeap() - baseBytes;
+            /* Round 0 only warms up. */
+            if (round > 0) {
+                parseMs = Math.min(parseMs, ms);
+                cleanMs = Math.min(cleanMs, msClean);
+            }
+        }
+        System.out.println(String.format("%-17s parse %8.1f ms, heap after parse %6.1f MB; "
+                + "clean %8.1f ms, heap after clean %6.1f MB (%d vertices, %d locations)", label,
+                parseMs, parsedBytes / 1e6, cleanMs, cleanedBytes / 1e6, g.size(),
+                g.numLocations()));
+        return g;
+    }
+
+    /**
+     * Parses an extract in one pass on some threads over several rounds, and prints the
+     * timings of the fastest round by phase, with the time clean() takes to build the graph.
+     */
+    private static void measureThreads(File file, int threads) throws Exception {
+        Map<String, Object> best = null;
+        double bestMs = Double.POSITIVE_INFINITY;
+        double cleanMs = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            GraphDB g = new GraphDB();
+            long start = System.nanoTime();
+            Map<String, Object> timings = g.parse(file, false, threads);
+            double ms = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            g.clean();
+            double msClean = (System.nanoTime() - start) / 1e6;
+            if (round > 0 && ms < bestMs) {
+                bestMs = ms;
+                best = timings;
+            }
+            if (round > 0) {
+                cleanMs = Math.min(cleanMs, msClean);
+            }
+        }
+        String phases = best == null ? "on the calling thread" : String.format(
+                "tokenize %.1f, stage %.1f, wait %.1f, convert %.1f ms over %d workers",
+                best.get("tokenize"), best.get("stage"), best.get("wait"), best.get("convert"),
+                best.get("workers"));
+        System.out.println(String.format("%d threads: parse %8.1f ms (%s), clean %8.1f ms",
+                threads, bestMs, phases, cleanMs));
+    }
+
+    private static void gzip(File file, File compressed) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    /** Returns the bytes in use on the heap after collecting garbage. */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i += 1) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
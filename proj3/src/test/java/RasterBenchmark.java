@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares Rasterer.getMapRaster, which looks depths, tile ranges and file names up in the
+ * pyramid, with computing them for every query and formatting the names.
+ */
+public class RasterBenchmark {
+    private static final int NUM_QUERIES = 100000;
+    /** Each version is timed over this many rounds, and the fastest round is reported. */
+    private static final int NUM_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Random random = new Random(61);
+        List<Map<String, Double>> queries = new ArrayList<>(NUM_QUERIES);
+        for (int i = 0; i < NUM_QUERIES; i += 1) {
+            queries.add(TestTilePyramid.randomQuery(random));
+        }
+        Rasterer rasterer = new Rasterer();
+
+        long tiles = 0;
+        double ns = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            tiles = 0;
+            long start = System.nanoTime();
+            for (Map<String, Double> query : queries) {
+                tiles += tiles(rasterer.getMapRaster(query));
+            }
+            /* Round 0 only warms up. */
+            if (round > 0) {
+                ns = Math.min(ns, (double) (System.nanoTime() - start) / NUM_QUERIES);
+            }
+        }
+        System.out.println(String.format("%-10s %8.0f ns/query  (%d tiles)", "pyramid", ns,
+                tiles));
+
+        ns = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            tiles = 0;
+            long start = System.nanoTime();
+            for (Map<String, Double> query : queries) {
+                tiles += tiles(directRaster(query));
+            }
+            if (round > 0) {
+                ns = Math.min(ns, (double) (System.nanoTime() - start) / NUM_QUERIES);
+            }
+        }
+        System.out.println(String.format("%-10s %8.0f ns/query  (%d tiles)", "direct", ns,
+                tiles));
+    }
+
+    private static int tiles(Map<String, Object> raster) {
+        String[][] grid = (String[][]) raster.get("render_grid");
+        return grid == null ? 0 : grid.length * grid[0].length;
+    }
+
+    /**
+     * Rasters a query the way Rasterer did before the pyramid: computing the depth and tile
+     * sizes for the query and formatting every file name.
+     */
+    static Map<String, Object> directRaster(Map<String, Double> params) {
+        double ullon = params.get("ullon");
+        double ullat = params.get("ullat");
+        double lrlon = params.get("lrlon");
+        double lrlat = params.get("lrlat");
+        double width = params.get("w");
+
+        Map<String, Object> results = new HashMap<>();
+        if (ullon >= lrlon || ullat <= lrlat
+                || lrlon <= MapServer.ROOT_ULLON || ullon >= MapServer.ROOT_LRLON
+                || lrlat >= MapServer.ROOT_ULLAT || ullat <= MapServer.ROOT_LRLAT) {
+            results.put("query_success", false);
+            return results;
+        }
+
+        double rootLonDPP = (MapServer.ROOT_LRLON - MapServer.ROOT_ULLON) / MapServer.TILE_SIZE;
+        int depth = 0;
+        while (depth < Rasterer.MAX_DEPTH && rootLonDPP / (1 << depth) > (lrlon - ullon) / width) {
+            depth += 1;
+        }
+        int tiles = 1 << depth;
+        double tileLon = (MapServer.ROOT_LRLON - MapServer.ROOT_ULLON) / tiles;
+        double tileLat = (MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT) / tiles;
+        int xMin = clamp((int) Math.floor((ullon - MapServer.ROOT_ULLON) / tileLon), tiles);
+        int xMax = clamp((int) Math.floor((lrlon - MapServer.ROOT_ULLON) / tileLon), tiles);
+        int yMin = clamp((int) Math.floor((MapServer.ROOT_ULLAT - ullat) / tileLat), tiles);
+        int yMax = clamp((int) Math.floor((MapServer.ROOT_ULLAT - lrlat) / tileLat), tiles);
+
+        String[][] grid = new String[yMax - yMin + 1][xMax - xMin + 1];
+        for (int y = yMin; y <= yMax; y += 1) {
+            for (int x = xMin; x <= xMax; x += 1) {
+                grid[y - yMin][x - xMin] = "d" + depth + "_x" + x + "_y" + y + ".png";
+            }
+        }
+
+        results.put("render_grid", grid);
+        results.put("raster_ul_lon", MapServer.ROOT_ULLON + xMin * tileLon);
+        results.put("raster_ul_lat", MapServer.ROOT_ULLAT - yMin * tileLat);
+        results.put("raster_lr_lon", MapServer.ROOT_ULLON + (xMax + 1) * tileLon);
+        results.put("raster_lr_lat", MapServer.ROOT_ULLAT - (yMax + 1) * tileLat);
+        results.put("depth", depth);
+        results.put("query_success", true);
+        return results;
+    }
+
+    private static int clamp(int index, int tiles) {
+        return Math.max(0, Math.min(tiles - 1, index));
+    }
+}
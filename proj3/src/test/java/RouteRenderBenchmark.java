@@ -0,0 +1,102 @@
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares drawing routes with RouteRenderer against a drawLine call per segment, on a view of
+ * the whole map and on a zoomed in view that most of each route runs outside of. Pass the path
+ * of an OSM file to use it; otherwise a synthetic grid is used.
+ */
+public class RouteRenderBenchmark {
+    private static final int NUM_ROUTES = 50;
+    /** Routes shorter than this many miles are not used. */
+    private static final double MIN_MILES = 3;
+    private static final int IMAGE_SIZE = 1024;
+    /** Each version is timed over this many rounds, and the fastest round is reported. */
+    private static final int NUM_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Random random = new Random(61);
+        GraphDB g = args.length > 0 ? new GraphDB(args[0]) : SyntheticGraphs.grid(160, 160, random);
+        List<List<Long>> routes = new ArrayList<>();
+        long nodes = 0;
+        double miles = 0;
+        while (routes.size() < NUM_ROUTES) {
+            Router.Route route = Router.search(g, random.nextInt(g.size()),
+                    random.nextInt(g.size()), Router.Heuristic.GREAT_CIRCLE);
+            if (route.distance >= MIN_MILES && !Double.isInfinite(route.distance)) {
+                routes.add(route.path);
+                nodes += route.path.size();
+                miles += route.distance;
+            }
+        }
+        System.out.println(String.format("%d routes, %.1f miles and %d nodes on average",
+                NUM_ROUTES, miles / NUM_ROUTES, nodes / NUM_ROUTES));
+
+        double mapLon = MapServer.ROOT_LRLON - MapServer.ROOT_ULLON;
+        double mapLat = MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT;
+        measure(g, routes, "whole map", MapServer.ROOT_ULLON, MapServer.ROOT_ULLAT,
+                MapServer.ROOT_LRLON, MapServer.ROOT_LRLAT);
+        double ullon = MapServer.ROOT_ULLON + 0.4 * mapLon;
+        double ullat = MapServer.ROOT_ULLAT - 0.4 * mapLat;
+        measure(g, routes, "zoomed 8x", ullon, ullat, ullon + mapLon / 8, ullat - mapLat / 8);
+    }
+
+    private static void measure(GraphDB g, List<List<Long>> routes, String view, double ullon,
+                                double ullat, double lrlon, double lrlat) {
+        BufferedImage img = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = img.createGraphics();
+        g2d.setColor(MapServer.ROUTE_STROKE_COLOR);
+        g2d.setStroke(new BasicStroke(MapServer.ROUTE_STROKE_WIDTH_PX, BasicStroke.CAP_ROUND,
+                BasicStroke.JOIN_ROUND));
+
+        long points = 0;
+        double ms = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            points = 0;
+            long start = System.nanoTime();
+            for (List<Long> route : routes) {
+                points += RouteRenderer.draw(g2d, g, route, ullon, ullat, lrlon, lrlat,
+                        IMAGE_SIZE, IMAGE_SIZE);
+            }
+            /* Round 0 only warms up. */
+            if (round > 0) {
+                ms = Math.min(ms, (System.nanoTime() - start) / 1e6 / routes.size());
+            }
+        }
+        System.out.println(String.format("%-10s %-9s %7.3f ms/route  %6d points/route", view,
+                "path", ms, points / routes.size()));
+
+        ms = Double.POSITIVE_INFINITY;
+        for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+            long start = System.nanoTime();
+            for (List<Long> route : routes) {
+                drawLines(g2d, g, route, ullon, ullat, lrlon, lrlat);
+            }
+            if (round > 0) {
+                ms = Math.min(ms, (System.nanoTime() - start) / 1e6 / routes.size());
+            }
+        }
+        System.out.println(String.format("%-10s %-9s %7.3f ms/route", view, "drawLine", ms));
+        g2d.dispose();
+    }
+
+    /**
+     * Draws a route the way MapServer did before RouteRenderer, a drawLine call per segment.
+     */
+    static void drawLines(Graphics2D g2d, GraphDB g, List<Long> route, double ullon,
+                          double ullat, double lrlon, double lrlat) {
+        double wdpp = (lrlon - ullon) / IMAGE_SIZE;
+        double hdpp = (ullat - lrlat) / IMAGE_SIZE;
+        route.stream().reduce((v, w) -> {
+            g2d.drawLine((int) ((g.lon(v) - ullon) * (1 / wdpp)),
+                         (int) ((ullat - g.lat(v)) * (1 / hdpp)),
+                         (int) ((g.lon(w) - ullon) * (1 / wdpp)),
+                         (int) ((ullat - g.lat(w)) * (1 / hdpp)));
+            return w;
+        });
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.Random;
+
+/**
+ * Compares the Router heuristics and the contraction hierarchy query by settled vertices and
+ * time on random routes. Pass the path of
+ * an OSM file to use it, e.g. ../library-sp18/data/berkeley-2018.osm.xml; otherwise a synthetic
+ * grid is used.
+ */
+public class RouterBenchmark {
+    private static final int NUM_ROUTES = 500;
+    /** Each query is timed over this many rounds, and the fastest round is reported. */
+    private static final int NUM_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Random random = new Random(61);
+        GraphDB g = args.length > 0 ? new GraphDB(args[0]) : SyntheticGraphs.grid(160, 160, random);
+        int[] sources = new int[NUM_ROUTES];
+        int[] targets = new int[NUM_ROUTES];
+        for (int i = 0; i < NUM_ROUTES; i += 1) {
+            sources[i] = random.nextInt(g.size());
+            targets[i] = random.nextInt(g.size());
+        }
+
+        long start = System.nanoTime();
+        if (g.hierarchy() == null) {
+            g.setHierarchy(ContractionHierarchy.build(g));
+        }
+        System.out.println(String.format("Contraction hierarchy: %d ms to build, %d shortcuts",
+                (System.nanoTime() - start) / 1000000, g.hierarchy().numShortcuts()));
+
+        System.out.println(g.size() + " vertices, " + NUM_ROUTES + " random routes");
+        for (Router.Heuristic heuristic : Router.Heuristic.values()) {
+            long settled = 0;
+            double ms = Double.POSITIVE_INFINITY;
+            for (int round = 0; round <= NUM_ROUNDS; round += 1) {
+                settled = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < NUM_ROUTES; i += 1) {
+                    settled += Router.search(g, sources[i], targets[i], heuristic).settled;
+                }
+                /* Round 0 only warms up. */
+                if (round > 0) {
+                    ms = Math.min(ms, (System.nanoTime() - start) / 1e6 / NUM_ROUTES);
+                }
+            }
+            System.out.println(String.format("%-21s %9d settled/route %8.3f ms/route", heuristic,
+                    settled / NUM_ROUTES, ms));
+        }
+    }
+}
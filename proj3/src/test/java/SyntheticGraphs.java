@@ -0,0 +1,159 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Road-like graphs for tests and benchmarks that should not depend on the OSM extracts.
+ */
+public class SyntheticGraphs {
+    /** Number of nodes per way in writeOsm. */
+    private static final int WAY_LENGTH = 10;
+    /** One in this many nodes of writeOsm is named. */
+    private static final int NAMED_NODE_ODDS = 20;
+    /** One in this many ways of writeOsm is a footway. */
+    private static final int FOOTWAY_ODDS = 8;
+    /** Number of corners of the building writeOsm puts on every block. */
+    private static final int BUILDING_CORNERS = 4;
+    private static final String[] LOCATION_BRANDS = {"Peet's Coffee &amp; Tea", "Starbucks",
+        "Top Dog", "Bank of America", "Yali's Cafe", "Chevron", "Walgreens", "Safeway",
+        "Berkeley Bowl", "Trader Joe's", "La Burrita", "Cheese Board Pizza", "Caffe Strada",
+        "Blue Bottle Coffee", "The Musical Offering", "Philz Coffee", "Sliver", "Gypsy's",
+        "Chipotle", "Jupiter", "Cream", "Ike's", "Tender Greens", "Smart Alec's",
+        "Thai Basil", "Brazil Cafe", "Artichoke Basille's", "Bobby G's", "Kip's", "Raleigh's"};
+
+    /**
+     * Builds a jittered grid of streets over the map area. Each vertex is joined to its right and
+     * upper neighbours, with a few blocks missing so that routes have to detour.
+     * @param width The number of vertices per row.
+     * @param height The number of rows.
+     * @param random The source of randomness.
+     * @return The cleaned graph; vertex ids are 1 + row * width + column.
+     */
+    public static GraphDB grid(int width, int height, Random random) {
+        GraphDB g = new GraphDB();
+        double lonStep = (MapServer.ROOT_LRLON - MapServer.ROOT_ULLON) / width;
+        double latStep = (MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT) / height;
+        for (int r = 0; r < height; r += 1) {
+            for (int c = 0; c < width; c += 1) {
+                g.addNode(id(width, r, c),
+                        MapServer.ROOT_ULLON + (c + 0.8 * random.nextDouble()) * lonStep,
+                        MapServer.ROOT_LRLAT + (r + 0.8 * random.nextDouble()) * latStep);
+            }
+        }
+        for (int r = 0; r < height; r += 1) {
+            int street = g.addWay("Street " + r);
+            for (int c = 0; c + 1 < width; c += 1) {
+                if (random.nextDouble() < 0.9) {
+                    g.addEdge(id(width, r, c), id(width, r, c + 1), street);
+                }
+            }
+        }
+        for (int c = 0; c < width; c += 1) {
+            int avenue = g.addWay("Avenue " + c);
+            for (int r = 0; r + 1 < height; r += 1) {
+                if (random.nextDouble() < 0.9) {
+                    g.addEdge(id(width, r, c), id(width, r + 1, c), avenue);
+                }
+            }
+        }
+        g.clean();
+        return g;
+    }
+
+    /**
+     * Writes an OSM XML extract of a grid like the one of grid, for benchmarks of the parser.
+     * Streets are split into ways of WAY_LENGTH nodes that share the street's name, every few
+     * nodes carry one of a limited set of names, and some ways are footways, which are not
+     * routable and leave some nodes unconnected. Like in real extracts, most nodes are not on
+     * roads at all but outline buildings, one on every block.
+     * @param file The file to write.
+     * @param width The number of nodes per row.
+     * @param height The number of rows.
+     * @param random The source of randomness.
+     * @throws IOException If writing fails.
+     */
+    public static void writeOsm(File file, int width, int height, Random random)
+            throws IOException {
+        double lonStep = (MapServer.ROOT_LRLON - MapServer.ROOT_ULLON) / width;
+        double latStep = (MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT) / height;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8))) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\">\n");
+            for (int r = 0; r < height; r += 1) {
+                for (int c = 0; c < width; c += 1) {
+                    out.write(String.format(" <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"",
+                            id(width, r, c),
+                            MapServer.ROOT_LRLAT + (r + 0.8 * random.nextDouble()) * latStep,
+                            MapServer.ROOT_ULLON + (c + 0.8 * random.nextDouble()) * lonStep));
+                    if (random.nextInt(NAMED_NODE_ODDS) == 0) {
+                        out.write(String.format("><tag k=\"amenity\" v=\"cafe\"/>"
+                                + "<tag k=\"name\" v=\"%s\"/></node>\n", locationName(random)));
+                    } else {
+                        out.write("/>\n");
+                    }
+                }
+            }
+            long buildingIds = id(width, height, 0);
+            for (int r = 0; r < height; r += 1) {
+                for (int c = 0; c < width; c += 1) {
+                    for (int k = 0; k < BUILDING_CORNERS; k += 1) {
+                        out.write(String.format(" <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"/>\n",
+                                buildingIds++,
+                                MapServer.ROOT_LRLAT + (r + 0.85 + 0.1 * (k / 2)) * latStep,
+                                MapServer.ROOT_ULLON + (c + 0.85 + 0.1 * (k % 2)) * lonStep));
+                    }
+                }
+            }
+            long way = 1;
+            for (int r = 0; r < height; r += 1) {
+                for (int c = 0; c + 1 < width; c += WAY_LENGTH - 1) {
+                    out.write(String.format(" <way id=\"%d\">", way++));
+                    for (int k = c; k < width && k < c + WAY_LENGTH; k += 1) {
+                        out.write(String.format("<nd ref=\"%d\"/>", id(width, r, k)));
+                    }
+                    out.write(String.format("<tag k=\"highway\" v=\"%s\"/>"
+                            + "<tag k=\"name\" v=\"Street %d\"/></way>\n",
+                            random.nextInt(FOOTWAY_ODDS) == 0 ? "footway" : "residential", r));
+                }
+            }
+            for (int c = 0; c < width; c += 1) {
+                for (int r = 0; r + 1 < height; r += WAY_LENGTH - 1) {
+                    out.write(String.format(" <way id=\"%d\">", way++));
+                    for (int k = r; k < height && k < r + WAY_LENGTH; k += 1) {
+                        out.write(String.format("<nd ref=\"%d\"/>", id(width, k, c)));
+                    }
+                    out.write(String.format("<tag k=\"highway\" v=\"%s\"/>"
+                            + "<tag k=\"name\" v=\"Avenue %d\"/></way>\n",
+                            random.nextInt(FOOTWAY_ODDS) == 0 ? "footway" : "residential", c));
+                }
+            }
+            buildingIds = id(width, height, 0);
+            for (int b = 0; b < width * height; b += 1) {
+                out.write(String.format(" <way id=\"%d\">", way++));
+                for (int k = 0; k <= BUILDING_CORNERS; k += 1) {
+                    out.write(String.format("<nd ref=\"%d\"/>",
+                            buildingIds + k % BUILDING_CORNERS));
+                }
+                out.write("<tag k=\"building\" v=\"yes\"/></way>\n");
+                buildingIds += BUILDING_CORNERS;
+            }
+            out.write("</osm>\n");
+        }
+    }
+
+    /** Returns one of a few hundred location names, some much more common than others. */
+    private static String locationName(Random random) {
+        String brand = LOCATION_BRANDS[(int) (LOCATION_BRANDS.length
+                * Math.pow(random.nextDouble(), 3))];
+        return random.nextInt(3) == 0 ? brand + " #" + random.nextInt(100) : brand;
+    }
+
+    private static long id(int width, int r, int c) {
+        return 1 + (long) r * width + c;
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that contraction hierarchy queries find routes as short as Dijkstra's algorithm, and
+ * that unpacking their shortcuts yields real roads of that length.
+ */
+public class TestContractionHierarchy {
+    private static final int NUM_TESTS = 300;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoutesMatchDijkstra() {
+        Random random = new Random(61);
+        GraphDB g = SyntheticGraphs.grid(40, 40, random);
+        ContractionHierarchy ch = ContractionHierarchy.build(g);
+        for (int i = 0; i < NUM_TESTS; i += 1) {
+            int s = random.nextInt(g.size());
+            int t = random.nextInt(g.size());
+            Router.Route expected = Router.search(g, s, t, Router.Heuristic.NONE);
+            Router.Route actual = ch.query(g, s, t);
+            assertEquals(expected.distance, actual.distance, 1e-9);
+            assertEquals(expected.distance, pathLength(g, actual.path), 1e-9);
+        }
+    }
+
+    @Test
+    public void testSameStartAndDestination() {
+        GraphDB g = SyntheticGraphs.grid(5, 5, new Random(61));
+        ContractionHierarchy ch = ContractionHierarchy.build(g);
+        Router.Route route = ch.query(g, 3, 3);
+        assertEquals(0, route.distance, 0);
+        assertEquals(1, route.path.size());
+    }
+
+    @Test
+    public void testSavedHierarchyOnlyLoadsForItsGraph() throws IOException {
+        File source = folder.newFile("grid.osm.xml");
+        Files.write(source.toPath(), "<osm/>".getBytes(StandardCharsets.UTF_8));
+        GraphDB g = SyntheticGraphs.grid(10, 10, new Random(61));
+        ContractionHierarchy ch = ContractionHierarchy.build(g);
+        GraphSnapshot.saveHierarchy(ch, g, source);
+
+        ContractionHierarchy loaded = GraphSnapshot.loadHierarchy(source, g);
+        assertNotNull(loaded);
+        assertArrayEquals(ch.ranks, loaded.ranks);
+        assertArrayEquals(ch.upTargets, loaded.upTargets);
+        /* Grids of as many vertices, but with other roads. */
+        assertNull(GraphSnapshot.loadHierarchy(source,
+                SyntheticGraphs.grid(10, 10, new Random(62))));
+        assertNull(GraphSnapshot.loadHierarchy(source,
+                SyntheticGraphs.grid(5, 20, new Random(61))));
+    }
+
+    /**
+     * Returns the length of a path along roads of the graph, failing if two consecutive vertices
+     * are not joined by a road.
+     */
+    static double pathLength(GraphDB g, List<Long> path) {
+        if (path.isEmpty()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double length = 0;
+        for (int i = 1; i < path.size(); i += 1) {
+            int v = g.indexOf(path.get(i - 1));
+            int w = g.indexOf(path.get(i));
+            double shortest = Double.POSITIVE_INFINITY;
+            for (int e = g.edgesFrom(v); e < g.edgesTo(v); e += 1) {
+                if (g.target(e) == w) {
+                    shortest = Math.min(shortest, g.weight(e));
+                }
+            }
+            assertEquals("No road between " + path.get(i - 1) + " and " + path.get(i),
+                    false, shortest == Double.POSITIVE_INFINITY);
+            length += shortest;
+        }
+        return length;
+    }
+}
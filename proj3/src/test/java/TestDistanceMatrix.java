@@ -0,0 +1,98 @@
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks Router.distanceMatrix against a search per pair.
+ */
+public class TestDistanceMatrix {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testMatchesSearches() {
+        Random random = new Random(61);
+        GraphDB g = SyntheticGraphs.grid(40, 40, random);
+        long[] sources = randomIds(g, random, 12);
+        long[] targets = randomIds(g, random, 15);
+        /* Repeated targets, and a source that is also a target. */
+        targets[3] = targets[7];
+        targets[5] = sources[2];
+
+        double[] distances = Router.distanceMatrix(g, sources, targets);
+        assertEquals(sources.length * targets.length, distances.length);
+        for (int i = 0; i < sources.length; i += 1) {
+            for (int j = 0; j < targets.length; j += 1) {
+                double expected = Router.search(g, g.indexOf(sources[i]), g.indexOf(targets[j]),
+                        Router.Heuristic.NONE).distance;
+                assertEquals(expected, distances[i * targets.length + j], DELTA);
+            }
+        }
+        assertEquals(0, distances[2 * targets.length + 5], 0);
+
+        /* The rows must not depend on how they are spread over threads. */
+        int[] sourceIndices = new int[sources.length];
+        int[] targetIndices = new int[targets.length];
+        for (int i = 0; i < sources.length; i += 1) {
+            sourceIndices[i] = g.indexOf(sources[i]);
+        }
+        for (int j = 0; j < targets.length; j += 1) {
+            targetIndices[j] = g.indexOf(targets[j]);
+        }
+        for (int threads : new int[]{1, 3}) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                assertArrayEquals(distances,
+                        Router.distanceMatrix(g, sourceIndices, targetIndices, pool), 0);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testUnreachable() {
+        GraphDB g = new GraphDB();
+        g.addNode(1, 0, 0);
+        g.addNode(2, 0.001, 0);
+        g.addNode(3, 0.1, 0);
+        g.addNode(4, 0.101, 0);
+        g.addEdge(1, 2);
+        g.addEdge(3, 4);
+        g.clean();
+        double[] distances = Router.distanceMatrix(g, new long[]{1, 3}, new long[]{2, 4});
+        assertEquals(g.distance(1, 2), distances[0], DELTA);
+        assertEquals(Double.POSITIVE_INFINITY, distances[1], 0);
+        assertEquals(Double.POSITIVE_INFINITY, distances[2], 0);
+        assertEquals(g.distance(3, 4), distances[3], DELTA);
+
+        MapServer.initialize(g);
+        Map<String, Object> result = MapServer.getDistanceMatrix(
+                new double[][]{{0, 0}}, new double[][]{{0.0011, 0}, {0.1011, 0}});
+        assertArrayEquals(new long[]{1}, (long[]) result.get("sources"));
+        assertArrayEquals(new long[]{2, 4}, (long[]) result.get("targets"));
+        Double[][] rows = (Double[][]) result.get("distances");
+        assertEquals(g.distance(1, 2), rows[0][0], DELTA);
+        assertNull(rows[0][1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVertex() {
+        GraphDB g = SyntheticGraphs.grid(5, 5, new Random(61));
+        Router.distanceMatrix(g, new long[]{1}, new long[]{-1});
+    }
+
+    private static long[] randomIds(GraphDB g, Random random, int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i += 1) {
+            ids[i] = g.idAt(random.nextInt(g.size()));
+        }
+        return ids;
+    }
+}
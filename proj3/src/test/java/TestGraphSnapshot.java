@@ -0,0 +1,99 @@
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that graph snapshots restore the graph they were saved from, and that damaged ones are
+ * ignored in favour of parsing the XML again.
+ */
+public class TestGraphSnapshot {
+    /** Offset of the length of the first array, right after the header. */
+    private static final int FIRST_LENGTH_OFFSET = 36;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File source = writeExtract();
+        GraphDB parsed = new GraphDB(source.getPath());
+        assertTrue(GraphSnapshot.snapshotFor(source).isFile());
+
+        GraphDB loaded = new GraphDB();
+        assertTrue(GraphSnapshot.load(loaded, source, GraphSnapshot.snapshotFor(source)));
+        assertArrayEquals(parsed.ids, loaded.ids);
+        assertArrayEquals(parsed.targets, loaded.targets);
+        assertArrayEquals(parsed.weights, loaded.weights, 0);
+        assertArrayEquals(parsed.names, loaded.names);
+        assertArrayEquals(parsed.landmarks.vertices, loaded.landmarks.vertices);
+    }
+
+    @Test
+    public void testOtherLandmarkCount() throws IOException {
+        File source = writeExtract();
+        GraphDB parsed = new GraphDB(source.getPath());
+        assertEquals(Landmarks.DEFAULT_COUNT, parsed.landmarks.vertices.length);
+        assertEquals(4, new GraphDB(source.getPath(), 4).landmarks.vertices.length);
+
+        GraphDB loaded = new GraphDB();
+        assertTrue(GraphSnapshot.load(loaded, source, GraphSnapshot.snapshotFor(source)));
+        assertEquals(4, loaded.landmarks.vertices.length);
+    }
+
+    @Test
+    public void testCorruptLengthIsIgnored() throws IOException {
+        File source = writeExtract();
+        int size = new GraphDB(source.getPath()).size();
+        File snapshot = GraphSnapshot.snapshotFor(source);
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.seek(FIRST_LENGTH_OFFSET);
+            file.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertFalse(GraphSnapshot.load(new GraphDB(), source, snapshot));
+        assertEquals(size, new GraphDB(source.getPath()).size());
+        /* Parsing the XML again rewrote the snapshot. */
+        assertTrue(GraphSnapshot.load(new GraphDB(), source, snapshot));
+    }
+
+    @Test
+    public void testCorruptBodyIsIgnored() throws IOException {
+        File source = writeExtract();
+        new GraphDB(source.getPath());
+        File snapshot = GraphSnapshot.snapshotFor(source);
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.seek(file.length() / 2);
+            int b = file.read();
+            file.seek(file.length() / 2);
+            file.write(b ^ 0xFF);
+        }
+        assertFalse(GraphSnapshot.load(new GraphDB(), source, snapshot));
+    }
+
+    @Test
+    public void testTruncatedIsIgnored() throws IOException {
+        File source = writeExtract();
+        new GraphDB(source.getPath());
+        File snapshot = GraphSnapshot.snapshotFor(source);
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        assertFalse(GraphSnapshot.load(new GraphDB(), source, snapshot));
+    }
+
+    private File writeExtract() throws IOException {
+        File source = folder.newFile("grid.osm.xml");
+        SyntheticGraphs.writeOsm(source, 20, 20, new Random(61));
+        return source;
+    }
+}
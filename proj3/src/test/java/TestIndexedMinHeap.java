@@ -0,0 +1,85 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks IndexedMinHeap against a linear scan over the expected priorities.
+ */
+public class TestIndexedMinHeap {
+    private static final int NUM_VERTICES = 1000;
+    private static final int NUM_OPERATIONS = 100000;
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random random = new Random(61);
+        IndexedMinHeap heap = new IndexedMinHeap(NUM_VERTICES);
+        double[] expected = new double[NUM_VERTICES];
+        boolean[] present = new boolean[NUM_VERTICES];
+        int size = 0;
+        for (int i = 0; i < NUM_OPERATIONS; i += 1) {
+            int v = random.nextInt(NUM_VERTICES);
+            int op = random.nextInt(4);
+            if (op == 0 && size > 0) {
+                int min = heap.poll();
+                assertTrue(present[min]);
+                for (int u = 0; u < NUM_VERTICES; u += 1) {
+                    assertFalse(present[u] && expected[u] < expected[min]);
+                }
+                present[min] = false;
+                size -= 1;
+            } else if (op == 1) {
+                double priority = random.nextDouble();
+                boolean lowered = !present[v] || priority < expected[v];
+                assertEquals(lowered, heap.decreaseKey(v, priority));
+                if (lowered) {
+                    size += present[v] ? 0 : 1;
+                    present[v] = true;
+                    expected[v] = priority;
+                }
+            } else {
+                double priority = random.nextDouble();
+                size += present[v] ? 0 : 1;
+                present[v] = true;
+                expected[v] = priority;
+                heap.put(v, priority);
+            }
+            assertEquals(size, heap.size());
+            assertEquals(present[v], heap.contains(v));
+        }
+        double last = Double.NEGATIVE_INFINITY;
+        while (!heap.isEmpty()) {
+            double priority = heap.peekPriority();
+            assertTrue(last <= priority);
+            assertEquals(expected[heap.poll()], priority, 0);
+            last = priority;
+        }
+    }
+
+    @Test
+    public void testPoolReusesReleasedHeaps() {
+        IndexedMinHeap a = IndexedMinHeap.borrow(10);
+        IndexedMinHeap b = IndexedMinHeap.borrow(10);
+        assertNotSame(a, b);
+        a.put(3, 1.0);
+        a.put(7, 0.5);
+        IndexedMinHeap.release(a);
+        IndexedMinHeap.release(b);
+
+        IndexedMinHeap c = IndexedMinHeap.borrow(100);
+        assertSame(b, c);
+        IndexedMinHeap d = IndexedMinHeap.borrow(100);
+        assertSame(a, d);
+        assertTrue(d.isEmpty());
+        assertFalse(d.contains(3));
+        d.put(99, 2.0);
+        assertEquals(99, d.poll());
+        IndexedMinHeap.release(c);
+        IndexedMinHeap.release(d);
+    }
+}
@@ -0,0 +1,63 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks KDTree against a linear scan with the great-circle distance.
+ */
+public class TestKDTree {
+    private static final int NUM_POINTS = 5000;
+    private static final int NUM_QUERIES = 1000;
+
+    @Test
+    public void testNearestMatchesLinearScan() {
+        Random random = new Random(61);
+        double[] lons = new double[NUM_POINTS];
+        double[] lats = new double[NUM_POINTS];
+        for (int i = 0; i < NUM_POINTS; i += 1) {
+            lons[i] = randomLon(random);
+            lats[i] = randomLat(random);
+        }
+        KDTree tree = new KDTree(lons, lats);
+
+        for (int q = 0; q < NUM_QUERIES; q += 1) {
+            double lon = randomLon(random);
+            double lat = randomLat(random);
+            int expected = linearScan(lons, lats, lon, lat);
+            int actual = tree.nearest(lon, lat);
+            assertEquals(GraphDB.distance(lon, lat, lons[expected], lats[expected]),
+                    GraphDB.distance(lon, lat, lons[actual], lats[actual]), 1e-12);
+        }
+    }
+
+    @Test
+    public void testEmptyAndSingleton() {
+        assertEquals(-1, new KDTree(new double[0], new double[0]).nearest(0, 0));
+        assertEquals(0, new KDTree(new double[]{-122.25}, new double[]{37.87}).nearest(0, 0));
+    }
+
+    static double randomLon(Random random) {
+        return MapServer.ROOT_ULLON + random.nextDouble() * (MapServer.ROOT_LRLON
+                - MapServer.ROOT_ULLON);
+    }
+
+    static double randomLat(Random random) {
+        return MapServer.ROOT_LRLAT + random.nextDouble() * (MapServer.ROOT_ULLAT
+                - MapServer.ROOT_LRLAT);
+    }
+
+    static int linearScan(double[] lons, double[] lats, double lon, double lat) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < lons.length; i += 1) {
+            double d = GraphDB.distance(lon, lat, lons[i], lats[i]);
+            if (d < bestDistance) {
+                best = i;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+}
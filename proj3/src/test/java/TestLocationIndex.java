@@ -0,0 +1,135 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks LocationIndex against linear scans over random location names.
+ */
+public class TestLocationIndex {
+    private static final int NUM_LOCATIONS = 3000;
+    private static final String[] WORDS = {"Cafe", "Caf\u00e9", "Cafeteria", "Peet's", "Peets",
+        "Coffee", "Top Dog", "top", "Dog", "Bank", "Bank of America", "A", "Yali's", "Library",
+        "Lib", "Li", "park", "Park Street", "Berkeley", "Bowl"};
+    private static final int[] LIMITS = {1, 3, LocationIndex.TOP_K, 25, Integer.MAX_VALUE};
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random random = new Random(61);
+        String[] names = new String[NUM_LOCATIONS];
+        String[] cleanNames = new String[NUM_LOCATIONS];
+        Map<String, Integer> ids = new HashMap<>();
+        int[] nameIds = new int[NUM_LOCATIONS];
+        for (int j = 0; j < NUM_LOCATIONS; j += 1) {
+            /* Skew the word choice so that some names are much more popular than others. */
+            String name = WORDS[(int) (WORDS.length * Math.pow(random.nextDouble(), 2))];
+            if (random.nextInt(3) == 0) {
+                name += " " + WORDS[random.nextInt(WORDS.length)];
+            }
+            if (random.nextInt(4) == 0) {
+                name += " " + random.nextInt(30);
+            }
+            names[j] = name;
+            cleanNames[j] = GraphDB.cleanString(name);
+            nameIds[j] = ids.computeIfAbsent(name, k -> ids.size());
+        }
+        String[] namesById = new String[ids.size()];
+        String[] cleanNamesById = new String[ids.size()];
+        for (int j = 0; j < NUM_LOCATIONS; j += 1) {
+            namesById[nameIds[j]] = names[j];
+            cleanNamesById[nameIds[j]] = cleanNames[j];
+        }
+        Integer[] sorted = new Integer[NUM_LOCATIONS];
+        for (int j = 0; j < NUM_LOCATIONS; j += 1) {
+            sorted[j] = j;
+        }
+        Arrays.sort(sorted, Comparator.comparing((Integer j) -> cleanNames[j]));
+        int[] order = new int[NUM_LOCATIONS];
+        for (int j = 0; j < NUM_LOCATIONS; j += 1) {
+            order[j] = sorted[j];
+        }
+        LocationIndex index = new LocationIndex(nameIds, namesById, cleanNamesById,
+                order);
+
+        List<String> prefixes = new ArrayList<>(Arrays.asList("", "x", "cafe", "bank of"));
+        for (String cleanName : cleanNames) {
+            prefixes.add(cleanName);
+            prefixes.add(cleanName.substring(0, random.nextInt(cleanName.length() + 1)));
+        }
+        for (String prefix : prefixes) {
+            for (int limit : LIMITS) {
+                assertEquals(prefix + " " + limit, complete(names, cleanNames, prefix, limit),
+                        index.complete(prefix, limit));
+            }
+            assertArrayEquals(prefix, locations(cleanNames, prefix),
+                    sortedCopy(index.locations(prefix)));
+        }
+    }
+
+    @Test
+    public void testCleanStringMatchesRegex() {
+        Random random = new Random(61);
+        String alphabet = "aZz AbcXYZ'&-.09\u00e9\u0000\u00df_";
+        for (int i = 0; i < 10000; i += 1) {
+            StringBuilder s = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int k = 0; k < length; k += 1) {
+                s.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String expected = s.toString().replaceAll("[^a-zA-Z ]", "").toLowerCase();
+            assertEquals(expected, GraphDB.cleanString(s.toString()));
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        LocationIndex index = new LocationIndex(new int[0], new String[0], new String[0],
+                new int[0]);
+        assertEquals(0, index.size());
+        assertTrue(index.complete("", 10).isEmpty());
+        assertEquals(0, index.locations("cafe").length);
+    }
+
+    /**
+     * Returns the names whose cleaned name starts with a prefix, by decreasing number of
+     * locations with the same name, and then by cleaned name and name.
+     */
+    private static List<String> complete(String[] names, String[] cleanNames, String prefix,
+                                         int limit) {
+        Map<List<String>, Integer> counts = new HashMap<>();
+        for (int j = 0; j < names.length; j += 1) {
+            if (cleanNames[j].startsWith(prefix)) {
+                counts.merge(Arrays.asList(cleanNames[j], names[j]), 1, Integer::sum);
+            }
+        }
+        List<List<String>> keys = new ArrayList<>(counts.keySet());
+        keys.sort(Comparator.comparing((List<String> k) -> -counts.get(k))
+                .thenComparing(k -> k.get(0)).thenComparing(k -> k.get(1)));
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < keys.size() && i < limit; i += 1) {
+            result.add(keys.get(i).get(1));
+        }
+        return result;
+    }
+
+    private static int[] locations(String[] cleanNames, String cleanName) {
+        return IntStream.range(0, cleanNames.length)
+                .filter(j -> cleanNames[j].equals(cleanName)).toArray();
+    }
+
+    private static int[] sortedCopy(int[] a) {
+        int[] copy = a.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
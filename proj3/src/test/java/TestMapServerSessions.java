@@ -0,0 +1,240 @@
+import com.google.gson.Gson;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs MapServer on a synthetic graph and checks that every client gets its own route, also
+ * with many clients routing and rastering at the same time, and that requests are counted in
+ * the metrics.
+ */
+public class TestMapServerSessions {
+    private static final int NUM_CLIENTS = 16;
+    private static final int ROUNDS_PER_CLIENT = 10;
+    /** The raster every test asks for: the whole map, at 512 by 512 pixels. */
+    private static final String RASTER_QUERY = String.format(
+            "/raster?ullon=%s&ullat=%s&lrlon=%s&lrlat=%s&w=512&h=512", MapServer.ROOT_ULLON,
+            MapServer.ROOT_ULLAT, MapServer.ROOT_LRLON, MapServer.ROOT_LRLAT);
+
+    private static GraphDB graph;
+    private static String host;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        graph = SyntheticGraphs.grid(40, 40, new Random(61));
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        spark.Spark.port(port);
+        MapServer.initialize(graph);
+        MapServer.serve();
+        spark.Spark.awaitInitialization();
+        host = "http://localhost:" + port;
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        spark.Spark.stop();
+    }
+
+    @Test
+    public void testClientsDoNotSeeEachOthersRoutes() throws IOException {
+        Client fresh = new Client();
+        Client a = new Client();
+        Client b = new Client();
+        BufferedImage plain = fresh.raster();
+
+        double west = lon(0.1);
+        double east = lon(0.9);
+        a.route(west, lat(0.2), west, lat(0.8));
+        b.route(east, lat(0.2), east, lat(0.8));
+        BufferedImage imageA = a.raster();
+        BufferedImage imageB = b.raster();
+        assertTrue(drawnAt(imageA, plain, west, lat(0.2)));
+        assertTrue(!drawnAt(imageA, plain, east, lat(0.2)));
+        assertTrue(drawnAt(imageB, plain, east, lat(0.2)));
+        assertTrue(!drawnAt(imageB, plain, west, lat(0.2)));
+
+        b.clearRoute();
+        assertTrue(sameImage(plain, b.raster()));
+        assertTrue(drawnAt(a.raster(), plain, west, lat(0.2)));
+        assertTrue(sameImage(plain, fresh.raster()));
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        Client client = new Client();
+        client.route(lon(0.2), lat(0.2), lon(0.8), lat(0.8));
+        client.raster();
+        String metrics = client.request("/metrics");
+        for (String series : new String[]{
+            "bearmaps_request_seconds_count{endpoint=\"/route\"}",
+            "bearmaps_request_seconds_count{endpoint=\"/raster\"}",
+            "bearmaps_phase_seconds_count{phase=\"routing\"}",
+            "bearmaps_phase_seconds_count{phase=\"rasterer\"}",
+            "bearmaps_phase_seconds_bucket{phase=\"png_encode_write\",le=\"+Inf\"}"}) {
+            int at = metrics.indexOf(series + " ");
+            assertTrue(series, at >= 0);
+            String count = metrics.substring(at + series.length() + 1,
+                    metrics.indexOf('\n', at));
+            assertTrue(series + " " + count, Long.parseLong(count) > 0);
+        }
+    }
+
+    @Test
+    public void testManyConcurrentClients() throws Exception {
+        BufferedImage plain = new Client().raster();
+        ExecutorService pool = Executors.newFixedThreadPool(NUM_CLIENTS);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < NUM_CLIENTS; i += 1) {
+                Random random = new Random(i);
+                results.add(pool.submit(() -> runClient(random, plain)));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(ROUNDS_PER_CLIENT, (int) result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Routes from the west half of the map to the east half, and checks that the raster shows
+     * this client's route, or no route once it is cleared.
+     * @return The number of rounds the client completed.
+     */
+    private static int runClient(Random random, BufferedImage plain) throws IOException {
+        Client client = new Client();
+        int rounds = 0;
+        for (int i = 0; i < ROUNDS_PER_CLIENT; i += 1) {
+            double stlon = lon(0.5 * random.nextDouble());
+            double stlat = lat(random.nextDouble());
+            client.route(stlon, stlat, lon(0.5 + 0.5 * random.nextDouble()),
+                    lat(random.nextDouble()));
+            assertTrue(drawnAt(client.raster(), plain, stlon, stlat));
+
+            if (i % 3 == 2) {
+                client.clearRoute();
+                assertTrue(sameImage(plain, client.raster()));
+            }
+            rounds += 1;
+        }
+        return rounds;
+    }
+
+    /** Returns the longitude a fraction of the way from the west edge of the map. */
+    private static double lon(double fraction) {
+        return MapServer.ROOT_ULLON + fraction * (MapServer.ROOT_LRLON - MapServer.ROOT_ULLON);
+    }
+
+    /** Returns the latitude a fraction of the way from the south edge of the map. */
+    private static double lat(double fraction) {
+        return MapServer.ROOT_LRLAT + fraction * (MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT);
+    }
+
+    /**
+     * Returns whether the image differs from the plain map at the vertex closest to a point,
+     * i.e. whether a route through that vertex was drawn.
+     */
+    private static boolean drawnAt(BufferedImage image, BufferedImage plain, double lon,
+                                   double lat) {
+        long v = graph.closest(lon, lat);
+        int x = (int) ((graph.lon(v) - MapServer.ROOT_ULLON) * image.getWidth()
+                / (MapServer.ROOT_LRLON - MapServer.ROOT_ULLON));
+        int y = (int) ((MapServer.ROOT_ULLAT - graph.lat(v)) * image.getHeight()
+                / (MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT));
+        return image.getRGB(x, y) != plain.getRGB(x, y);
+    }
+
+    private static boolean sameImage(BufferedImage expected, BufferedImage actual) {
+        int w = expected.getWidth();
+        int h = expected.getHeight();
+        if (w != actual.getWidth() || h != actual.getHeight()) {
+            return false;
+        }
+        return Arrays.equals(expected.getRGB(0, 0, w, h, null, 0, w),
+                actual.getRGB(0, 0, w, h, null, 0, w));
+    }
+
+    /**
+     * A client with its own session cookie.
+     */
+    private static class Client {
+        private String cookie;
+
+        void route(double stlon, double stlat, double destlon, double destlat)
+                throws IOException {
+            Map<?, ?> response = get(String.format("/route?start_lon=%s&start_lat=%s"
+                    + "&end_lon=%s&end_lat=%s", stlon, stlat, destlon, destlat));
+            assertEquals(true, response.get("routing_success"));
+        }
+
+        void clearRoute() throws IOException {
+            assertEquals(true, new Gson().fromJson(request("/clear_route"), Boolean.class));
+        }
+
+        BufferedImage raster() throws IOException {
+            Map<?, ?> response = get(RASTER_QUERY);
+            assertEquals(true, response.get("query_success"));
+            byte[] png = Base64.getDecoder().decode(
+                    (String) response.get("b64_encoded_image_data"));
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            assertEquals(((Number) response.get("raster_width")).intValue(), image.getWidth());
+            return image;
+        }
+
+        private Map<?, ?> get(String path) throws IOException {
+            return new Gson().fromJson(request(path), Map.class);
+        }
+
+        private String request(String path) throws IOException {
+            HttpURLConnection connection =
+                    (HttpURLConnection) new URL(host + path).openConnection();
+            if (cookie != null) {
+                connection.setRequestProperty("Cookie", cookie);
+            }
+            assertEquals(200, connection.getResponseCode());
+            String setCookie = connection.getHeaderField("Set-Cookie");
+            if (setCookie != null) {
+                cookie = setCookie.split(";", 2)[0];
+            }
+            StringBuilder body = new StringBuilder();
+            try (InputStream in = connection.getInputStream();
+                 Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                char[] buffer = new char[1 << 14];
+                for (int n = reader.read(buffer); n >= 0; n = reader.read(buffer)) {
+                    body.append(buffer, 0, n);
+                }
+            }
+            assertNotEquals(0, body.length());
+            return body.toString();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the buckets of Metrics histograms and their text exposition.
+ */
+public class TestMetrics {
+    private static final long MS = 1000000;
+
+    @Test
+    public void testExposition() {
+        Metrics metrics = new Metrics();
+        Metrics.Histogram raster = metrics.histogram("latency_seconds", "Latency.", "endpoint",
+                "/raster");
+        Metrics.Histogram route = metrics.histogram("latency_seconds", "Latency.", "endpoint",
+                "/route");
+        assertSame(raster, metrics.histogram("latency_seconds", "Latency.", "endpoint",
+                "/raster"));
+        raster.observe(MS / 10);
+        raster.observe(MS);
+        raster.observe(30 * MS);
+        raster.observe(60L * 1000 * MS);
+        route.observe(2 * MS);
+        assertEquals(4, raster.count());
+
+        String text = metrics.exposition();
+        assertTrue(text.startsWith("# HELP latency_seconds Latency.\n"
+                + "# TYPE latency_seconds histogram\n"));
+        /* Buckets are cumulative, and an observation equal to a bound counts in its bucket. */
+        assertTrue(text.contains("latency_seconds_bucket{endpoint=\"/raster\",le=\"5.0E-4\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{endpoint=\"/raster\",le=\"0.001\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_bucket{endpoint=\"/raster\",le=\"0.025\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_bucket{endpoint=\"/raster\",le=\"0.05\"} 3\n"));
+        assertTrue(text.contains("latency_seconds_bucket{endpoint=\"/raster\",le=\"10.0\"} 3\n"));
+        assertTrue(text.contains("latency_seconds_bucket{endpoint=\"/raster\",le=\"+Inf\"} 4\n"));
+        assertTrue(text.contains("latency_seconds_sum{endpoint=\"/raster\"} 60.0311\n"));
+        assertTrue(text.contains("latency_seconds_count{endpoint=\"/raster\"} 4\n"));
+        assertTrue(text.contains("latency_seconds_count{endpoint=\"/route\"} 1\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOneLabelPerFamily() {
+        Metrics metrics = new Metrics();
+        metrics.histogram("latency_seconds", "Latency.", "endpoint", "/raster");
+        metrics.histogram("latency_seconds", "Latency.", "phase", "rasterer");
+    }
+
+    @Test
+    public void testConcurrentObservations() throws InterruptedException {
+        Metrics.Histogram h = new Metrics().histogram("latency_seconds", "Latency.", "phase",
+                "search");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t += 1) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i += 1) {
+                    h.observe(i * 1000L);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, h.count());
+    }
+}
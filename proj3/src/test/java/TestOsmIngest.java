@@ -0,0 +1,112 @@
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that parsing an extract in two passes, compressed with gzip, or on several threads,
+ * builds the same graph as parsing it in one pass on one thread.
+ */
+public class TestOsmIngest {
+    private static File plain;
+    private static File compressed;
+
+    @BeforeClass
+    public static void writeExtracts() throws IOException {
+        plain = File.createTempFile("synthetic", ".osm.xml");
+        plain.deleteOnExit();
+        SyntheticGraphs.writeOsm(plain, 40, 30, new Random(61));
+        compressed = File.createTempFile("synthetic", ".osm.gz");
+        compressed.deleteOnExit();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(plain);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    @Test
+    public void testTwoPassesMatchOnePass() throws Exception {
+        GraphDB expected = parse(plain, false);
+        assertTrue(expected.size() > 0);
+        assertTrue(expected.numLocations() > 0);
+        assertSameGraph(expected, parse(plain, true));
+    }
+
+    @Test
+    public void testCompressedMatchesPlain() throws Exception {
+        assertTrue(OsmInput.isCompressed(compressed));
+        assertTrue(!OsmInput.isCompressed(plain));
+        GraphDB expected = parse(plain, false);
+        assertSameGraph(expected, parse(compressed, false));
+        assertSameGraph(expected, parse(compressed, true));
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        GraphDB expected = parse(plain, false);
+        for (int threads : new int[]{2, 3, 8}) {
+            assertSameGraph(expected, parse(plain, false, threads));
+            assertSameGraph(expected, parse(compressed, true, threads));
+        }
+    }
+
+    @Test
+    public void testBzip2IsRejected() throws IOException {
+        File file = File.createTempFile("synthetic", ".osm.bz2");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "BZh91AY&SY".getBytes(StandardCharsets.US_ASCII));
+        try {
+            OsmInput.open(file).close();
+            fail("Opened a bzip2 file.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("gzip"));
+        }
+    }
+
+    private static GraphDB parse(File file, boolean twoPass) throws Exception {
+        GraphDB g = new GraphDB();
+        g.parse(file, twoPass);
+        g.clean();
+        return g;
+    }
+
+    private static GraphDB parse(File file, boolean twoPass, int threads) throws Exception {
+        GraphDB g = new GraphDB();
+        Map<String, Object> timings = g.parse(file, twoPass, threads);
+        assertEquals(threads - 1, timings.get("workers"));
+        g.clean();
+        return g;
+    }
+
+    private static void assertSameGraph(GraphDB expected, GraphDB actual) {
+        assertArrayEquals(expected.ids, actual.ids);
+        assertArrayEquals(expected.lons, actual.lons, 0);
+        assertArrayEquals(expected.lats, actual.lats, 0);
+        assertArrayEquals(expected.offsets, actual.offsets);
+        assertArrayEquals(expected.targets, actual.targets);
+        assertArrayEquals(expected.edgeWays, actual.edgeWays);
+        assertArrayEquals(expected.wayNameIds, actual.wayNameIds);
+        assertArrayEquals(expected.names, actual.names);
+        assertArrayEquals(expected.locationIds, actual.locationIds);
+        assertArrayEquals(expected.locationNameIds, actual.locationNameIds);
+        assertEquals(expected.numLocations(), actual.numLocations());
+    }
+}
@@ -0,0 +1,62 @@
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the keys, LRU eviction and route invalidation of RasterCache.
+ */
+public class TestRasterCache {
+    private static final String[][] GRID = {
+        {"d2_x1_y1.png", "d2_x2_y1.png"},
+        {"d2_x1_y2.png", "d2_x2_y2.png"}
+    };
+
+    private static RasterCache.Raster raster(int bytes, long routeVersion) {
+        return new RasterCache.Raster(new byte[bytes], 512, 512, routeVersion);
+    }
+
+    @Test
+    public void testKeysDependOnGridAndRoute() {
+        String[][] smaller = {{"d2_x1_y1.png"}, {"d2_x1_y2.png"}};
+        assertEquals("d2_x1_y1.png:d2_x2_y2.png:-1", RasterCache.key(GRID, RasterCache.NO_ROUTE));
+        assertNotEquals(RasterCache.key(GRID, 3), RasterCache.key(GRID, 4));
+        assertNotEquals(RasterCache.key(GRID, 3), RasterCache.key(smaller, 3));
+    }
+
+    @Test
+    public void testLruEviction() {
+        RasterCache cache = new RasterCache(300);
+        RasterCache.Raster a = raster(100, RasterCache.NO_ROUTE);
+        cache.put("a", a);
+        cache.put("b", raster(100, RasterCache.NO_ROUTE));
+        cache.put("c", raster(100, RasterCache.NO_ROUTE));
+        assertSame(a, cache.get("a"));
+        /* b is now the least recently used raster, so it goes first. */
+        cache.put("d", raster(100, RasterCache.NO_ROUTE));
+        assertNull(cache.get("b"));
+        assertSame(a, cache.get("a"));
+        assertEquals(1L, cache.stats().get("evictions"));
+        assertEquals(2L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    public void testInvalidateRouteKeepsOtherRasters() {
+        RasterCache cache = new RasterCache(1 << 20);
+        RasterCache.Raster plain = raster(100, RasterCache.NO_ROUTE);
+        RasterCache.Raster other = raster(100, 8);
+        cache.put("plain", plain);
+        cache.put("route", raster(100, 7));
+        cache.put("other", other);
+        cache.invalidateRoute(7);
+        cache.invalidateRoute(RasterCache.NO_ROUTE);
+        assertSame(plain, cache.get("plain"));
+        assertSame(other, cache.get("other"));
+        assertNull(cache.get("route"));
+        assertEquals(1L, cache.stats().get("invalidations"));
+        assertEquals(200L, cache.stats().get("size_bytes"));
+    }
+}
@@ -0,0 +1,91 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks Router.routeDirections on a small hand-built graph near the equator, where a degree of
+ * longitude and of latitude are about the same length.
+ */
+public class TestRouteDirections {
+    private static final double STEP = 0.001;
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testDirections() {
+        GraphDB g = new GraphDB();
+        g.addNode(1, 0, 0);
+        g.addNode(2, STEP, 0);
+        g.addNode(3, 2 * STEP, 0);
+        g.addNode(4, 2 * STEP, STEP);
+        /* 25 degrees right of north. */
+        g.addNode(5, 2 * STEP + STEP * Math.sin(Math.toRadians(25)),
+                STEP + STEP * Math.cos(Math.toRadians(25)));
+        double lon6 = 2 * STEP + 2 * STEP * Math.sin(Math.toRadians(25));
+        double lat6 = STEP + 2 * STEP * Math.cos(Math.toRadians(25));
+        g.addNode(6, lon6, lat6);
+        /* 160 degrees, i.e. back south east. */
+        g.addNode(7, lon6 + STEP * Math.sin(Math.toRadians(160)),
+                lat6 + STEP * Math.cos(Math.toRadians(160)));
+        /* Main Street is split into two ways, which must still make one direction. */
+        g.addEdge(1, 2, g.addWay("Main Street"));
+        g.addEdge(2, 3, g.addWay("Main Street"));
+        g.addEdge(3, 4, g.addWay("Oak Avenue"));
+        g.addEdge(4, 5, g.addWay("Elm Street"));
+        g.addEdge(5, 6);
+        g.addEdge(6, 7, g.addWay("Pine Street"));
+        g.clean();
+
+        List<Router.NavigationDirection> directions = Router.routeDirections(g,
+                Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L));
+        assertEquals(5, directions.size());
+        assertDirection(Router.NavigationDirection.START, "Main Street",
+                g.distance(1, 2) + g.distance(2, 3), directions.get(0));
+        assertDirection(Router.NavigationDirection.LEFT, "Oak Avenue", g.distance(3, 4),
+                directions.get(1));
+        assertDirection(Router.NavigationDirection.SLIGHT_RIGHT, "Elm Street", g.distance(4, 5),
+                directions.get(2));
+        assertDirection(Router.NavigationDirection.STRAIGHT, "", g.distance(5, 6),
+                directions.get(3));
+        assertDirection(Router.NavigationDirection.SHARP_RIGHT, "Pine Street", g.distance(6, 7),
+                directions.get(4));
+
+        /* The same route driven backwards turns the other way. */
+        directions = Router.routeDirections(g, Arrays.asList(4L, 3L, 2L));
+        assertEquals(2, directions.size());
+        assertDirection(Router.NavigationDirection.START, "Oak Avenue", g.distance(4, 3),
+                directions.get(0));
+        assertDirection(Router.NavigationDirection.RIGHT, "Main Street", g.distance(3, 2),
+                directions.get(1));
+
+        assertTrue(Router.routeDirections(g, Arrays.asList(1L)).isEmpty());
+    }
+
+    @Test
+    public void testTurnWrapsAround() {
+        assertEquals(Router.NavigationDirection.SLIGHT_RIGHT, Router.turn(170, -170));
+        assertEquals(Router.NavigationDirection.SLIGHT_LEFT, Router.turn(-170, 170));
+        assertEquals(Router.NavigationDirection.STRAIGHT, Router.turn(-179, 179));
+        assertEquals(Router.NavigationDirection.SHARP_LEFT, Router.turn(0, -150));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVertex() {
+        GraphDB g = new GraphDB();
+        g.addNode(1, 0, 0);
+        g.addNode(2, STEP, 0);
+        g.addEdge(1, 2);
+        g.clean();
+        Router.routeDirections(g, Arrays.asList(1L, 3L));
+    }
+
+    private static void assertDirection(int direction, String way, double distance,
+                                        Router.NavigationDirection actual) {
+        assertEquals(actual.toString(), direction, actual.direction);
+        assertEquals(way, actual.way);
+        assertEquals(distance, actual.distance, DELTA);
+    }
+}
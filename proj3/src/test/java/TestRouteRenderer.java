@@ -0,0 +1,137 @@
+import org.junit.Test;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the clipping and simplification of RouteRenderer, and that it draws what a drawLine
+ * per segment draws.
+ */
+public class TestRouteRenderer {
+    private static final int SIZE = 400;
+    private static final double PAD = 5;
+
+    @Test
+    public void testSimplifyStaysWithinTolerance() {
+        Random random = new Random(61);
+        int n = 5000;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 1; i < n; i += 1) {
+            xs[i] = xs[i - 1] + random.nextDouble();
+            ys[i] = ys[i - 1] + random.nextDouble() - 0.5;
+        }
+        for (double tolerance : new double[]{0.1, 0.5, 3}) {
+            boolean[] keep = new boolean[n];
+            RouteRenderer.simplify(xs, ys, 0, n - 1, tolerance, keep, new int[2 * n]);
+            assertTrue(keep[0]);
+            assertTrue(keep[n - 1]);
+            int last = 0;
+            int kept = 1;
+            for (int i = 1; i < n; i += 1) {
+                if (keep[i]) {
+                    for (int k = last + 1; k < i; k += 1) {
+                        assertTrue(RouteRenderer.distanceSquared(xs[k], ys[k], xs[last],
+                                ys[last], xs[i], ys[i]) <= tolerance * tolerance);
+                    }
+                    last = i;
+                    kept += 1;
+                }
+            }
+            assertTrue(kept < n);
+        }
+    }
+
+    @Test
+    public void testStraightLineCollapses() {
+        double[] xs = {0, 1, 2, 3, 4, 10};
+        double[] ys = {0, 1, 2, 3, 4, 10};
+        Path2D.Float path = new Path2D.Float();
+        assertEquals(2, RouteRenderer.path(xs, ys, xs.length, SIZE, SIZE, PAD, 0.5, path));
+    }
+
+    @Test
+    public void testClipping() {
+        /* Out to the right of the raster and back in, then along under it. */
+        double[] xs = {10, 100, 500, 600, 700, 300, 200, 100, 50};
+        double[] ys = {10, 20, 30, 60, 90, 100, 500, 520, 480};
+        Path2D.Float path = new Path2D.Float();
+        int points = RouteRenderer.path(xs, ys, xs.length, SIZE, SIZE, PAD, 0, path);
+        /* The segments 500-600-700 are right of it and 200-100-50 below it. */
+        assertEquals(6, points);
+
+        double[] outside = {-50, -40, -60};
+        path = new Path2D.Float();
+        assertEquals(0, RouteRenderer.path(outside, ys, outside.length, SIZE, SIZE, PAD, 0,
+                path));
+    }
+
+    @Test
+    public void testDrawsLikeDrawLine() {
+        GraphDB g = SyntheticGraphs.grid(40, 40, new Random(61));
+        List<Long> route = Router.search(g, 0, g.size() - 1, Router.Heuristic.NONE).path;
+        assertTrue(route.size() > 50);
+        double mapLon = MapServer.ROOT_LRLON - MapServer.ROOT_ULLON;
+        double mapLat = MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT;
+        /* The whole map, and a zoomed in view the route crosses. */
+        double[][] views = {
+            {MapServer.ROOT_ULLON, MapServer.ROOT_ULLAT, MapServer.ROOT_LRLON,
+                MapServer.ROOT_LRLAT},
+            {MapServer.ROOT_ULLON + 0.3 * mapLon, MapServer.ROOT_ULLAT - 0.3 * mapLat,
+                MapServer.ROOT_ULLON + 0.7 * mapLon, MapServer.ROOT_ULLAT - 0.7 * mapLat}};
+        for (double[] v : views) {
+            BufferedImage expected = image();
+            Graphics2D g2d = graphics(expected);
+            double wdpp = (v[2] - v[0]) / SIZE;
+            double hdpp = (v[1] - v[3]) / SIZE;
+            for (int i = 0; i + 1 < route.size(); i += 1) {
+                long a = route.get(i);
+                long b = route.get(i + 1);
+                g2d.drawLine((int) ((g.lon(a) - v[0]) / wdpp), (int) ((v[1] - g.lat(a)) / hdpp),
+                        (int) ((g.lon(b) - v[0]) / wdpp), (int) ((v[1] - g.lat(b)) / hdpp));
+            }
+            g2d.dispose();
+
+            BufferedImage actual = image();
+            g2d = graphics(actual);
+            assertTrue(RouteRenderer.draw(g2d, g, route, v[0], v[1], v[2], v[3], SIZE, SIZE)
+                    > 0);
+            g2d.dispose();
+
+            /* The drawLine version rounds every node to whole pixels, so the edges of the
+             * stroke differ a little. */
+            int drawn = 0;
+            int different = 0;
+            for (int y = 0; y < SIZE; y += 1) {
+                for (int x = 0; x < SIZE; x += 1) {
+                    boolean e = expected.getRGB(x, y) != Color.BLACK.getRGB();
+                    boolean a = actual.getRGB(x, y) != Color.BLACK.getRGB();
+                    drawn += e ? 1 : 0;
+                    different += e != a ? 1 : 0;
+                }
+            }
+            assertTrue(drawn > 0);
+            assertTrue(different + " of " + drawn, different < drawn / 5);
+        }
+    }
+
+    private static BufferedImage image() {
+        return new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static Graphics2D graphics(BufferedImage image) {
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(MapServer.ROUTE_STROKE_COLOR);
+        g2d.setStroke(new BasicStroke(MapServer.ROUTE_STROKE_WIDTH_PX, BasicStroke.CAP_ROUND,
+                BasicStroke.JOIN_ROUND));
+        return g2d;
+    }
+}
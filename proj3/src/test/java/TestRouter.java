@@ -44,6 +44,24 @@ public class TestRouter {
         }
     }
 
+    @Test
+    public void testContractionHierarchyLengths() throws Exception {
+        List<Map<String, Double>> testParams = paramsFromFile();
+        ContractionHierarchy ch = ContractionHierarchy.build(graph);
+
+        for (int i = 0; i < NUM_TESTS; i++) {
+            Map<String, Double> params = testParams.get(i);
+            int s = graph.indexOf(graph.closest(params.get("start_lon"), params.get("start_lat")));
+            int t = graph.indexOf(graph.closest(params.get("end_lon"), params.get("end_lat")));
+            Router.Route expected = Router.search(graph, s, t, Router.Heuristic.NONE);
+            Router.Route actual = ch.query(graph, s, t);
+            assertEquals("Contraction hierarchy route lengths did not match Dijkstra",
+                    expected.distance, actual.distance, 1e-9);
+            assertEquals(expected.distance,
+                    TestContractionHierarchy.pathLength(graph, actual.path), 1e-9);
+        }
+    }
+
     private List<Map<String, Double>> paramsFromFile() throws Exception {
         List<String> lines = Files.readAllLines(Paths.get(PARAMS_FILE), Charset.defaultCharset());
         List<Map<String, Double>> testParams = new ArrayList<>();
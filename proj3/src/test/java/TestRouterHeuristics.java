@@ -0,0 +1,40 @@
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that every A* heuristic, and the contraction hierarchy, finds routes as short as
+ * Dijkstra's algorithm does.
+ */
+public class TestRouterHeuristics {
+    private static final int NUM_TESTS = 200;
+
+    @Test
+    public void testHeuristicsFindShortestRoutes() {
+        Random random = new Random(61);
+        GraphDB g = SyntheticGraphs.grid(60, 60, random);
+        g.setHierarchy(ContractionHierarchy.build(g));
+        int settledWithLandmarks = 0;
+        int settledWithoutHeuristic = 0;
+        for (int i = 0; i < NUM_TESTS; i += 1) {
+            int s = random.nextInt(g.size());
+            int t = random.nextInt(g.size());
+            Router.Route dijkstra = Router.search(g, s, t, Router.Heuristic.NONE);
+            for (Router.Heuristic heuristic : Router.Heuristic.values()) {
+                Router.Route route = Router.search(g, s, t, heuristic);
+                assertEquals(dijkstra.distance, route.distance, 1e-9);
+                assertEquals(dijkstra.path.isEmpty(), route.path.isEmpty());
+                if (!route.path.isEmpty()) {
+                    assertEquals(g.idAt(s), (long) route.path.get(0));
+                    assertEquals(g.idAt(t), (long) route.path.get(route.path.size() - 1));
+                }
+            }
+            settledWithLandmarks += Router.search(g, s, t, Router.Heuristic.LANDMARKS).settled;
+            settledWithoutHeuristic += dijkstra.settled;
+        }
+        assertTrue(settledWithLandmarks < settledWithoutHeuristic);
+    }
+}
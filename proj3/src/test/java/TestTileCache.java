@@ -0,0 +1,76 @@
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the hit, miss and LRU eviction behaviour of TileCache with a fake tile loader.
+ */
+public class TestTileCache {
+    /** Bytes a decoded tile takes. */
+    private static final long TILE_BYTES = 4L * MapServer.TILE_SIZE * MapServer.TILE_SIZE;
+
+    private final List<String> loads = new ArrayList<>();
+
+    private BufferedImage load(String path) {
+        loads.add(path);
+        if (path.startsWith("missing")) {
+            return null;
+        }
+        return new BufferedImage(MapServer.TILE_SIZE, MapServer.TILE_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Test
+    public void testSizeOfTile() {
+        assertEquals(TILE_BYTES, TileCache.sizeOf(load("d1_x0_y0.png")));
+    }
+
+    @Test
+    public void testHitsAndLruEviction() {
+        TileCache cache = new TileCache(3 * TILE_BYTES, this::load);
+        BufferedImage a = cache.get("a.png");
+        cache.get("b.png");
+        cache.get("c.png");
+        assertSame(a, cache.get("a.png"));
+        /* b is now the least recently used tile, so it goes first. */
+        cache.get("d.png");
+        assertEquals(4, loads.size());
+        assertSame(a, cache.get("a.png"));
+        cache.get("c.png");
+        cache.get("b.png");
+        assertEquals(5, loads.size());
+        assertEquals("b.png", loads.get(4));
+
+        Map<String, Object> stats = cache.stats();
+        assertEquals(3L, stats.get("hits"));
+        assertEquals(5L, stats.get("misses"));
+        assertEquals(2L, stats.get("evictions"));
+        assertEquals(3, stats.get("tiles"));
+        assertEquals(3 * TILE_BYTES, stats.get("size_bytes"));
+    }
+
+    @Test
+    public void testUnreadableTilesAreNotCached() {
+        TileCache cache = new TileCache(3 * TILE_BYTES, this::load);
+        assertNull(cache.get("missing.png"));
+        assertNull(cache.get("missing.png"));
+        assertEquals(2, loads.size());
+        assertEquals(0, cache.stats().get("tiles"));
+    }
+
+    @Test
+    public void testTilesLargerThanTheCacheAreNotKept() {
+        TileCache cache = new TileCache(TILE_BYTES / 2, this::load);
+        cache.get("a.png");
+        cache.get("a.png");
+        assertEquals(2, loads.size());
+        assertEquals(0L, cache.stats().get("size_bytes"));
+    }
+}
@@ -0,0 +1,175 @@
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that TileCompositor puts every tile in its place, streams out a valid Base64 PNG and
+ * prefetches tiles.
+ */
+public class TestTileCompositor {
+    private static final int ROWS = 3;
+    private static final int COLS = 5;
+
+    /** Tile "r_c.png" is filled with a colour made of its row and column; others are missing. */
+    private static BufferedImage tile(String name) {
+        if (!name.endsWith(".png")) {
+            return null;
+        }
+        String[] rc = name.substring(0, name.length() - ".png".length()).split("_");
+        BufferedImage tile = new BufferedImage(MapServer.TILE_SIZE, MapServer.TILE_SIZE,
+                BufferedImage.TYPE_INT_RGB);
+        int rgb = color(Integer.parseInt(rc[0]), Integer.parseInt(rc[1]));
+        for (int y = 0; y < MapServer.TILE_SIZE; y += 1) {
+            for (int x = 0; x < MapServer.TILE_SIZE; x += 1) {
+                tile.setRGB(x, y, rgb);
+            }
+        }
+        return tile;
+    }
+
+    private static int color(int r, int c) {
+        return 0xFF000000 | (40 * r + 1) << 16 | (40 * c + 1) << 8 | 0x80;
+    }
+
+    private static String[][] grid() {
+        String[][] grid = new String[ROWS][COLS];
+        for (int r = 0; r < ROWS; r += 1) {
+            for (int c = 0; c < COLS; c += 1) {
+                grid[r][c] = r + "_" + c + ".png";
+            }
+        }
+        grid[1][2] = "missing";
+        return grid;
+    }
+
+    private static void checkTiles(BufferedImage img) {
+        assertEquals(COLS * MapServer.TILE_SIZE, img.getWidth());
+        assertEquals(ROWS * MapServer.TILE_SIZE, img.getHeight());
+        for (int r = 0; r < ROWS; r += 1) {
+            for (int c = 0; c < COLS; c += 1) {
+                int expected = r == 1 && c == 2 ? 0xFF000000 : color(r, c);
+                int x0 = c * MapServer.TILE_SIZE;
+                int y0 = r * MapServer.TILE_SIZE;
+                assertEquals(expected, img.getRGB(x0, y0));
+                assertEquals(expected, img.getRGB(x0 + MapServer.TILE_SIZE - 1,
+                        y0 + MapServer.TILE_SIZE - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testCompositeInParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            checkTiles(new TileCompositor(pool, TestTileCompositor::tile).composite(grid()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testWriteBase64Png() throws IOException {
+        BufferedImage img = new TileCompositor(ForkJoinPool.commonPool(),
+                TestTileCompositor::tile).composite(grid());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('"');
+        TileCompositor.writeBase64Png(img, out);
+        /* The stream must still be open for the rest of the response. */
+        out.write('"');
+
+        String text = out.toString("US-ASCII");
+        assertEquals('"', text.charAt(text.length() - 1));
+        byte[] png = Base64.getDecoder().decode(text.substring(1, text.length() - 1));
+        checkTiles(ImageIO.read(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    public void testPrefetch() throws InterruptedException {
+        ThreadPoolExecutor prefetchPool = TileCompositor.prefetchPool(2, 4);
+        Set<String> loaded = ConcurrentHashMap.newKeySet();
+        TileCompositor compositor = new TileCompositor(ForkJoinPool.commonPool(), prefetchPool,
+                name -> {
+                    loaded.add(name);
+                    return tile(name);
+                });
+        compositor.prefetch(new String[]{"0_0.png", "1_4.png"});
+        prefetchPool.shutdown();
+        assertTrue(prefetchPool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(new HashSet<>(Arrays.asList("0_0.png", "1_4.png")), loaded);
+    }
+
+    @Test
+    public void testPrefetchSkipsTilesInFlight() {
+        List<Runnable> prefetches = new ArrayList<>();
+        AtomicInteger loads = new AtomicInteger();
+        TileCompositor compositor = new TileCompositor(ForkJoinPool.commonPool(),
+                prefetches::add, name -> {
+                    loads.incrementAndGet();
+                    return tile(name);
+                });
+        compositor.prefetch(new String[]{"0_0.png"});
+        compositor.prefetch(new String[]{"0_0.png"});
+        assertEquals(1, prefetches.size());
+        prefetches.get(0).run();
+        assertEquals(1, loads.get());
+
+        /* Once loaded, the tile can be prefetched again. */
+        compositor.prefetch(new String[]{"0_0.png"});
+        assertEquals(2, prefetches.size());
+        prefetches.get(1).run();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testPrefetchDropsOldest() throws InterruptedException {
+        ThreadPoolExecutor prefetchPool = TileCompositor.prefetchPool(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<String> loaded = new LinkedBlockingQueue<>();
+        try {
+            TileCompositor compositor = new TileCompositor(ForkJoinPool.commonPool(),
+                    prefetchPool, name -> {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        loaded.add(name);
+                        return tile(name);
+                    });
+            /* The first runs and waits, the second waits in the queue until the third drops it. */
+            compositor.prefetch(new String[]{"0_0.png"});
+            compositor.prefetch(new String[]{"1_4.png"});
+            compositor.prefetch(new String[]{"2_2.png"});
+            release.countDown();
+            assertEquals("0_0.png", loaded.poll(10, TimeUnit.SECONDS));
+            assertEquals("2_2.png", loaded.poll(10, TimeUnit.SECONDS));
+
+            /* The dropped tile is not left in flight, so it can be prefetched again. */
+            compositor.prefetch(new String[]{"1_4.png"});
+            assertEquals("1_4.png", loaded.poll(10, TimeUnit.SECONDS));
+        } finally {
+            prefetchPool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the pyramid Rasterer looks tiles up in against computing them from scratch.
+ */
+public class TestTilePyramid {
+    private static final int NUM_QUERIES = 2000;
+
+    @Test
+    public void testFileNames() {
+        TilePyramid pyramid = Rasterer.PYRAMID;
+        for (int d = 0; d <= pyramid.maxDepth(); d += 1) {
+            for (int y = 0; y < pyramid.tiles(d); y += 1) {
+                for (int x = 0; x < pyramid.tiles(d); x += 1) {
+                    assertEquals(String.format("d%d_x%d_y%d.png", d, x, y),
+                            pyramid.fileName(d, x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesDirectComputation() {
+        Random random = new Random(61);
+        Rasterer rasterer = new Rasterer();
+        for (int i = 0; i < NUM_QUERIES; i += 1) {
+            Map<String, Double> params = randomQuery(random);
+            Map<String, Object> expected = RasterBenchmark.directRaster(params);
+            Map<String, Object> actual = rasterer.getMapRaster(params);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (String key : expected.keySet()) {
+                if (key.equals("render_grid")) {
+                    assertArrayEquals((Object[]) expected.get(key), (Object[]) actual.get(key));
+                } else {
+                    assertEquals(key, expected.get(key), actual.get(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNeighbours() {
+        TilePyramid pyramid = Rasterer.PYRAMID;
+        assertEquals(0, pyramid.neighbours(0, 0, 0, 0, 0).length);
+        /* In a corner only three neighbours are inside the area. */
+        assertEquals(new HashSet<>(Arrays.asList("d2_x1_y0.png", "d2_x0_y1.png",
+                "d2_x1_y1.png")), set(pyramid.neighbours(2, 0, 0, 0, 0)));
+        /* Around a block of 2 by 3 tiles away from the edges, a ring of 4 by 5 tiles. */
+        String[] ring = pyramid.neighbours(4, 5, 6, 7, 9);
+        assertEquals(4 * 5 - 2 * 3, ring.length);
+        for (String name : ring) {
+            assertTrue(name.startsWith("d4_"));
+        }
+        assertTrue(set(ring).contains("d4_x4_y6.png"));
+        assertTrue(set(ring).contains("d4_x7_y10.png"));
+        assertTrue(!set(ring).contains("d4_x5_y7.png"));
+    }
+
+    @Test
+    public void testNeighbourTiles() {
+        Map<String, Double> params = new HashMap<>();
+        params.put("ullon", MapServer.ROOT_ULLON);
+        params.put("ullat", MapServer.ROOT_ULLAT);
+        params.put("lrlon", MapServer.ROOT_LRLON);
+        params.put("lrlat", MapServer.ROOT_LRLAT);
+        params.put("w", 512.0);
+        params.put("h", 512.0);
+        /* The whole map at depth 1 has no neighbours, and without prefetching there are none. */
+        assertEquals(0, new Rasterer(true).neighbourTiles(params).length);
+        double mapLon = MapServer.ROOT_LRLON - MapServer.ROOT_ULLON;
+        double mapLat = MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT;
+        params.put("lrlon", MapServer.ROOT_ULLON + mapLon / 8);
+        params.put("lrlat", MapServer.ROOT_ULLAT - mapLat / 8);
+        assertTrue(new Rasterer(true).neighbourTiles(params).length > 0);
+        assertEquals(0, new Rasterer().neighbourTiles(params).length);
+    }
+
+    /**
+     * Returns a query box of random size and place, which may reach outside the map area or,
+     * now and then, not overlap it at all.
+     */
+    static Map<String, Double> randomQuery(Random random) {
+        double mapLon = MapServer.ROOT_LRLON - MapServer.ROOT_ULLON;
+        double mapLat = MapServer.ROOT_ULLAT - MapServer.ROOT_LRLAT;
+        double width = mapLon * Math.pow(2, -8 * random.nextDouble());
+        double height = width * (0.5 + random.nextDouble());
+        double ullon = MapServer.ROOT_ULLON + mapLon * (1.2 * random.nextDouble() - 0.1);
+        double ullat = MapServer.ROOT_ULLAT - mapLat * (1.2 * random.nextDouble() - 0.1);
+        Map<String, Double> params = new HashMap<>();
+        params.put("ullon", ullon);
+        params.put("ullat", ullat);
+        params.put("lrlon", ullon + width);
+        params.put("lrlat", ullat - height);
+        params.put("w", (double) (200 + random.nextInt(1800)));
+        params.put("h", (double) (200 + random.nextInt(1000)));
+        return params;
+    }
+
+    private static Set<String> set(String[] names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+}